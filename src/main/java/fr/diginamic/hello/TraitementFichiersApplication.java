@@ -8,10 +8,12 @@ import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ApplicationEventPublisher;
 
 import fr.diginamic.hello.entities.Departement;
 import fr.diginamic.hello.entities.Region;
 import fr.diginamic.hello.entities.Ville;
+import fr.diginamic.hello.events.DataImportedEvent;
 import fr.diginamic.hello.services.DepartementService;
 import fr.diginamic.hello.services.RegionService;
 import fr.diginamic.hello.services.VilleService;
@@ -45,6 +47,9 @@ public class TraitementFichiersApplication implements CommandLineRunner {
 	@Autowired
 	private RegionService regionService;
 
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
+
 	private final String filePath = "/Users/lysianedon/Documents/DEV/recensement.csv";
 	
 	private final String dataSeparator = ";";
@@ -91,10 +96,15 @@ public class TraitementFichiersApplication implements CommandLineRunner {
 		List<String> lines = loadLinesFromCsv(filePath);
 
 		// Skip header line
+		int lineCount = 0;
 		for (int i = 1; i < 3; i++) {
 			String[] fields = splitLine(lines.get(i), dataSeparator);
 			createEntitiesFromFields(fields);
+			lineCount++;
 		}
+
+		// Let the in-memory copies of the data rebuild themselves
+		eventPublisher.publishEvent(new DataImportedEvent(lineCount));
 	}
 
 	/**
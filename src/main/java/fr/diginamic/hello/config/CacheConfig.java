@@ -0,0 +1,85 @@
+package fr.diginamic.hello.config;
+
+import java.time.Duration;
+import java.util.Collection;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.Slice;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Configuration of the application-level caches holding the results of the
+ * city search endpoints.
+ * 
+ * Each endpoint gets its own cache, bounded by an estimated memory weight and a
+ * time to live, so that hit ratios can be followed per endpoint. Evictions
+ * triggered inside a transaction only happen once it has committed.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+	public static final String VILLES_BY_PREFIX = "villesByPrefix";
+	public static final String VILLES_BY_MIN_POPULATION = "villesByMinPopulation";
+	public static final String VILLES_BY_POPULATION_RANGE = "villesByPopulationRange";
+	public static final String VILLES_BY_DEPARTEMENT_AND_MIN_POPULATION = "villesByDepartementAndMinPopulation";
+	public static final String VILLES_BY_DEPARTEMENT_AND_POPULATION_RANGE = "villesByDepartementAndPopulationRange";
+	public static final String VILLES_BY_DEPARTEMENT_POPULATION = "villesByDepartementPopulation";
+	public static final String VILLE_COUNT = "villeCount";
+	public static final String VILLES_BY_QUERY = "villesByQuery";
+
+	/**
+	 * Names of every cache holding city search results. They are all invalidated
+	 * by {@link EvictVilleSearchCaches}.
+	 */
+	public static final String[] VILLE_SEARCH_CACHES = { VILLES_BY_PREFIX, VILLES_BY_MIN_POPULATION,
+			VILLES_BY_POPULATION_RANGE, VILLES_BY_DEPARTEMENT_AND_MIN_POPULATION,
+			VILLES_BY_DEPARTEMENT_AND_POPULATION_RANGE, VILLES_BY_DEPARTEMENT_POPULATION, VILLE_COUNT,
+			VILLES_BY_QUERY };
+
+	/** Rough size in bytes of a cached city summary. */
+	private static final int ESTIMATED_VILLE_WEIGHT = 160;
+
+	/** Rough size in bytes of a cache entry, excluding its content. */
+	private static final int ESTIMATED_ENTRY_WEIGHT = 128;
+
+	/**
+	 * Creates the cache manager for the city search results.
+	 *
+	 * @param maxWeight the maximum estimated size, in bytes, of each cache
+	 * @param ttl       how long a result stays in cache after being computed
+	 * @return the cache manager
+	 */
+	@Bean
+	public CacheManager cacheManager(@Value("${villes.search-cache.max-weight:16777216}") long maxWeight,
+			@Value("${villes.search-cache.ttl:PT10M}") Duration ttl) {
+		CaffeineCacheManager cacheManager = new CaffeineCacheManager(VILLE_SEARCH_CACHES);
+		cacheManager.setCaffeine(Caffeine.newBuilder().maximumWeight(maxWeight)
+				.weigher((Object key, Object value) -> estimateWeight(value)).expireAfterWrite(ttl).recordStats());
+		cacheManager.setAllowNullValues(false);
+		return new TransactionAwareCacheManagerProxy(cacheManager);
+	}
+
+	/**
+	 * Estimates the memory footprint of a cached search result.
+	 *
+	 * @param value the cached value
+	 * @return its estimated weight in bytes
+	 */
+	static int estimateWeight(Object value) {
+		if (value instanceof Collection<?> collection) {
+			return ESTIMATED_ENTRY_WEIGHT + collection.size() * ESTIMATED_VILLE_WEIGHT;
+		}
+		if (value instanceof Slice<?> slice) {
+			return ESTIMATED_ENTRY_WEIGHT + slice.getNumberOfElements() * ESTIMATED_VILLE_WEIGHT;
+		}
+		return ESTIMATED_ENTRY_WEIGHT;
+	}
+}
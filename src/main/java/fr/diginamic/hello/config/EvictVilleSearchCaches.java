@@ -0,0 +1,26 @@
+package fr.diginamic.hello.config;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.springframework.cache.annotation.CacheEvict;
+
+/**
+ * Clears every city search result cache, and the cached number of cities,
+ * once the annotated method has run. Must be put on every method modifying
+ * cities, the departments they are returned with or the regions they are
+ * filtered by.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@CacheEvict(cacheNames = { CacheConfig.VILLES_BY_PREFIX, CacheConfig.VILLES_BY_MIN_POPULATION,
+		CacheConfig.VILLES_BY_POPULATION_RANGE, CacheConfig.VILLES_BY_DEPARTEMENT_AND_MIN_POPULATION,
+		CacheConfig.VILLES_BY_DEPARTEMENT_AND_POPULATION_RANGE, CacheConfig.VILLES_BY_DEPARTEMENT_POPULATION,
+		CacheConfig.VILLE_COUNT, CacheConfig.VILLES_BY_QUERY }, allEntries = true)
+public @interface EvictVilleSearchCaches {
+
+}
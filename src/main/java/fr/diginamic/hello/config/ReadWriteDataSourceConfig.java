@@ -0,0 +1,92 @@
+package fr.diginamic.hello.config;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Sends read-only transactions to read replicas, when some are configured in
+ * {@code villes.datasource.replicas} as a comma-separated list of JDBC URLs.
+ * The replicas use the driver and credentials of the primary.
+ *
+ * The data source used by the application is a lazy proxy: the physical
+ * connection is only obtained at the first statement, once the transaction has
+ * flagged it as read-only or not. Read-only connections come from a
+ * {@link ReplicaDataSource}, all others from the primary pool, which also
+ * remains the one used by migrations.
+ */
+@Configuration
+@ConditionalOnProperty("villes.datasource.replicas")
+public class ReadWriteDataSourceConfig {
+
+	/**
+	 * Creates the connection pool of the primary database, configured by the
+	 * usual {@code spring.datasource} properties.
+	 *
+	 * @param properties the data source properties
+	 * @return the primary pool
+	 */
+	@Bean
+	@ConfigurationProperties("spring.datasource.hikari")
+	public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+		return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+	}
+
+	/**
+	 * Creates a connection pool for each replica, and the data source spreading
+	 * connections over them.
+	 *
+	 * @param properties          the data source properties of the primary
+	 * @param primaryDataSource   the primary pool, used when no replica is
+	 *                            available
+	 * @param urls                the JDBC URLs of the replicas
+	 * @param healthCheckInterval the time between two checks of the replicas
+	 * @return the replica data source
+	 */
+	@Bean
+	public ReplicaDataSource replicaDataSource(DataSourceProperties properties, HikariDataSource primaryDataSource,
+			@Value("${villes.datasource.replicas}") List<String> urls,
+			@Value("${villes.datasource.replica-health-check-interval:PT10S}") Duration healthCheckInterval) {
+		Map<String, DataSource> replicas = new LinkedHashMap<>();
+		for (int i = 0; i < urls.size(); i++) {
+			HikariDataSource replica = properties.initializeDataSourceBuilder().type(HikariDataSource.class)
+					.url(urls.get(i).trim()).build();
+			replica.setPoolName("replica-" + i);
+			replica.setReadOnly(true);
+			// Lets the application start while a replica is down
+			replica.setInitializationFailTimeout(-1);
+			replicas.put(replica.getPoolName(), replica);
+		}
+		return new ReplicaDataSource(primaryDataSource, replicas, healthCheckInterval);
+	}
+
+	/**
+	 * Creates the data source used by the application, routing read-only
+	 * connections to the replicas.
+	 *
+	 * @param primaryDataSource the primary pool
+	 * @param replicaDataSource the replica data source
+	 * @return the routing data source
+	 */
+	@Bean
+	@Primary
+	public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaDataSource replicaDataSource) {
+		LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+		dataSource.setReadOnlyDataSource(replicaDataSource);
+		return dataSource;
+	}
+}
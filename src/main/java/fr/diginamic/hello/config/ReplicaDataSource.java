@@ -0,0 +1,169 @@
+package fr.diginamic.hello.config;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+/**
+ * Data source spreading connections over a set of read replicas, in
+ * round-robin.
+ *
+ * A replica failing to provide a connection is set aside, and the next one is
+ * tried; once no replica is left, connections come from the primary instead.
+ * Every replica, healthy or not, is checked at a fixed interval, so that
+ * failed replicas come back into rotation once they answer again.
+ */
+public class ReplicaDataSource extends AbstractDataSource implements Closeable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ReplicaDataSource.class);
+
+	/** Seconds a replica has to answer a health check. */
+	private static final int VALIDATION_TIMEOUT = 2;
+
+	private final DataSource primary;
+
+	private final List<Replica> replicas;
+
+	private final AtomicInteger next = new AtomicInteger();
+
+	private final ScheduledExecutorService healthChecker;
+
+	/**
+	 * A replica along with its last known state.
+	 */
+	static final class Replica {
+
+		private final String name;
+
+		private final DataSource dataSource;
+
+		private volatile boolean healthy = true;
+
+		Replica(String name, DataSource dataSource) {
+			this.name = name;
+			this.dataSource = dataSource;
+		}
+
+		boolean isHealthy() {
+			return healthy;
+		}
+	}
+
+	/**
+	 * Creates the data source and starts checking the replicas.
+	 *
+	 * @param primary             the data source to fall back to
+	 * @param replicas            the replica data sources, by name
+	 * @param healthCheckInterval the time between two checks of the replicas
+	 */
+	public ReplicaDataSource(DataSource primary, Map<String, DataSource> replicas,
+			Duration healthCheckInterval) {
+		this.primary = primary;
+		this.replicas = replicas.entrySet().stream().map(entry -> new Replica(entry.getKey(), entry.getValue()))
+				.toList();
+		this.healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "replica-health-check");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long interval = healthCheckInterval.toMillis();
+		healthChecker.scheduleWithFixedDelay(this::checkHealth, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return getConnection(null, null);
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		int start = Math.floorMod(next.getAndIncrement(), Math.max(replicas.size(), 1));
+		for (int i = 0; i < replicas.size(); i++) {
+			Replica replica = replicas.get((start + i) % replicas.size());
+			if (!replica.healthy) {
+				continue;
+			}
+			try {
+				return connect(replica.dataSource, username, password);
+			} catch (SQLException e) {
+				LOG.warn("Réplica {} indisponible, mis de côté : {}", replica.name, e.getMessage());
+				replica.healthy = false;
+			}
+		}
+		return connect(primary, username, password);
+	}
+
+	/**
+	 * Checks every replica, putting back into rotation those answering again and
+	 * setting aside those no longer answering.
+	 */
+	public void checkHealth() {
+		for (Replica replica : replicas) {
+			boolean healthy;
+			try (Connection connection = replica.dataSource.getConnection()) {
+				healthy = connection.isValid(VALIDATION_TIMEOUT);
+			} catch (SQLException e) {
+				healthy = false;
+			}
+			if (healthy != replica.healthy) {
+				LOG.info("Réplica {} {}", replica.name, healthy ? "de nouveau disponible" : "indisponible");
+			}
+			replica.healthy = healthy;
+		}
+	}
+
+	/**
+	 * Retrieves the names of the replicas currently in rotation.
+	 *
+	 * @return the names of the healthy replicas
+	 */
+	public List<String> getHealthyReplicas() {
+		return replicas.stream().filter(Replica::isHealthy).map(replica -> replica.name).toList();
+	}
+
+	/**
+	 * Stops checking the replicas and closes their pools. The primary is left
+	 * open.
+	 */
+	@Override
+	public void close() {
+		healthChecker.shutdownNow();
+		for (Replica replica : replicas) {
+			if (replica.dataSource instanceof Closeable closeable) {
+				try {
+					closeable.close();
+				} catch (IOException e) {
+					LOG.warn("Fermeture du réplica {} impossible : {}", replica.name, e.getMessage());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets a connection, with the given credentials if any.
+	 *
+	 * @param dataSource the data source
+	 * @param username   the user name, or null for the default one
+	 * @param password   the password, or null for the default one
+	 * @return the connection
+	 * @throws SQLException if no connection can be obtained
+	 */
+	private static Connection connect(DataSource dataSource, String username, String password)
+			throws SQLException {
+		return username == null ? dataSource.getConnection() : dataSource.getConnection(username, password);
+	}
+}
@@ -1,7 +1,7 @@
 package fr.diginamic.hello.controleurs;
 
 import java.io.IOException;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -9,10 +9,12 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.expression.AccessException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
@@ -22,16 +24,22 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.itextpdf.text.DocumentException;
 
+import fr.diginamic.hello.dto.BulkRowResultDto;
+import fr.diginamic.hello.dto.DepartementBulkRow;
+import fr.diginamic.hello.dto.PopulationQuantilesDto;
+import fr.diginamic.hello.dto.PopulationStatsDto;
 import fr.diginamic.hello.entities.Departement;
-import fr.diginamic.hello.entities.Ville;
+import fr.diginamic.hello.services.BulkImportService;
 import fr.diginamic.hello.services.DepartementService;
-import fr.diginamic.hello.services.PdfGenerationService;
-import fr.diginamic.hello.services.VilleService;
+import fr.diginamic.hello.services.PopulationStatsService;
+import fr.diginamic.hello.services.ReferenceDataResponseCache;
+import fr.diginamic.hello.services.VilleStreamingService;
 
 /**
  * REST controller for managing departments. This controller handles the HTTP
@@ -47,23 +55,31 @@ public class DepartementControleur {
 	DepartementService depService;
 
 	@Autowired
-	VilleService villeService;
+	VilleStreamingService villeStreamingService;
 
 	@Autowired
-	PdfGenerationService pdfGenerationService;
+	ReferenceDataResponseCache referenceDataResponseCache;
+
+	@Autowired
+	PopulationStatsService populationStatsService;
+
+	@Autowired
+	BulkImportService bulkImportService;
 
 	/**
-	 * Retrieves all departments.
+	 * Retrieves all departments. The JSON body is served pre-serialized, and
+	 * gzipped when the client accepts it, until a department changes.
 	 *
+	 * @param acceptEncoding The Accept-Encoding header of the request.
 	 * @return A ResponseEntity containing a list of all departments.
 	 */
 
 	@Operation(summary = "Retrieves all departments")
 	@ApiResponse(responseCode = "200", description = "Successfully retrieved all departments", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Departement.class)))
 	@GetMapping
-	public ResponseEntity<?> getDepartements() {
-		List<Departement> departements = depService.extractDepartements();
-		return ResponseEntity.ok(departements);
+	public ResponseEntity<?> getDepartements(
+			@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+		return SerializedResponseEntities.of(referenceDataResponseCache.getDepartements(), acceptEncoding);
 	}
 
 	/**
@@ -110,6 +126,27 @@ public class DepartementControleur {
 
 	}
 
+	/**
+	 * Creates or updates many departments at once from an NDJSON body, one
+	 * department per line. The lines are validated as they are received and
+	 * persisted in chunks, and the outcome of each line is streamed back as
+	 * NDJSON, in the order of the lines.
+	 *
+	 * @param request  HttpServletRequest whose body holds the departments.
+	 * @param response HttpServletResponse to stream the outcomes to.
+	 * @throws IOException If an input or output exception occurred
+	 */
+
+	@Operation(summary = "Create or update many departments from an NDJSON body", description = "Each line is a department identified by its code, created if it does not exist yet, otherwise moved to the given region.")
+	@ApiResponse(responseCode = "200", description = "Lines processed, with the outcome of each line", content = @Content(mediaType = BulkImportService.NDJSON, schema = @Schema(implementation = BulkRowResultDto.class)))
+	@PostMapping(path = "/bulk", consumes = BulkImportService.NDJSON)
+	public void importDepartements(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		response.setContentType(BulkImportService.NDJSON);
+		response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		bulkImportService.importLines(request.getInputStream(), response.getOutputStream(), DepartementBulkRow.class,
+				depService::upsertDepartements);
+	}
+
 	/**
 	 * Updates an existing department by its ID.
 	 *
@@ -147,6 +184,42 @@ public class DepartementControleur {
 		return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
 	}
 
+	/**
+	 * Retrieves the population figures of a department: its number of cities,
+	 * their summed populations and the populations of the smallest and largest.
+	 * They are read from a precomputed rollup, not from the cities.
+	 *
+	 * @param codeDepartement The code of the department.
+	 * @return A ResponseEntity containing the figures of the department.
+	 */
+
+	@Operation(summary = "Get the population figures of a department")
+	@ApiResponses(value = {
+			@ApiResponse(responseCode = "200", description = "Figures retrieved successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = PopulationStatsDto.class))),
+			@ApiResponse(responseCode = "404", description = "Department not found") })
+	@GetMapping("/{codeDepartement}/stats")
+	public ResponseEntity<PopulationStatsDto> getDepartementStats(@PathVariable String codeDepartement) {
+		return ResponseEntity.ok(populationStatsService.getDepartementStats(codeDepartement));
+	}
+
+	/**
+	 * Retrieves the median, 90th and 99th percentiles of the populations of the
+	 * cities of a department. They are estimated from an in-memory sketch, not
+	 * from the cities.
+	 *
+	 * @param codeDepartement The code of the department.
+	 * @return A ResponseEntity containing the quantiles of the department.
+	 */
+
+	@Operation(summary = "Get the population quantiles of a department")
+	@ApiResponses(value = {
+			@ApiResponse(responseCode = "200", description = "Quantiles retrieved successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = PopulationQuantilesDto.class))),
+			@ApiResponse(responseCode = "404", description = "Department not found") })
+	@GetMapping("/{codeDepartement}/stats/quantiles")
+	public ResponseEntity<PopulationQuantilesDto> getDepartementQuantiles(@PathVariable String codeDepartement) {
+		return ResponseEntity.ok(populationStatsService.getDepartementQuantiles(codeDepartement));
+	}
+
 	/**
 	 * Exports the cities from a given department into a PDF file.
 	 * 
@@ -163,12 +236,11 @@ public class DepartementControleur {
 			throws DocumentException, IOException {
 		response.setHeader("Content-Disposition", "attachment; filename=\"top_villes.pdf\"");
 		Departement departement = depService.getDepartementByCode(codeDepartement);
-		List<Ville> cities = villeService.findByDepartement(departement);
 
 		String titlePDF = "Liste des villes du département " + codeDepartement;
 		String[] headers = { "NOM VILLE", "POPULATION" };
 
-		pdfGenerationService.generatePDFReport(titlePDF, headers, cities, response.getOutputStream());
+		villeStreamingService.writeVillesPdf(departement.getCode(), titlePDF, headers, response.getOutputStream());
 		response.flushBuffer();
 	}
 
@@ -8,17 +8,28 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import fr.diginamic.hello.dto.BulkRowResultDto;
+import fr.diginamic.hello.dto.PopulationQuantilesDto;
+import fr.diginamic.hello.dto.PopulationStatsDto;
+import fr.diginamic.hello.dto.RegionBulkRow;
 import fr.diginamic.hello.entities.Region;
+import fr.diginamic.hello.services.BulkImportService;
+import fr.diginamic.hello.services.PopulationStatsService;
+import fr.diginamic.hello.services.ReferenceDataResponseCache;
 import fr.diginamic.hello.services.RegionService;
 
-import java.util.List;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -35,24 +46,31 @@ public class RegionControleur {
 	@Autowired
 	private RegionService regionService;
 
+	@Autowired
+	private ReferenceDataResponseCache referenceDataResponseCache;
+
+	@Autowired
+	private PopulationStatsService populationStatsService;
+
+	@Autowired
+	private BulkImportService bulkImportService;
+
 	/**
-	 * Retrieves all regions.
+	 * Retrieves all regions. The JSON body is served pre-serialized, and gzipped
+	 * when the client accepts it, until a region or department changes.
 	 *
-	 * @return A ResponseEntity containing a list of all regions or NO_CONTENT if
-	 *         there are no regions.
+	 * @param acceptEncoding The Accept-Encoding header of the request.
+	 * @return A ResponseEntity containing a list of all regions, empty if there
+	 *         are none.
 	 */
 
 	@Operation(summary = "Retrieve all regions")
 	@ApiResponses(value = {
-			@ApiResponse(responseCode = "200", description = "Regions found", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Region.class))),
-			@ApiResponse(responseCode = "204", description = "No regions found") })
+			@ApiResponse(responseCode = "200", description = "Regions found", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Region.class))) })
 	@GetMapping
-	public ResponseEntity<List<Region>> getAllRegions() {
-		List<Region> regions = regionService.getAllRegions();
-		if (regions.isEmpty()) {
-			return new ResponseEntity<>(HttpStatus.NO_CONTENT);
-		}
-		return new ResponseEntity<>(regions, HttpStatus.OK);
+	public ResponseEntity<byte[]> getAllRegions(
+			@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+		return SerializedResponseEntities.of(referenceDataResponseCache.getRegions(), acceptEncoding);
 	}
 
 	/**
@@ -78,6 +96,42 @@ public class RegionControleur {
 		}
 	}
 
+	/**
+	 * Retrieves the population figures of a region: its number of cities, their
+	 * summed populations and the populations of the smallest and largest. They
+	 * are read from a precomputed rollup, not from the cities.
+	 *
+	 * @param code The code of the region.
+	 * @return A ResponseEntity containing the figures of the region.
+	 */
+
+	@Operation(summary = "Retrieve the population figures of a region by code")
+	@ApiResponses(value = {
+			@ApiResponse(responseCode = "200", description = "Figures found", content = @Content(mediaType = "application/json", schema = @Schema(implementation = PopulationStatsDto.class))),
+			@ApiResponse(responseCode = "404", description = "Region not found") })
+	@GetMapping("/{code}/stats")
+	public ResponseEntity<PopulationStatsDto> getRegionStats(@PathVariable("code") String code) {
+		return ResponseEntity.ok(populationStatsService.getRegionStats(code));
+	}
+
+	/**
+	 * Retrieves the median, 90th and 99th percentiles of the populations of the
+	 * cities of a region. They are estimated by merging the in-memory sketches of
+	 * its departments, not from the cities.
+	 *
+	 * @param code The code of the region.
+	 * @return A ResponseEntity containing the quantiles of the region.
+	 */
+
+	@Operation(summary = "Retrieve the population quantiles of a region by code")
+	@ApiResponses(value = {
+			@ApiResponse(responseCode = "200", description = "Quantiles found", content = @Content(mediaType = "application/json", schema = @Schema(implementation = PopulationQuantilesDto.class))),
+			@ApiResponse(responseCode = "404", description = "Region not found") })
+	@GetMapping("/{code}/stats/quantiles")
+	public ResponseEntity<PopulationQuantilesDto> getRegionQuantiles(@PathVariable("code") String code) {
+		return ResponseEntity.ok(populationStatsService.getRegionQuantiles(code));
+	}
+
 	/**
 	 * Creates a new region.
 	 *
@@ -105,6 +159,27 @@ public class RegionControleur {
 		}
 	}
 
+	/**
+	 * Creates or updates many regions at once from an NDJSON body, one
+	 * region per line. The lines are validated as they are received and
+	 * persisted in chunks, and the outcome of each line is streamed back as
+	 * NDJSON, in the order of the lines.
+	 *
+	 * @param request  HttpServletRequest whose body holds the regions.
+	 * @param response HttpServletResponse to stream the outcomes to.
+	 * @throws IOException If an input or output exception occurred
+	 */
+
+	@Operation(summary = "Create or update many regions from an NDJSON body", description = "Each line is a region identified by its code, created if it does not exist yet, otherwise renamed.")
+	@ApiResponse(responseCode = "200", description = "Lines processed, with the outcome of each line", content = @Content(mediaType = BulkImportService.NDJSON, schema = @Schema(implementation = BulkRowResultDto.class)))
+	@PostMapping(path = "/bulk", consumes = BulkImportService.NDJSON)
+	public void importRegions(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		response.setContentType(BulkImportService.NDJSON);
+		response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		bulkImportService.importLines(request.getInputStream(), response.getOutputStream(), RegionBulkRow.class,
+				regionService::upsertRegions);
+	}
+
 	/**
 	 * Updates an existing region by its ID.
 	 *
@@ -0,0 +1,73 @@
+package fr.diginamic.hello.controleurs;
+
+import java.util.Locale;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import fr.diginamic.hello.services.ReferenceDataResponseCache.SerializedResponse;
+
+/**
+ * Builds HTTP responses from pre-serialized JSON bodies, sending the gzipped
+ * body to clients that accept it. As the body depends on the Accept-Encoding
+ * header, every response varies on it.
+ */
+final class SerializedResponseEntities {
+
+	private SerializedResponseEntities() {
+	}
+
+	/**
+	 * Builds the response for a serialized list.
+	 *
+	 * @param response       the serialized list
+	 * @param acceptEncoding the Accept-Encoding header of the request, may be null
+	 * @return a response with the JSON body
+	 */
+	static ResponseEntity<byte[]> of(SerializedResponse response, String acceptEncoding) {
+		ResponseEntity.BodyBuilder builder = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+				.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		if (acceptsGzip(acceptEncoding)) {
+			return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(response.gzipped());
+		}
+		return builder.body(response.json());
+	}
+
+	/**
+	 * Tells whether an Accept-Encoding header accepts gzip: gzip, or failing that
+	 * the wildcard, must be listed with a quality value above zero.
+	 *
+	 * @param acceptEncoding the Accept-Encoding header, may be null
+	 * @return true if the gzipped body may be sent
+	 */
+	static boolean acceptsGzip(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return false;
+		}
+		Double gzip = null;
+		Double wildcard = null;
+		for (String element : acceptEncoding.split(",")) {
+			String[] parts = element.split(";");
+			String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+			double quality = 1;
+			for (int i = 1; i < parts.length; i++) {
+				String parameter = parts[i].trim();
+				if (parameter.length() > 2 && parameter.substring(0, 2).equalsIgnoreCase("q=")) {
+					try {
+						quality = Double.parseDouble(parameter.substring(2).trim());
+					} catch (NumberFormatException e) {
+						quality = 0;
+					}
+				}
+			}
+			if (coding.equals("gzip") || coding.equals("x-gzip")) {
+				gzip = quality;
+			} else if (coding.equals("*")) {
+				wildcard = quality;
+			}
+		}
+		Double quality = gzip != null ? gzip : wildcard;
+		return quality != null && quality > 0;
+	}
+}
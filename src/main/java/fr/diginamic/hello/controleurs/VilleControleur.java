@@ -2,17 +2,39 @@ package fr.diginamic.hello.controleurs;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import fr.diginamic.hello.dto.BulkRowResultDto;
+import fr.diginamic.hello.dto.CacheStatsDto;
+import fr.diginamic.hello.dto.PopulationQuantilesDto;
+import fr.diginamic.hello.dto.SingleFlightStatsDto;
+import fr.diginamic.hello.dto.VilleBatchKey;
+import fr.diginamic.hello.dto.VilleBatchResultDto;
+import fr.diginamic.hello.dto.VilleBulkRow;
+import fr.diginamic.hello.dto.VilleCursorPageDto;
 import fr.diginamic.hello.dto.VilleDto;
+import fr.diginamic.hello.dto.VilleRankDto;
+import fr.diginamic.hello.dto.VilleResumeDto;
 import fr.diginamic.hello.entities.Departement;
 import fr.diginamic.hello.entities.Ville;
+import fr.diginamic.hello.index.FuzzyNomIndex;
+import fr.diginamic.hello.index.VilleSnapshot;
+import fr.diginamic.hello.services.BulkImportService;
 import fr.diginamic.hello.services.CSVGenerationService;
+import fr.diginamic.hello.services.CacheStatsService;
 import fr.diginamic.hello.services.DepartementService;
-import fr.diginamic.hello.services.PdfGenerationService;
+import fr.diginamic.hello.services.ExportCacheService;
+import fr.diginamic.hello.services.ExportCacheService.CachedExport;
+import fr.diginamic.hello.services.ExportCacheService.ExportFormat;
+import fr.diginamic.hello.services.PopulationStatsService;
+import fr.diginamic.hello.services.SingleFlight;
+import fr.diginamic.hello.services.VilleCursor;
+import fr.diginamic.hello.services.VilleQuery;
 import fr.diginamic.hello.services.VilleService;
+import fr.diginamic.hello.services.VilleStreamingService;
 
 import io.swagger.v3.oas.annotations.tags.Tag;
 import io.swagger.v3.oas.annotations.Operation;
@@ -20,6 +42,7 @@ import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 
@@ -27,6 +50,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.InputStreamResource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -41,8 +65,8 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-
-import com.itextpdf.text.DocumentException;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -63,13 +87,25 @@ public class VilleControleur {
 	private DepartementService depService;
 
 	@Autowired
-	private PdfGenerationService pdfGenerationService;
+	private CSVGenerationService csvGenerationService;
 
 	@Autowired
-	private CSVGenerationService csvExportService;
-	
+	private CacheStatsService cacheStatsService;
+
 	@Autowired
-	private CSVGenerationService csvGenerationService;
+	private ExportCacheService exportCacheService;
+
+	@Autowired
+	private SingleFlight singleFlight;
+
+	@Autowired
+	private VilleStreamingService villeStreamingService;
+
+	@Autowired
+	private PopulationStatsService populationStatsService;
+
+	@Autowired
+	private BulkImportService bulkImportService;
 
 	List<Ville> villes = new ArrayList<Ville>();
 
@@ -92,6 +128,90 @@ public class VilleControleur {
 		return ResponseEntity.ok(pageResult);
 	}
 
+	/**
+	 * Retrieves a slice of cities, without any total: the response only tells
+	 * whether a next slice exists, so no count query is run.
+	 *
+	 * @param page The page number to retrieve (default 0).
+	 * @param size The number of records per page (default 100, bounded by the
+	 *             server).
+	 * @return A ResponseEntity containing a slice of cities.
+	 */
+
+	@Operation(summary = "Get a slice of cities, without counting them")
+	@ApiResponses(value = {
+			@ApiResponse(responseCode = "200", description = "Successfully retrieved list", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Slice.class))) })
+	@GetMapping(params = "slice=true")
+	public ResponseEntity<Slice<Ville>> getVillesSlice(@RequestParam(value = "page", defaultValue = "0") int page,
+			@RequestParam(value = "size", defaultValue = "100") int size) {
+		return ResponseEntity.ok(villeService.extractVillesSlice(PageRequest.of(page, size)));
+	}
+
+	/**
+	 * Streams the cities of some departments, or all cities, as a JSON array
+	 * written while the cities are read from the database, so that the response
+	 * size does not depend on the memory of the server.
+	 *
+	 * @param departements The codes of the departments, or none for all cities.
+	 * @return A ResponseEntity streaming the JSON array of the cities, or
+	 *         NOT_FOUND if a department does not exist.
+	 */
+
+	@Operation(summary = "Stream all the cities of some departments as a JSON array")
+	@ApiResponses(value = {
+			@ApiResponse(responseCode = "200", description = "Cities streamed", content = @Content(mediaType = "application/json", schema = @Schema(implementation = List.class))),
+			@ApiResponse(responseCode = "404", description = "Department not found") })
+	@GetMapping("/stream")
+	public ResponseEntity<StreamingResponseBody> streamVilles(
+			@RequestParam(value = "departements", required = false) List<String> departements) {
+		// Checked before the body is written, as the status cannot change afterwards
+		if (departements != null) {
+			departements.forEach(depService::getDepartementByCode);
+		}
+		StreamingResponseBody body = outputStream -> villeStreamingService.writeVilles(departements, outputStream);
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+	}
+
+	/**
+	 * Retrieves the number of cities, for clients of the slice or cursor listings
+	 * needing a total.
+	 *
+	 * @return A ResponseEntity containing the number of cities.
+	 */
+
+	@Operation(summary = "Get the number of cities")
+	@ApiResponse(responseCode = "200", description = "Successfully retrieved the number of cities")
+	@GetMapping("/count")
+	public ResponseEntity<Long> getVillesCount() {
+		return ResponseEntity.ok(villeService.countVilles());
+	}
+
+	/**
+	 * Retrieves a page of cities with keyset pagination. The first page is
+	 * requested with an empty cursor and the chosen order; each response carries
+	 * the cursor of the next page, which already encodes the order.
+	 *
+	 * @param cursor The cursor returned with the previous page, or empty for the
+	 *               first page.
+	 * @param order  The order of the listing for the first page: ID (default) or
+	 *               POPULATION, by decreasing number of inhabitants.
+	 * @param size   The number of records per page (default 100, bounded by the
+	 *               server).
+	 * @return A ResponseEntity containing the cities and the next cursor.
+	 */
+
+	@Operation(summary = "Get a page of cities with cursor-based pagination")
+	@ApiResponses(value = {
+			@ApiResponse(responseCode = "200", description = "Successfully retrieved list", content = @Content(mediaType = "application/json", schema = @Schema(implementation = VilleCursorPageDto.class))),
+			@ApiResponse(responseCode = "400", description = "Invalid cursor") })
+	@GetMapping(params = "cursor")
+	public ResponseEntity<VilleCursorPageDto> getVillesByCursor(@RequestParam(value = "cursor") String cursor,
+			@RequestParam(value = "order", defaultValue = "ID") VilleCursor.Order order,
+			@RequestParam(value = "size", defaultValue = "100") int size) {
+		VilleCursor position = cursor.isBlank() ? VilleCursor.start(order) : VilleCursor.decode(cursor);
+		return ResponseEntity.ok(villeService.scrollVilles(position, size));
+	}
+
 	/**
 	 * Retrieves a city by its ID.
 	 *
@@ -111,6 +231,44 @@ public class VilleControleur {
 
 	}
 
+	/**
+	 * Retrieves the population rank of a city among every city and within its
+	 * department. The ranks are read from an in-memory index, not counted in the
+	 * database.
+	 *
+	 * @param id The ID of the city.
+	 * @return A ResponseEntity containing the ranks of the city.
+	 */
+
+	@Operation(summary = "Get the population rank of a city, nationally and within its department")
+	@ApiResponses(value = {
+			@ApiResponse(responseCode = "200", description = "Rank retrieved successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = VilleRankDto.class))),
+			@ApiResponse(responseCode = "404", description = "City not found") })
+	@GetMapping("/{id}/rank")
+	public ResponseEntity<VilleRankDto> getVilleRank(@PathVariable int id) {
+		return ResponseEntity.ok(villeService.getRank(id));
+	}
+
+	/**
+	 * Retrieves many cities at once, by ID or by department and commune code,
+	 * such as {@code [{"id": 1}, {"codeDepartement": "34", "codeCommune": "172"}]}.
+	 * The keys are resolved with a few grouped queries rather than one request
+	 * per city.
+	 *
+	 * @param keys The keys of the cities (at most 1000 by default).
+	 * @return A ResponseEntity containing the result of each key, in the order of
+	 *         the keys, with the keys matching no city flagged as not found.
+	 */
+
+	@Operation(summary = "Get many cities at once by ID or by department and commune code")
+	@ApiResponses(value = {
+			@ApiResponse(responseCode = "200", description = "Cities looked up successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = List.class))),
+			@ApiResponse(responseCode = "400", description = "Too many keys, or incomplete key") })
+	@PostMapping("/batch-get")
+	public ResponseEntity<List<VilleBatchResultDto>> batchGetVilles(@RequestBody List<VilleBatchKey> keys) {
+		return ResponseEntity.ok(villeService.batchGet(keys));
+	}
+
 	/**
 	 * Creates a new city.
 	 *
@@ -134,6 +292,27 @@ public class VilleControleur {
 		return ResponseEntity.status(HttpStatus.CREATED).body(newVille);
 	}
 
+	/**
+	 * Creates or updates many cities at once from an NDJSON body, one
+	 * city per line. The lines are validated as they are received and
+	 * persisted in chunks, and the outcome of each line is streamed back as
+	 * NDJSON, in the order of the lines.
+	 *
+	 * @param request  HttpServletRequest whose body holds the cities.
+	 * @param response HttpServletResponse to stream the outcomes to.
+	 * @throws IOException If an input or output exception occurred
+	 */
+
+	@Operation(summary = "Create or update many cities from an NDJSON body", description = "Each line is a city identified by its department and commune code, created if it does not exist yet, otherwise updated.")
+	@ApiResponse(responseCode = "200", description = "Lines processed, with the outcome of each line", content = @Content(mediaType = BulkImportService.NDJSON, schema = @Schema(implementation = BulkRowResultDto.class)))
+	@PostMapping(path = "/bulk", consumes = BulkImportService.NDJSON)
+	public void importVilles(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		response.setContentType(BulkImportService.NDJSON);
+		response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		bulkImportService.importLines(request.getInputStream(), response.getOutputStream(), VilleBulkRow.class,
+				villeService::upsertVilles);
+	}
+
 	/**
 	 * Updates an existing city by its ID.
 	 *
@@ -187,12 +366,12 @@ public class VilleControleur {
 
 	@Operation(summary = "Retrieve the top N most populated cities in a specified department")
 	@ApiResponses(value = {
-			@ApiResponse(responseCode = "200", description = "Successfully retrieved top cities", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Ville.class))),
+			@ApiResponse(responseCode = "200", description = "Successfully retrieved top cities", content = @Content(mediaType = "application/json", schema = @Schema(implementation = VilleResumeDto.class))),
 			@ApiResponse(responseCode = "404", description = "Department not found") })
 	@GetMapping("/departement/{departementId}/top-villes")
 	public ResponseEntity<?> getTopNVillesByDepartement(@PathVariable int departementId,
 			@RequestParam(name = "maxResults", defaultValue = "5") int maxResults) {
-		List<Ville> villes = villeService.findTopNVillesByDepartement(departementId, maxResults);
+		List<VilleResumeDto> villes = villeService.findTopNVillesByDepartement(departementId, maxResults);
 		return ResponseEntity.ok(villes);
 	}
 
@@ -203,37 +382,130 @@ public class VilleControleur {
 	 * @param minPopulation The minimum population of the cities.
 	 * @param maxPopulation The maximum population of the cities.
 	 * @param departementId The ID of the department.
-	 * @return A ResponseEntity containing a list of cities if any match the
+	 * @param page          The page number to retrieve (default 0).
+	 * @param size          The number of records per page (default 100, bounded
+	 *                      by the server).
+	 * @return A ResponseEntity containing a slice of cities if any match the
 	 *         criteria, or NOT_FOUND if none found.
 	 */
 
 	@Operation(summary = "Retrieve cities within a specific population range in a specified department")
 	@ApiResponses(value = {
-			@ApiResponse(responseCode = "200", description = "Cities found", content = @Content(mediaType = "application/json", schema = @Schema(implementation = List.class))),
+			@ApiResponse(responseCode = "200", description = "Cities found", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Slice.class))),
 			@ApiResponse(responseCode = "404", description = "Department not found") })
 	@GetMapping("/departement/{departementId}/population")
 	public ResponseEntity<?> getVillesByPopulationAndDepartement(
 			@RequestParam(name = "minPopulation") int minPopulation,
-			@RequestParam(name = "maxPopulation") int maxPopulation, @PathVariable int departementId) {
+			@RequestParam(name = "maxPopulation") int maxPopulation, @PathVariable int departementId,
+			@RequestParam(value = "page", defaultValue = "0") int page,
+			@RequestParam(value = "size", defaultValue = "100") int size) {
 
 		Departement departement = depService.extractDepartement(departementId);
-		List<Ville> villes = villeService.findVillesByPopulationAndDepartement(minPopulation, maxPopulation,
-				departement);
+		Slice<VilleResumeDto> villes = villeService.findVillesByPopulationAndDepartement(minPopulation, maxPopulation,
+				departement, PageRequest.of(page, size));
 		return ResponseEntity.ok(villes);
 	}
 
+	/**
+	 * Suggests cities whose name starts with the typed prefix, the most populated
+	 * first. Case, accents and punctuation are ignored, so "saint eti" matches
+	 * Saint-Étienne.
+	 *
+	 * @param prefix The typed prefix.
+	 * @param limit  The maximum number of suggestions (default 10, bounded by the
+	 *               server).
+	 * @return A ResponseEntity containing the suggested cities.
+	 */
+
+	@Operation(summary = "Suggest cities whose name starts with a prefix, the most populated first")
+	@ApiResponses(value = {
+			@ApiResponse(responseCode = "200", description = "Suggestions retrieved successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = List.class))),
+			@ApiResponse(responseCode = "400", description = "Prefix without any letter or digit") })
+	@GetMapping("/autocomplete")
+	public ResponseEntity<List<VilleSnapshot>> autocomplete(@RequestParam String prefix,
+			@RequestParam(value = "limit", defaultValue = "10") int limit) {
+		return ResponseEntity.ok(villeService.autocomplete(prefix, limit));
+	}
+
+	/**
+	 * Finds the cities whose name is the closest to a possibly misspelt one, such
+	 * as "Besancon" for Besançon, the best matches first.
+	 *
+	 * @param nom   The name searched for.
+	 * @param limit The maximum number of cities (default 10, bounded by the
+	 *              server).
+	 * @return A ResponseEntity containing the matching cities with their
+	 *         similarity, or NOT_FOUND if no name is close enough.
+	 */
+
+	@Operation(summary = "Find the cities whose name is the closest to a possibly misspelt one")
+	@ApiResponses(value = {
+			@ApiResponse(responseCode = "200", description = "Cities found", content = @Content(mediaType = "application/json", schema = @Schema(implementation = List.class))),
+			@ApiResponse(responseCode = "400", description = "Name without any letter or digit"),
+			@ApiResponse(responseCode = "404", description = "No city name is close enough") })
+	@GetMapping("/fuzzy")
+	public ResponseEntity<List<FuzzyNomIndex.Match>> getVillesByFuzzyNom(@RequestParam String nom,
+			@RequestParam(value = "limit", defaultValue = "10") int limit) {
+		return ResponseEntity.ok(villeService.fuzzySearch(nom, limit));
+	}
+
+	/**
+	 * Retrieves the cities matching any combination of filters, in a single
+	 * database round trip, or from in-memory bitmaps when no name prefix is
+	 * given. Every filter is optional.
+	 *
+	 * @param departements    The codes of the departments of the cities.
+	 * @param region          The code of the region of the cities.
+	 * @param arrondissements The codes of the arrondissements of the cities.
+	 * @param cantons         The codes of the cantons of the cities.
+	 * @param minPopulation   The minimum number of inhabitants, inclusive.
+	 * @param maxPopulation   The maximum number of inhabitants, inclusive.
+	 * @param prefix          The start of the name of the cities, case-sensitive.
+	 * @param sort            The order of the cities: POPULATION (default), by
+	 *                        decreasing number of inhabitants, or NOM.
+	 * @param limit           The maximum number of cities (default 100, bounded
+	 *                        by the server).
+	 * @return A ResponseEntity containing the matching city summaries.
+	 */
+
+	@Operation(summary = "Get the cities matching any combination of filters")
+	@ApiResponses(value = {
+			@ApiResponse(responseCode = "200", description = "Cities retrieved successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = List.class))),
+			@ApiResponse(responseCode = "400", description = "Invalid population range"),
+			@ApiResponse(responseCode = "404", description = "No city matches the filters") })
+	@GetMapping("/query")
+	public ResponseEntity<List<VilleResumeDto>> queryVilles(
+			@RequestParam(value = "departements", required = false) List<String> departements,
+			@RequestParam(value = "region", required = false) String region,
+			@RequestParam(value = "arrondissements", required = false) List<String> arrondissements,
+			@RequestParam(value = "cantons", required = false) List<String> cantons,
+			@RequestParam(value = "minPopulation", required = false) Long minPopulation,
+			@RequestParam(value = "maxPopulation", required = false) Long maxPopulation,
+			@RequestParam(value = "prefix", required = false) String prefix,
+			@RequestParam(value = "sort", defaultValue = "POPULATION") VilleQuery.Order sort,
+			@RequestParam(value = "limit", defaultValue = "100") int limit) {
+		VilleQuery query = new VilleQuery(departements, region, arrondissements, cantons, minPopulation, maxPopulation,
+				prefix, sort, limit);
+		return ResponseEntity.ok(villeService.query(query));
+	}
+
 	/**
 	 * Get a list of cities where the name starts with a specified prefix.
 	 * 
 	 * @param prefix The prefix to match city names against.
-	 * @return A list of Ville objects or an empty list if none found.
+	 * @param page   The page number to retrieve (default 0).
+	 * @param size   The number of records per page (default 100, bounded by the
+	 *               server).
+	 * @return A slice of city summaries, ordered by name.
 	 */
 
 	@Operation(summary = "Get a list of cities where the name starts with a specified prefix")
-	@ApiResponse(responseCode = "200", description = "Cities retrieved successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = List.class)))
+	@ApiResponse(responseCode = "200", description = "Cities retrieved successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Slice.class)))
 	@GetMapping("/search")
-	public ResponseEntity<List<Ville>> getVillesByNomStartingWith(@RequestParam String prefix) {
-		List<Ville> villes = villeService.findByNomStartingWith(prefix);
+	public ResponseEntity<Slice<VilleResumeDto>> getVillesByNomStartingWith(@RequestParam String prefix,
+			@RequestParam(value = "page", defaultValue = "0") int page,
+			@RequestParam(value = "size", defaultValue = "100") int size) {
+		Slice<VilleResumeDto> villes = villeService.findByNomStartingWith(prefix, PageRequest.of(page, size));
 		return ResponseEntity.ok(villes);
 	}
 
@@ -241,14 +513,20 @@ public class VilleControleur {
 	 * Retrieves all cities with a population greater than a specified minimum.
 	 *
 	 * @param minPopulation the minimum population threshold
-	 * @return a filtered list of cities
+	 * @param page          the page number to retrieve (default 0)
+	 * @param size          the number of records per page (default 100, bounded
+	 *                      by the server)
+	 * @return a slice of the filtered cities, by decreasing population
 	 */
 
 	@Operation(summary = "Retrieve all cities with a population greater than a specified minimum")
-	@ApiResponse(responseCode = "200", description = "Cities retrieved successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = List.class)))
+	@ApiResponse(responseCode = "200", description = "Cities retrieved successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Slice.class)))
 	@GetMapping("/search/by-min-population")
-	public ResponseEntity<List<Ville>> getVillesByMinPopulation(@RequestParam int minPopulation) {
-		List<Ville> villes = villeService.findByNbHabitantsGreaterThan(minPopulation);
+	public ResponseEntity<Slice<VilleResumeDto>> getVillesByMinPopulation(@RequestParam int minPopulation,
+			@RequestParam(value = "page", defaultValue = "0") int page,
+			@RequestParam(value = "size", defaultValue = "100") int size) {
+		Slice<VilleResumeDto> villes = villeService.findByNbHabitantsGreaterThan(minPopulation,
+				PageRequest.of(page, size));
 		return ResponseEntity.ok(villes);
 	}
 
@@ -258,15 +536,20 @@ public class VilleControleur {
 	 *
 	 * @param minPopulation the minimum population threshold
 	 * @param maxPopulation the maximum population threshold
-	 * @return a filtered list of cities
+	 * @param page          the page number to retrieve (default 0)
+	 * @param size          the number of records per page (default 100, bounded
+	 *                      by the server)
+	 * @return a slice of the filtered cities, by decreasing population
 	 */
 
 	@Operation(summary = "Retrieve all cities with a population between specified minimum and maximum limits")
-	@ApiResponse(responseCode = "200", description = "Cities retrieved successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = List.class)))
+	@ApiResponse(responseCode = "200", description = "Cities retrieved successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Slice.class)))
 	@GetMapping("/search/by-population-range")
 	public ResponseEntity<?> getVillesByPopulationRange(@RequestParam long minPopulation,
-			@RequestParam long maxPopulation) {
-		return ResponseEntity.ok(villeService.findByNbHabitantsBetween(minPopulation, maxPopulation));
+			@RequestParam long maxPopulation, @RequestParam(value = "page", defaultValue = "0") int page,
+			@RequestParam(value = "size", defaultValue = "100") int size) {
+		return ResponseEntity
+				.ok(villeService.findByNbHabitantsBetween(minPopulation, maxPopulation, PageRequest.of(page, size)));
 	}
 
 	/**
@@ -275,19 +558,25 @@ public class VilleControleur {
 	 *
 	 * @param departementCode the code of the department
 	 * @param minPopulation   the minimum population threshold
-	 * @return a filtered list of cities, or a 404 response if the department is not
-	 *         found
+	 * @param page            the page number to retrieve (default 0)
+	 * @param size            the number of records per page (default 100, bounded
+	 *                        by the server)
+	 * @return a slice of the filtered cities, or a 404 response if the department
+	 *         is not found
 	 */
 
 	@Operation(summary = "Retrieve all cities in a given department where the population is greater than a specified minimum")
 	@ApiResponses(value = {
-			@ApiResponse(responseCode = "200", description = "Cities retrieved successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = List.class))),
+			@ApiResponse(responseCode = "200", description = "Cities retrieved successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Slice.class))),
 			@ApiResponse(responseCode = "404", description = "Department not found") })
 	@GetMapping("/search/by-departement-and-min-population")
-	public ResponseEntity<List<Ville>> getVillesByDepartementAndMinPopulation(@RequestParam String departementCode,
-			@RequestParam int minPopulation) {
+	public ResponseEntity<Slice<VilleResumeDto>> getVillesByDepartementAndMinPopulation(
+			@RequestParam String departementCode, @RequestParam int minPopulation,
+			@RequestParam(value = "page", defaultValue = "0") int page,
+			@RequestParam(value = "size", defaultValue = "100") int size) {
 		Departement departement = depService.getDepartementByCode(departementCode);
-		List<Ville> villes = villeService.findByDepartementAndNbHabitantsGreaterThan(departement, minPopulation);
+		Slice<VilleResumeDto> villes = villeService.findByDepartementAndNbHabitantsGreaterThan(departement,
+				minPopulation, PageRequest.of(page, size));
 		return ResponseEntity.ok(villes);
 	}
 
@@ -298,21 +587,26 @@ public class VilleControleur {
 	 * @param departementCode the code of the department
 	 * @param minPopulation   the minimum population threshold
 	 * @param maxPopulation   the maximum population threshold
-	 * @return a filtered list of cities, or a 404 response if the department is not
-	 *         found
+	 * @param page            the page number to retrieve (default 0)
+	 * @param size            the number of records per page (default 100, bounded
+	 *                        by the server)
+	 * @return a slice of the filtered cities, or a 404 response if the department
+	 *         is not found
 	 */
 
 	@Operation(summary = "Retrieve all cities in a given department where the population is between specified minimum and maximum limits")
 	@ApiResponses(value = {
-			@ApiResponse(responseCode = "200", description = "Cities retrieved successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = List.class))),
+			@ApiResponse(responseCode = "200", description = "Cities retrieved successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Slice.class))),
 			@ApiResponse(responseCode = "404", description = "Department not found") })
 	@GetMapping("/search/by-departement-and-population-range")
-	public ResponseEntity<List<Ville>> getVillesByDepartementAndPopulationRange(@RequestParam String departementCode,
-			@RequestParam int minPopulation, @RequestParam int maxPopulation) {
+	public ResponseEntity<Slice<VilleResumeDto>> getVillesByDepartementAndPopulationRange(
+			@RequestParam String departementCode, @RequestParam int minPopulation, @RequestParam int maxPopulation,
+			@RequestParam(value = "page", defaultValue = "0") int page,
+			@RequestParam(value = "size", defaultValue = "100") int size) {
 		Departement departement = depService.getDepartementByCode(departementCode);
 
-		List<Ville> villes = villeService.findByDepartementAndNbHabitantsBetween(departement, minPopulation,
-				maxPopulation);
+		Slice<VilleResumeDto> villes = villeService.findByDepartementAndNbHabitantsBetween(departement, minPopulation,
+				maxPopulation, PageRequest.of(page, size));
 		return ResponseEntity.ok(villes);
 	}
 
@@ -327,59 +621,120 @@ public class VilleControleur {
 	@Operation(summary = "Retrieves the top n most populated cities in a given department")
 	@ApiResponse(responseCode = "200", description = "Successfully retrieved the top populated cities", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Ville.class)))
 	@GetMapping("/search/top-n-by-departement")
-	public ResponseEntity<List<Ville>> getTopNVillesByDepartement(@RequestParam String departementCode,
+	public ResponseEntity<List<VilleResumeDto>> getTopNVillesByDepartement(@RequestParam String departementCode,
 			@RequestParam int n) {
 		Departement departement = depService.getDepartementByCode(departementCode);
 
 		Pageable pageable = PageRequest.of(0, n, Sort.by(Sort.Direction.DESC, "nbHabitants"));
-		List<Ville> villes = villeService.findTopNVillesByDepartementOrderByNbHabitantsDesc(departement, pageable);
+		List<VilleResumeDto> villes = villeService.findTopNVillesByDepartementOrderByNbHabitantsDesc(departement,
+				pageable);
 		return ResponseEntity.ok(villes);
 	}
 
 	/**
-	 * Exports the top N cities into a PDF file.
+	 * Retrieves the median, 90th and 99th percentiles of the populations of every
+	 * city. They are estimated from an in-memory sketch, not from the cities.
+	 *
+	 * @return the population quantiles of the whole country
+	 */
+
+	@Operation(summary = "Retrieve the population quantiles of every city")
+	@ApiResponse(responseCode = "200", description = "Quantiles retrieved successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = PopulationQuantilesDto.class)))
+	@GetMapping("/stats/quantiles")
+	public ResponseEntity<PopulationQuantilesDto> getPopulationQuantiles() {
+		return ResponseEntity.ok(populationStatsService.getNationalQuantiles());
+	}
+
+	/**
+	 * Retrieves the hit ratio and size of the result cache of each city search
+	 * endpoint.
+	 *
+	 * @return the statistics of each search cache
+	 */
+
+	@Operation(summary = "Retrieve the statistics of the city search result caches")
+	@ApiResponse(responseCode = "200", description = "Cache statistics retrieved successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = List.class)))
+	@GetMapping("/search/cache-stats")
+	public ResponseEntity<List<CacheStatsDto>> getSearchCacheStats() {
+		return ResponseEntity.ok(cacheStatsService.getVilleSearchCacheStats());
+	}
+
+	/**
+	 * Retrieves, for the exports and the heaviest searches, how many requests
+	 * were computed and how many were coalesced with an identical request already
+	 * in flight.
+	 *
+	 * @return the coalescing statistics of each export or search
+	 */
+
+	@Operation(summary = "Retrieve how many identical concurrent requests were coalesced")
+	@ApiResponse(responseCode = "200", description = "Coalescing statistics retrieved successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = List.class)))
+	@GetMapping("/coalescing-stats")
+	public ResponseEntity<List<SingleFlightStatsDto>> getCoalescingStats() {
+		return ResponseEntity.ok(singleFlight.getStats());
+	}
+
+	/**
+	 * Exports the top N cities into a PDF file. The document is only generated
+	 * again once the cities have changed, and clients sending the entity tag of
+	 * their copy in If-None-Match get a NOT_MODIFIED response.
 	 * 
 	 * @param nbVilles Number of top cities to include in the PDF.
+	 * @param request  HttpServletRequest carrying the conditional headers.
 	 * @param response HttpServletResponse for setting up the file download.
-	 * @throws IOException       If an input or output exception occurred
-	 * @throws DocumentException If there is an error during document creation
+	 * @throws IOException If an input or output exception occurred
 	 */
 
 	@Operation(summary = "Export the top N cities to a PDF file", description = "Downloads a PDF file containing the top N cities based on the specified number.")
-	@ApiResponse(responseCode = "200", description = "PDF file successfully downloaded")
+	@ApiResponses(value = { @ApiResponse(responseCode = "200", description = "PDF file successfully downloaded"),
+			@ApiResponse(responseCode = "304", description = "PDF file not modified") })
 	@GetMapping("/pdf-export-top-villes")
-	public void exportTopNVillesToPDF(@RequestParam int nbVilles, HttpServletResponse response)
-			throws DocumentException, IOException {
-		response.setHeader("Content-Disposition", "attachment; filename=\"top_villes.pdf\"");
-		List<VilleDto> cities = villeService
-				.getTopNVillesDtos(PageRequest.of(0, nbVilles, Sort.by(Sort.Direction.DESC, "nbHabitants")));
-		pdfGenerationService.generateTopCitiesReport(cities, response.getOutputStream(), nbVilles);
-		response.flushBuffer();
+	public void exportTopNVillesToPDF(@RequestParam int nbVilles, HttpServletRequest request,
+			HttpServletResponse response) throws IOException {
+		writeExport(ExportFormat.PDF, nbVilles, "application/pdf", "top_villes.pdf", request, response);
 	}
 
 	/**
-	 * Exports the top N cities into a CSV file.
+	 * Exports the top N cities into a CSV file. The document is only generated
+	 * again once the cities have changed, and clients sending the entity tag of
+	 * their copy in If-None-Match get a NOT_MODIFIED response.
 	 * 
 	 * @param nbVilles Number of top cities to include in the CSV.
+	 * @param request  HttpServletRequest carrying the conditional headers.
 	 * @param response HttpServletResponse for setting up the file download.
 	 * @throws IOException If an input or output exception occurred
 	 */
 
 	@Operation(summary = "Export the top N cities to a CSV file", description = "Downloads a CSV file containing the top N cities based on the specified number.")
-	@ApiResponse(responseCode = "200", description = "CSV file successfully downloaded")
+	@ApiResponses(value = { @ApiResponse(responseCode = "200", description = "CSV file successfully downloaded"),
+			@ApiResponse(responseCode = "304", description = "CSV file not modified") })
 	@GetMapping("/csv-export-top-villes")
-	public void exportTopNVillesToCSV(@RequestParam int nbVilles, HttpServletResponse response) throws IOException {
+	public void exportTopNVillesToCSV(@RequestParam int nbVilles, HttpServletRequest request,
+			HttpServletResponse response) throws IOException {
 		if (nbVilles <= 0) {
 			response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
 			response.getWriter().write("Le nombre de villes doit etre supérieur à zero.");
 			return;
 		}
-		response.setHeader("Content-Disposition", "attachment; filename=\"top_villes.csv\"");
-
-		List<VilleDto> cities = villeService
-				.getTopNVillesDtos(PageRequest.of(0, nbVilles, Sort.by(Sort.Direction.DESC, "nbHabitants")));
+		writeExport(ExportFormat.CSV, nbVilles, "text/csv", "top_villes.csv", request, response);
+	}
 
-		csvExportService.generateCitiesCsvReport(cities, response.getOutputStream());
+	/**
+	 * Writes a cached top N cities export to the response, or a NOT_MODIFIED
+	 * status if the client already holds the current version.
+	 */
+	private void writeExport(ExportFormat format, int nbVilles, String contentType, String fileName,
+			HttpServletRequest request, HttpServletResponse response) throws IOException {
+		String etag = exportCacheService.getCurrentEtag(format, nbVilles);
+		if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+			return;
+		}
+		CachedExport export = exportCacheService.getTopVillesExport(format, nbVilles);
+		response.setHeader(HttpHeaders.ETAG, export.etag());
+		response.setHeader("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
+		response.setContentType(contentType);
+		response.setContentLength(export.content().length);
+		response.getOutputStream().write(export.content());
 		response.flushBuffer();
 	}
 
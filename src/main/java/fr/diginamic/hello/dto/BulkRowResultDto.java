@@ -0,0 +1,53 @@
+package fr.diginamic.hello.dto;
+
+/**
+ * Outcome of one line of a bulk import, reported in the order of the lines.
+ *
+ * @param line    the number of the line in the request body, from 1
+ * @param status  what was done with the line
+ * @param id      the ID of the created or updated entity, or null if the line
+ *                was rejected
+ * @param message the reason why the line was rejected, or null
+ */
+public record BulkRowResultDto(long line, Status status, Long id, String message) {
+
+	/**
+	 * What was done with a line.
+	 */
+	public enum Status {
+		CREATED, UPDATED, REJECTED
+	}
+
+	/**
+	 * Creates the outcome of a created entity.
+	 *
+	 * @param line the number of the line
+	 * @param id   the ID of the entity
+	 * @return the outcome
+	 */
+	public static BulkRowResultDto created(long line, long id) {
+		return new BulkRowResultDto(line, Status.CREATED, id, null);
+	}
+
+	/**
+	 * Creates the outcome of an updated entity.
+	 *
+	 * @param line the number of the line
+	 * @param id   the ID of the entity
+	 * @return the outcome
+	 */
+	public static BulkRowResultDto updated(long line, long id) {
+		return new BulkRowResultDto(line, Status.UPDATED, id, null);
+	}
+
+	/**
+	 * Creates the outcome of a rejected line.
+	 *
+	 * @param line    the number of the line
+	 * @param message the reason of the rejection
+	 * @return the outcome
+	 */
+	public static BulkRowResultDto rejected(long line, String message) {
+		return new BulkRowResultDto(line, Status.REJECTED, null, message);
+	}
+}
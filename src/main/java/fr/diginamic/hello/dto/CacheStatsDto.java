@@ -0,0 +1,18 @@
+package fr.diginamic.hello.dto;
+
+/**
+ * Statistics of a city search cache, as returned by the cache statistics
+ * endpoint.
+ *
+ * @param name            the name of the cache
+ * @param hitCount        the number of lookups answered from the cache
+ * @param missCount       the number of lookups that had to compute the result
+ * @param hitRatio        the share of lookups answered from the cache, 1 if
+ *                        there was no lookup
+ * @param evictionCount   the number of entries evicted for size or age
+ * @param entryCount      the estimated number of entries
+ * @param estimatedWeight the estimated size of the entries, in bytes
+ */
+public record CacheStatsDto(String name, long hitCount, long missCount, double hitRatio, long evictionCount,
+		long entryCount, long estimatedWeight) {
+}
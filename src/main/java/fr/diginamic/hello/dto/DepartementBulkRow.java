@@ -0,0 +1,19 @@
+package fr.diginamic.hello.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+/**
+ * One line of a bulk import of departments. A department is identified by its
+ * code: it is created if it does not exist yet, otherwise updated.
+ *
+ * @param code       the code of the department
+ * @param codeRegion the code of the region of the department, optional; left
+ *                   null, an existing department keeps its region
+ */
+public record DepartementBulkRow(
+		@NotNull(message = "Le code du département est obligatoire")
+		@Size(min = 1, max = 10, message = "Le code du département doit contenir de 1 à 10 caractères")
+		String code,
+		String codeRegion) {
+}
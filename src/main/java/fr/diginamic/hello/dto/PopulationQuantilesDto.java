@@ -0,0 +1,18 @@
+package fr.diginamic.hello.dto;
+
+/**
+ * Estimated distribution of the city populations of a department, a region or
+ * the whole country, as returned by the quantile endpoints. The quantiles come
+ * from sketches, within about 1% of the cities in rank.
+ *
+ * @param code       the code of the department or region, or null for the
+ *                   whole country
+ * @param nbCommunes the number of cities
+ * @param median     the median population, or null if there is no city
+ * @param p90        the population 90% of the cities do not exceed, or null if
+ *                   there is no city
+ * @param p99        the population 99% of the cities do not exceed, or null if
+ *                   there is no city
+ */
+public record PopulationQuantilesDto(String code, long nbCommunes, Long median, Long p90, Long p99) {
+}
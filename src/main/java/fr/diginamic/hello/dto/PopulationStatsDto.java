@@ -0,0 +1,20 @@
+package fr.diginamic.hello.dto;
+
+/**
+ * Population figures of a department or region, as returned by the statistics
+ * endpoints. Built directly by the queries from the rollup tables.
+ *
+ * @param code                   the code of the department or region
+ * @param nbCommunes             the number of cities
+ * @param nbHabitants            the sum of the numbers of inhabitants
+ * @param populationMunicipale   the sum of the municipal populations
+ * @param populationCompteeAPart the sum of the populations counted apart
+ * @param populationTotale       the sum of the total populations
+ * @param minHabitants           the population of the smallest city, or null
+ *                               if there is no city
+ * @param maxHabitants           the population of the largest city, or null if
+ *                               there is no city
+ */
+public record PopulationStatsDto(String code, long nbCommunes, long nbHabitants, long populationMunicipale,
+		long populationCompteeAPart, long populationTotale, Long minHabitants, Long maxHabitants) {
+}
@@ -0,0 +1,20 @@
+package fr.diginamic.hello.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+/**
+ * One line of a bulk import of regions. A region is identified by its code: it
+ * is created if it does not exist yet, otherwise renamed.
+ *
+ * @param code the code of the region
+ * @param nom  the name of the region
+ */
+public record RegionBulkRow(
+		@NotNull(message = "Le code de la région est obligatoire")
+		@Size(min = 1, max = 10, message = "Le code de la région doit contenir de 1 à 10 caractères")
+		String code,
+		@NotNull(message = "Le nom de la région est obligatoire")
+		@Size(min = 1, max = 100, message = "Le nom de la région doit contenir de 1 à 100 caractères")
+		String nom) {
+}
@@ -0,0 +1,49 @@
+package fr.diginamic.hello.dto;
+
+public class SingleFlightStatsDto {
+
+	private String group;
+	private long executions;
+	private long coalesced;
+
+	public SingleFlightStatsDto() {
+
+	}
+
+	public SingleFlightStatsDto(String group, long executions, long coalesced) {
+		this.group = group;
+		this.executions = executions;
+		this.coalesced = coalesced;
+	}
+
+	public String getGroup() {
+		return group;
+	}
+
+	public void setGroup(String group) {
+		this.group = group;
+	}
+
+	public long getExecutions() {
+		return executions;
+	}
+
+	public void setExecutions(long executions) {
+		this.executions = executions;
+	}
+
+	public long getCoalesced() {
+		return coalesced;
+	}
+
+	public void setCoalesced(long coalesced) {
+		this.coalesced = coalesced;
+	}
+
+	@Override
+	public String toString() {
+		return "SingleFlightStatsDto [group=" + group + ", executions=" + executions + ", coalesced=" + coalesced
+				+ "]";
+	}
+
+}
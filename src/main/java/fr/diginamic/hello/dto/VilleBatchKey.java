@@ -0,0 +1,14 @@
+package fr.diginamic.hello.dto;
+
+/**
+ * Key of a city requested by a batch lookup: either its ID, or the code of its
+ * department along with its commune code.
+ *
+ * @param id              the ID of the city, or null to look it up by codes
+ * @param codeDepartement the code of the department of the city, used when no
+ *                        ID is given
+ * @param codeCommune     the commune code of the city, used when no ID is
+ *                        given
+ */
+public record VilleBatchKey(Long id, String codeDepartement, String codeCommune) {
+}
@@ -0,0 +1,12 @@
+package fr.diginamic.hello.dto;
+
+/**
+ * Result of the lookup of one key of a batch, returned at the position of the
+ * key in the request.
+ *
+ * @param key   the requested key
+ * @param found true if a city matches the key
+ * @param ville the summary of the city, or null if none matches the key
+ */
+public record VilleBatchResultDto(VilleBatchKey key, boolean found, VilleResumeDto ville) {
+}
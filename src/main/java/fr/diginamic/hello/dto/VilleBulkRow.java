@@ -0,0 +1,36 @@
+package fr.diginamic.hello.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+/**
+ * One line of a bulk import of cities. A city is identified by its department
+ * and commune code: it is created if it does not exist yet, otherwise updated.
+ * The optional fields left null keep their current value, or 0 for a new city.
+ *
+ * @param codeDepartement        the code of the department of the city
+ * @param codeCommune            the commune code of the city
+ * @param nom                    the name of the city
+ * @param nbHabitants            the number of inhabitants
+ * @param codeArrondissement     the arrondissement code, optional
+ * @param codeCanton             the canton code, optional
+ * @param populationMunicipale   the municipal population, optional
+ * @param populationCompteeAPart the population counted separately, optional
+ * @param populationTotale       the total population, optional
+ */
+public record VilleBulkRow(
+		@NotNull(message = "Le code du département est obligatoire")
+		@Size(min = 1, max = 10, message = "Le code du département doit contenir de 1 à 10 caractères")
+		String codeDepartement,
+		@NotNull(message = "Le code de la commune est obligatoire")
+		String codeCommune,
+		@NotNull(message = "Le nom ne peut pas être nul")
+		@Size(min = 2, max = 100, message = "Le nom doit contenir de 2 à 100 caractères")
+		String nom,
+		@NotNull(message = "Le nombre d'habitants est obligatoire")
+		@Min(value = 1, message = "Le nombre d'habitants doit être au moins 1")
+		Long nbHabitants,
+		String codeArrondissement, String codeCanton, Long populationMunicipale, Long populationCompteeAPart,
+		Long populationTotale) {
+}
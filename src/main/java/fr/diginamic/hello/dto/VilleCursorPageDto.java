@@ -0,0 +1,52 @@
+package fr.diginamic.hello.dto;
+
+import java.util.List;
+
+import fr.diginamic.hello.entities.Ville;
+
+public class VilleCursorPageDto {
+
+	private List<Ville> content;
+	private String nextCursor;
+	private boolean hasNext;
+
+	public VilleCursorPageDto() {
+
+	}
+
+	public VilleCursorPageDto(List<Ville> content, String nextCursor) {
+		this.content = content;
+		this.nextCursor = nextCursor;
+		this.hasNext = nextCursor != null;
+	}
+
+	public List<Ville> getContent() {
+		return content;
+	}
+
+	public void setContent(List<Ville> content) {
+		this.content = content;
+	}
+
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	public void setNextCursor(String nextCursor) {
+		this.nextCursor = nextCursor;
+	}
+
+	public boolean isHasNext() {
+		return hasNext;
+	}
+
+	public void setHasNext(boolean hasNext) {
+		this.hasNext = hasNext;
+	}
+
+	@Override
+	public String toString() {
+		return "VilleCursorPageDto [content=" + content + ", nextCursor=" + nextCursor + ", hasNext=" + hasNext + "]";
+	}
+
+}
@@ -0,0 +1,21 @@
+package fr.diginamic.hello.dto;
+
+/**
+ * Population rank of a city, nationally and within its department. A rank is
+ * one more than the number of strictly more populated cities, so that equally
+ * populated cities share the same rank.
+ *
+ * @param id                    the ID of the city
+ * @param nom                   the name of the city
+ * @param nbHabitants           the number of inhabitants
+ * @param codeDepartement       the code of the department of the city, or null
+ * @param rangNational          the rank of the city among every city
+ * @param nbCommunes            the number of cities
+ * @param rangDepartement       the rank of the city within its department, or
+ *                              null if it has no department
+ * @param nbCommunesDepartement the number of cities of its department, or null
+ *                              if it has no department
+ */
+public record VilleRankDto(long id, String nom, long nbHabitants, String codeDepartement, long rangNational,
+		long nbCommunes, Long rangDepartement, Long nbCommunesDepartement) {
+}
@@ -0,0 +1,15 @@
+package fr.diginamic.hello.dto;
+
+/**
+ * Read-only summary of a city, as returned by the search endpoints. It is
+ * built directly by the queries, so that only the returned columns are read
+ * and no entity is tracked by the persistence context.
+ *
+ * @param id              the ID of the city
+ * @param nom             the name of the city
+ * @param nbHabitants     the number of inhabitants
+ * @param codeCommune     the commune code of the city
+ * @param codeDepartement the code of the department of the city
+ */
+public record VilleResumeDto(long id, String nom, long nbHabitants, String codeCommune, String codeDepartement) {
+}
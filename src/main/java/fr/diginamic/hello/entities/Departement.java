@@ -4,17 +4,29 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 /**
  * Represents a department entity within the context of a geographical
  * classification. A department is part of a larger region and is identified
  * uniquely by its code.
  * 
+ * Departments are read-mostly reference data reached from most cities, so they
+ * are held in the Hibernate second-level cache. The JSON form of an unloaded
+ * department proxy only holds its fields, not the proxy internals.
+ * 
  * @Entity This annotation specifies that the class is an entity and is mapped
  *         to a database table.
  */
 @Entity
+@Table(indexes = @Index(name = "uk_departement_code", columnList = "CODE", unique = true))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@JsonIgnoreProperties({ "hibernateLazyInitializer", "handler" })
 public class Departement {
 
 	@Id
@@ -29,9 +41,10 @@ public class Departement {
 
 	/**
 	 * The region to which the department belongs. This is mapped as a many-to-one
-	 * relationship where multiple departments can be part of one region.
+	 * relationship where multiple departments can be part of one region, only
+	 * loaded when accessed.
 	 */
-	@ManyToOne
+	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name = "REGION_ID")
 	@JsonIgnore
 	private Region region;
@@ -0,0 +1,25 @@
+package fr.diginamic.hello.entities;
+
+import org.hibernate.annotations.Immutable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Population rollup of the cities of a department.
+ */
+@Entity
+@Immutable
+@Table(name = "DEPARTEMENT_STATS")
+public class DepartementStats extends PopulationStats {
+
+	@Id
+	@Column(name = "DEPARTEMENT_ID")
+	private int departementId;
+
+	public int getDepartementId() {
+		return departementId;
+	}
+}
@@ -0,0 +1,64 @@
+package fr.diginamic.hello.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.MappedSuperclass;
+
+/**
+ * Population rollup of a set of cities, kept in a table rather than summed on
+ * every request. The rows are only written through set-based SQL statements,
+ * never through the entity.
+ */
+@MappedSuperclass
+public abstract class PopulationStats {
+
+	@Column(name = "NB_COMMUNES")
+	private long nbCommunes;
+
+	@Column(name = "NB_HABITANTS")
+	private long nbHabitants;
+
+	@Column(name = "POPULATION_MUNICIPALE")
+	private long populationMunicipale;
+
+	@Column(name = "POPULATION_COMPTEE_A_PART")
+	private long populationCompteeAPart;
+
+	@Column(name = "POPULATION_TOTALE")
+	private long populationTotale;
+
+	/** Population of the smallest city, or null if there is no city. */
+	@Column(name = "MIN_HABITANTS")
+	private Long minHabitants;
+
+	/** Population of the largest city, or null if there is no city. */
+	@Column(name = "MAX_HABITANTS")
+	private Long maxHabitants;
+
+	public long getNbCommunes() {
+		return nbCommunes;
+	}
+
+	public long getNbHabitants() {
+		return nbHabitants;
+	}
+
+	public long getPopulationMunicipale() {
+		return populationMunicipale;
+	}
+
+	public long getPopulationCompteeAPart() {
+		return populationCompteeAPart;
+	}
+
+	public long getPopulationTotale() {
+		return populationTotale;
+	}
+
+	public Long getMinHabitants() {
+		return minHabitants;
+	}
+
+	public Long getMaxHabitants() {
+		return maxHabitants;
+	}
+}
@@ -7,11 +7,22 @@ import jakarta.validation.constraints.Size;
 import java.util.HashSet;
 import java.util.Set;
 
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 /**
  * Represents a geographical region, identified by a unique code and name. A
  * region can encompass multiple departments.
+ * 
+ * Regions are reference data that is read far more often than it is written,
+ * so they are held in the Hibernate second-level cache.
  */
 @Entity
+@Table(indexes = { @Index(name = "uk_region_code", columnList = "CODE", unique = true),
+		@Index(name = "idx_region_nom", columnList = "NOM") })
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Region {
 
 	@Id
@@ -29,7 +40,14 @@ public class Region {
 	@Size(min = 1, max = 100)
 	private String nom;
 
+	/**
+	 * The departments of the region, loaded when accessed. Listing the regions
+	 * loads the departments of up to 20 regions per query rather than one query
+	 * per region.
+	 */
 	@OneToMany(mappedBy = "region", cascade = CascadeType.ALL)
+	@BatchSize(size = 20)
+	@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 	private Set<Departement> departements = new HashSet<>();
 
 	/**
@@ -0,0 +1,26 @@
+package fr.diginamic.hello.entities;
+
+import org.hibernate.annotations.Immutable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Population rollup of the cities of a region, built from the rollups of its
+ * departments.
+ */
+@Entity
+@Immutable
+@Table(name = "REGION_STATS")
+public class RegionStats extends PopulationStats {
+
+	@Id
+	@Column(name = "REGION_ID")
+	private long regionId;
+
+	public long getRegionId() {
+		return regionId;
+	}
+}
@@ -2,11 +2,14 @@ package fr.diginamic.hello.entities;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
@@ -14,8 +17,14 @@ import jakarta.validation.constraints.Size;
 /**
  * Represents a city with a name, population, department, and a unique
  * identifier.
+ *
+ * The indexes are created by the schema migrations and follow the query
+ * shapes of the city repository.
  */
 @Entity
+@Table(indexes = { @Index(name = "idx_ville_nom_departement", columnList = "NOM, DEPARTEMENT_ID"),
+		@Index(name = "idx_ville_nb_habitants_id", columnList = "NB_HABITANTS DESC, ID"),
+		@Index(name = "idx_ville_departement_nb_habitants", columnList = "DEPARTEMENT_ID, NB_HABITANTS DESC") })
 public class Ville {
 
 	@Id
@@ -51,7 +60,11 @@ public class Ville {
 	@Column(name = "POPULATION_TOTALE")
 	private long populationTotale;
 
-	@ManyToOne
+	/**
+	 * The department of the city, only loaded when accessed unless the query
+	 * fetches it.
+	 */
+	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name = "DEPARTEMENT_ID")
 	private Departement departement;
 
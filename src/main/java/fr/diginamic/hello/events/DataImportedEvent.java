@@ -0,0 +1,29 @@
+package fr.diginamic.hello.events;
+
+/**
+ * Event published once a census file has been imported into the database.
+ * Listeners holding derived copies of the city data rebuild them from scratch.
+ */
+public class DataImportedEvent {
+
+	private final int lineCount;
+
+	/**
+	 * Constructs a new event.
+	 *
+	 * @param lineCount the number of data lines processed by the import
+	 */
+	public DataImportedEvent(int lineCount) {
+		this.lineCount = lineCount;
+	}
+
+	public int getLineCount() {
+		return lineCount;
+	}
+
+	@Override
+	public String toString() {
+		return "DataImportedEvent [lineCount=" + lineCount + "]";
+	}
+
+}
@@ -0,0 +1,30 @@
+package fr.diginamic.hello.events;
+
+/**
+ * Event published whenever a region or a department is created, modified or
+ * deleted. Listeners holding derived copies of the reference data use it to
+ * invalidate them.
+ */
+public class ReferenceDataChangedEvent {
+
+	private final String source;
+
+	/**
+	 * Constructs a new event.
+	 *
+	 * @param source a short description of the change, used for logging
+	 */
+	public ReferenceDataChangedEvent(String source) {
+		this.source = source;
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	@Override
+	public String toString() {
+		return "ReferenceDataChangedEvent [source=" + source + "]";
+	}
+
+}
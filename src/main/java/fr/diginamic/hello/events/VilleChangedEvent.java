@@ -0,0 +1,64 @@
+package fr.diginamic.hello.events;
+
+import fr.diginamic.hello.index.VilleSnapshot;
+
+/**
+ * Event published whenever a city is created, modified or deleted. It carries
+ * the city as it was before and after the change, so that in-memory copies can
+ * be updated without reloading it.
+ */
+public class VilleChangedEvent {
+
+	/**
+	 * Kind of change applied to the city.
+	 */
+	public enum ChangeType {
+		CREATED, UPDATED, DELETED
+	}
+
+	private final ChangeType type;
+
+	private final long villeId;
+
+	private final VilleSnapshot before;
+
+	private final VilleSnapshot after;
+
+	/**
+	 * Constructs a new event.
+	 *
+	 * @param type    the kind of change
+	 * @param villeId the ID of the changed city
+	 * @param before  the city before the change, or null if it has been created
+	 * @param after   the city after the change, or null if it has been deleted
+	 */
+	public VilleChangedEvent(ChangeType type, long villeId, VilleSnapshot before, VilleSnapshot after) {
+		this.type = type;
+		this.villeId = villeId;
+		this.before = before;
+		this.after = after;
+	}
+
+	public ChangeType getType() {
+		return type;
+	}
+
+	public long getVilleId() {
+		return villeId;
+	}
+
+	public VilleSnapshot getBefore() {
+		return before;
+	}
+
+	public VilleSnapshot getAfter() {
+		return after;
+	}
+
+	@Override
+	public String toString() {
+		return "VilleChangedEvent [type=" + type + ", villeId=" + villeId + ", before=" + before + ", after=" + after
+				+ "]";
+	}
+
+}
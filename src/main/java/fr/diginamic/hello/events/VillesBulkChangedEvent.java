@@ -0,0 +1,29 @@
+package fr.diginamic.hello.events;
+
+/**
+ * Event published once per chunk of a bulk import of cities, instead of one
+ * {@link VilleChangedEvent} per city. Listeners holding derived copies of the
+ * city data rebuild them once, rather than applying each change in turn.
+ */
+public class VillesBulkChangedEvent {
+
+	private final int villeCount;
+
+	/**
+	 * Constructs a new event.
+	 *
+	 * @param villeCount the number of cities created or updated by the chunk
+	 */
+	public VillesBulkChangedEvent(int villeCount) {
+		this.villeCount = villeCount;
+	}
+
+	public int getVilleCount() {
+		return villeCount;
+	}
+
+	@Override
+	public String toString() {
+		return "VillesBulkChangedEvent [villeCount=" + villeCount + "]";
+	}
+}
@@ -0,0 +1,7 @@
+package fr.diginamic.hello.exceptions;
+
+public class RegionNotFoundException extends RuntimeException {
+	public RegionNotFoundException(String message) {
+		super(message);
+	}
+}
@@ -37,6 +37,18 @@ public class RestResponseEntityExceptionHandler extends ResponseEntityExceptionH
 			WebRequest request) {
 		return handleExceptionInternal(ex, ex.getMessage(), new HttpHeaders(), HttpStatus.NOT_FOUND, request);
 	}
+
+	/**
+	 * Handles specific exceptions when no matching region is found.
+	 * 
+	 * @param ex      the captured exception
+	 * @param request the web request object
+	 * @return a ResponseEntity configured with the HTTP NOT_FOUND status
+	 */
+	@ExceptionHandler(RegionNotFoundException.class)
+	protected ResponseEntity<Object> handleRegionNotFoundException(RegionNotFoundException ex, WebRequest request) {
+		return handleExceptionInternal(ex, ex.getMessage(), new HttpHeaders(), HttpStatus.NOT_FOUND, request);
+	}
 	
 	/**
 	 * Handles exceptions that are categorized as functional faults, which can occur
@@ -0,0 +1,186 @@
+package fr.diginamic.hello.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Prefix index over the folded city names, answering "the k most populated
+ * cities whose name starts with this prefix" without touching the database.
+ *
+ * The cities are kept in an array sorted by folded name, so the matches of a
+ * prefix form a contiguous range found by binary search. A segment tree over
+ * the populations then yields the k most populated cities of that range in
+ * O(k log n), however many cities match.
+ *
+ * The arrays are immutable and replaced as a whole on every change, so readers
+ * never wait. Writers are serialized; an incremental change copies the arrays
+ * once, which is linear but needs no database access.
+ */
+@Component
+public class AutocompleteIndex implements VilleIndex {
+
+	private static final Comparator<Entry> ORDER = Comparator.comparing(Entry::key)
+			.thenComparingLong(entry -> entry.ville().id());
+
+	private volatile Snapshot snapshot = Snapshot.of(new Entry[0]);
+
+	/**
+	 * A city along with its folded name.
+	 *
+	 * @param key   the folded name
+	 * @param ville the city
+	 */
+	private record Entry(String key, VilleSnapshot ville) {
+
+		static Entry of(VilleSnapshot ville) {
+			return new Entry(NomNormalizer.fold(ville.nom()), ville);
+		}
+
+		/**
+		 * Creates an entry sorted before every city with the given folded name.
+		 */
+		static Entry probe(String key) {
+			return new Entry(key, new VilleSnapshot(Long.MIN_VALUE, null, 0, null, null, null, null, null));
+		}
+	}
+
+	/**
+	 * Immutable state of the index.
+	 *
+	 * @param entries the cities, sorted by folded name then ID
+	 * @param tree    segment tree holding, for each node, the position of the most
+	 *                populated city below it; leaves start at
+	 *                {@code entries.length}
+	 */
+	private record Snapshot(Entry[] entries, int[] tree) {
+
+		static Snapshot of(Entry[] entries) {
+			int n = entries.length;
+			int[] tree = new int[2 * n];
+			for (int i = 0; i < n; i++) {
+				tree[n + i] = i;
+			}
+			Snapshot snapshot = new Snapshot(entries, tree);
+			for (int node = n - 1; node > 0; node--) {
+				tree[node] = snapshot.morePopulated(tree[2 * node], tree[2 * node + 1]);
+			}
+			return snapshot;
+		}
+
+		int morePopulated(int a, int b) {
+			return entries[b].ville().nbHabitants() > entries[a].ville().nbHabitants() ? b : a;
+		}
+
+		/**
+		 * Finds the most populated city in a range of positions.
+		 *
+		 * @param from the first position, inclusive
+		 * @param to   the last position, exclusive
+		 * @return the position of the most populated city
+		 */
+		int maxPosition(int from, int to) {
+			int n = entries.length;
+			int best = from;
+			for (int l = from + n, r = to + n; l < r; l >>= 1, r >>= 1) {
+				if ((l & 1) == 1) {
+					best = morePopulated(best, tree[l++]);
+				}
+				if ((r & 1) == 1) {
+					best = morePopulated(best, tree[--r]);
+				}
+			}
+			return best;
+		}
+
+		/**
+		 * Finds the first position whose entry is not before the given one.
+		 *
+		 * @param entry the entry to search for
+		 * @return the insertion point of the entry
+		 */
+		int lowerBound(Entry entry) {
+			int index = Arrays.binarySearch(entries, entry, ORDER);
+			return index >= 0 ? index : -index - 1;
+		}
+	}
+
+	@Override
+	public synchronized void rebuild(List<VilleSnapshot> villes) {
+		Entry[] entries = villes.stream().map(Entry::of).sorted(ORDER).toArray(Entry[]::new);
+		snapshot = Snapshot.of(entries);
+	}
+
+	@Override
+	public synchronized void apply(VilleSnapshot before, VilleSnapshot after) {
+		List<Entry> entries = new ArrayList<>(Arrays.asList(snapshot.entries()));
+		if (before != null) {
+			Entry removed = Entry.of(before);
+			int position = snapshot.lowerBound(removed);
+			if (position < entries.size() && ORDER.compare(entries.get(position), removed) == 0) {
+				entries.remove(position);
+			}
+		}
+		if (after != null) {
+			Entry added = Entry.of(after);
+			int position = Collections.binarySearch(entries, added, ORDER);
+			if (position >= 0) {
+				entries.set(position, added);
+			} else {
+				entries.add(-position - 1, added);
+			}
+		}
+		snapshot = Snapshot.of(entries.toArray(Entry[]::new));
+	}
+
+	/**
+	 * Finds the most populated cities whose folded name starts with the folded
+	 * prefix, by decreasing population.
+	 *
+	 * @param prefix the typed prefix
+	 * @param limit  the maximum number of cities to return
+	 * @return the matching cities, the most populated first
+	 */
+	public List<VilleSnapshot> search(String prefix, int limit) {
+		Snapshot current = snapshot;
+		String key = NomNormalizer.fold(prefix);
+		int from = current.lowerBound(Entry.probe(key));
+		int to = current.lowerBound(Entry.probe(key + Character.MAX_VALUE));
+
+		List<VilleSnapshot> result = new ArrayList<>(Math.min(limit, to - from));
+		if (from >= to) {
+			return result;
+		}
+		// Ranges still to explore, the one holding the most populated city first
+		PriorityQueue<int[]> ranges = new PriorityQueue<>(
+				(a, b) -> Long.compare(current.entries()[b[2]].ville().nbHabitants(),
+						current.entries()[a[2]].ville().nbHabitants()));
+		ranges.add(new int[] { from, to, current.maxPosition(from, to) });
+		while (result.size() < limit && !ranges.isEmpty()) {
+			int[] range = ranges.poll();
+			int max = range[2];
+			result.add(current.entries()[max].ville());
+			if (range[0] < max) {
+				ranges.add(new int[] { range[0], max, current.maxPosition(range[0], max) });
+			}
+			if (max + 1 < range[1]) {
+				ranges.add(new int[] { max + 1, range[1], current.maxPosition(max + 1, range[1]) });
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Retrieves the number of indexed cities.
+	 *
+	 * @return the number of cities
+	 */
+	public int size() {
+		return snapshot.entries().length;
+	}
+}
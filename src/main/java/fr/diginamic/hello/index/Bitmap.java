@@ -0,0 +1,92 @@
+package fr.diginamic.hello.index;
+
+/**
+ * Immutable set of city positions, as the words of a bitmap restricted to the
+ * span between its first and last position. The cities of a same region or
+ * department being given consecutive positions, their bitmaps take a few words
+ * each, where a plain bitmap would take as many words as there are cities.
+ *
+ * Bitmaps are combined word by word into a plain {@code long[]} bitmap over
+ * every position, one word holding 64 positions.
+ */
+final class Bitmap {
+
+	/** Bitmap holding no position. */
+	static final Bitmap EMPTY = new Bitmap(0, new long[0]);
+
+	/** Index, over every position, of the first word held. */
+	private final int firstWord;
+
+	private final long[] words;
+
+	private Bitmap(int firstWord, long[] words) {
+		this.firstWord = firstWord;
+		this.words = words;
+	}
+
+	/**
+	 * Creates a bitmap holding some positions.
+	 *
+	 * @param positions the positions, in increasing order
+	 * @param count     the number of positions to read from the array
+	 * @return the bitmap
+	 */
+	static Bitmap of(int[] positions, int count) {
+		if (count == 0) {
+			return EMPTY;
+		}
+		int firstWord = positions[0] >>> 6;
+		long[] words = new long[(positions[count - 1] >>> 6) - firstWord + 1];
+		for (int i = 0; i < count; i++) {
+			words[(positions[i] >>> 6) - firstWord] |= 1L << positions[i];
+		}
+		return new Bitmap(firstWord, words);
+	}
+
+	/**
+	 * Returns a bitmap also holding a position.
+	 *
+	 * @param position the position
+	 * @return the new bitmap
+	 */
+	Bitmap with(int position) {
+		int word = position >>> 6;
+		if (words.length == 0) {
+			return new Bitmap(word, new long[] { 1L << position });
+		}
+		int first = Math.min(firstWord, word);
+		int last = Math.max(firstWord + words.length - 1, word);
+		long[] grown = new long[last - first + 1];
+		System.arraycopy(words, 0, grown, firstWord - first, words.length);
+		grown[word - first] |= 1L << position;
+		return new Bitmap(first, grown);
+	}
+
+	/**
+	 * Returns a bitmap no longer holding a position.
+	 *
+	 * @param position the position
+	 * @return the new bitmap
+	 */
+	Bitmap without(int position) {
+		int word = (position >>> 6) - firstWord;
+		if (word < 0 || word >= words.length) {
+			return this;
+		}
+		long[] shrunk = words.clone();
+		shrunk[word] &= ~(1L << position);
+		return new Bitmap(firstWord, shrunk);
+	}
+
+	/**
+	 * Adds the positions of this bitmap to a plain bitmap.
+	 *
+	 * @param target the words of the plain bitmap, updated
+	 */
+	void orInto(long[] target) {
+		int length = Math.min(words.length, target.length - firstWord);
+		for (int i = 0; i < length; i++) {
+			target[firstWord + i] |= words[i];
+		}
+	}
+}
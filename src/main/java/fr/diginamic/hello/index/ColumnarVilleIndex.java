@@ -0,0 +1,319 @@
+package fr.diginamic.hello.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import fr.diginamic.hello.dto.VilleResumeDto;
+
+/**
+ * Column-oriented copy of every city, answering population range queries by
+ * scanning primitive arrays rather than querying the database.
+ *
+ * Each city is a position in parallel arrays: the IDs and populations as
+ * {@code long[]}, the names, commune codes and department codes as
+ * {@code int[]} codes into dictionaries of the distinct values. The whole
+ * dataset then fits in a few megabytes and is scanned in a few milliseconds,
+ * in parallel once it is large enough.
+ *
+ * Like the other indexes, the columns are immutable and replaced as a whole on
+ * every change, so readers never wait. A city change copies the columns once;
+ * the dictionaries only grow until the next rebuild.
+ *
+ * Only created when {@code villes.columnar.enabled} is set.
+ */
+@Component
+@ConditionalOnProperty(name = "villes.columnar.enabled", havingValue = "true")
+public class ColumnarVilleIndex implements VilleIndex {
+
+	/** Number of cities from which the scans run in parallel. */
+	private static final int PARALLEL_THRESHOLD = 10_000;
+
+	/** Code of a missing value, such as the department of a city without one. */
+	private static final int NONE = -1;
+
+	private volatile Columns columns = Columns.of(List.of());
+
+	/**
+	 * Immutable set of distinct values, each identified by its position.
+	 *
+	 * @param values the values, by code
+	 * @param codes  the code of each value
+	 */
+	private record Dictionary(String[] values, Map<String, Integer> codes) {
+
+		/**
+		 * Returns the code of a value.
+		 *
+		 * @param value the value, possibly null
+		 * @return its code, or {@link #NONE} if the value is null or unknown
+		 */
+		int encode(String value) {
+			return value == null ? NONE : codes.getOrDefault(value, NONE);
+		}
+
+		/**
+		 * Returns the value of a code.
+		 *
+		 * @param code the code, possibly {@link #NONE}
+		 * @return the value, or null for {@link #NONE}
+		 */
+		String decode(int code) {
+			return code == NONE ? null : values[code];
+		}
+
+		/**
+		 * Returns a dictionary holding a value, this one if it already does.
+		 *
+		 * @param value the value, possibly null
+		 * @return a dictionary holding the value
+		 */
+		Dictionary with(String value) {
+			if (value == null || codes.containsKey(value)) {
+				return this;
+			}
+			String[] grown = Arrays.copyOf(values, values.length + 1);
+			grown[values.length] = value;
+			Map<String, Integer> grownCodes = new HashMap<>(codes);
+			grownCodes.put(value, values.length);
+			return new Dictionary(grown, grownCodes);
+		}
+	}
+
+	/**
+	 * Mutable dictionary, used while building the columns.
+	 */
+	private static final class DictionaryBuilder {
+
+		private final List<String> values = new ArrayList<>();
+
+		private final Map<String, Integer> codes = new HashMap<>();
+
+		/**
+		 * Returns the code of a value, adding the value if needed.
+		 *
+		 * @param value the value, possibly null
+		 * @return its code, or {@link #NONE} if the value is null
+		 */
+		int encode(String value) {
+			if (value == null) {
+				return NONE;
+			}
+			return codes.computeIfAbsent(value, v -> {
+				values.add(v);
+				return values.size() - 1;
+			});
+		}
+
+		Dictionary build() {
+			return new Dictionary(values.toArray(String[]::new), Map.copyOf(codes));
+		}
+	}
+
+	/**
+	 * Immutable state of the index.
+	 *
+	 * @param ids               the ID of each city
+	 * @param populations       the number of inhabitants of each city
+	 * @param noms              the code of the name of each city
+	 * @param communes          the code of the commune code of each city
+	 * @param departements      the code of the department code of each city
+	 * @param nomValues         the dictionary of the names
+	 * @param communeValues     the dictionary of the commune codes
+	 * @param departementValues the dictionary of the department codes
+	 * @param positions         the position of each city, by ID
+	 */
+	private record Columns(long[] ids, long[] populations, int[] noms, int[] communes, int[] departements,
+			Dictionary nomValues, Dictionary communeValues, Dictionary departementValues,
+			Map<Long, Integer> positions) {
+
+		static Columns of(List<VilleSnapshot> villes) {
+			int size = villes.size();
+			long[] ids = new long[size];
+			long[] populations = new long[size];
+			int[] noms = new int[size];
+			int[] communes = new int[size];
+			int[] departements = new int[size];
+			DictionaryBuilder nomValues = new DictionaryBuilder();
+			DictionaryBuilder communeValues = new DictionaryBuilder();
+			DictionaryBuilder departementValues = new DictionaryBuilder();
+			Map<Long, Integer> positions = new HashMap<>(size * 4 / 3 + 1);
+			for (int i = 0; i < size; i++) {
+				VilleSnapshot ville = villes.get(i);
+				ids[i] = ville.id();
+				populations[i] = ville.nbHabitants();
+				noms[i] = nomValues.encode(ville.nom());
+				communes[i] = communeValues.encode(ville.codeCommune());
+				departements[i] = departementValues.encode(ville.codeDepartement());
+				positions.put(ville.id(), i);
+			}
+			return new Columns(ids, populations, noms, communes, departements, nomValues.build(),
+					communeValues.build(), departementValues.build(), positions);
+		}
+
+		int size() {
+			return ids.length;
+		}
+
+		/**
+		 * Compares the cities at two positions, by decreasing population then
+		 * increasing ID.
+		 *
+		 * @param a the position of a city
+		 * @param b the position of another city
+		 * @return a negative number if the first city comes first
+		 */
+		int compare(int a, int b) {
+			int byPopulation = Long.compare(populations[b], populations[a]);
+			return byPopulation != 0 ? byPopulation : Long.compare(ids[a], ids[b]);
+		}
+
+		VilleResumeDto resume(int position) {
+			return new VilleResumeDto(ids[position], nomValues.decode(noms[position]), populations[position],
+					communeValues.decode(communes[position]), departementValues.decode(departements[position]));
+		}
+	}
+
+	@Override
+	public synchronized void rebuild(List<VilleSnapshot> villes) {
+		columns = Columns.of(villes);
+	}
+
+	@Override
+	public synchronized void apply(VilleSnapshot before, VilleSnapshot after) {
+		Columns current = columns;
+		Integer existing = before != null ? current.positions().get(before.id()) : null;
+		int size = current.size();
+		int newSize = size + (after != null ? 1 : 0) - (existing != null ? 1 : 0);
+		long[] ids = Arrays.copyOf(current.ids(), Math.max(size, newSize));
+		long[] populations = Arrays.copyOf(current.populations(), ids.length);
+		int[] noms = Arrays.copyOf(current.noms(), ids.length);
+		int[] communes = Arrays.copyOf(current.communes(), ids.length);
+		int[] departements = Arrays.copyOf(current.departements(), ids.length);
+		Map<Long, Integer> positions = new HashMap<>(current.positions());
+
+		int position;
+		if (existing != null) {
+			position = existing;
+			positions.remove(before.id());
+		} else {
+			position = size;
+		}
+		if (after == null) {
+			if (existing == null) {
+				return;
+			}
+			// Moves the last city into the hole, so that the columns stay dense
+			int last = size - 1;
+			ids[position] = ids[last];
+			populations[position] = populations[last];
+			noms[position] = noms[last];
+			communes[position] = communes[last];
+			departements[position] = departements[last];
+			if (position != last) {
+				positions.put(ids[position], position);
+			}
+			columns = new Columns(Arrays.copyOf(ids, newSize), Arrays.copyOf(populations, newSize),
+					Arrays.copyOf(noms, newSize), Arrays.copyOf(communes, newSize),
+					Arrays.copyOf(departements, newSize), current.nomValues(), current.communeValues(),
+					current.departementValues(), positions);
+			return;
+		}
+
+		Dictionary nomValues = current.nomValues().with(after.nom());
+		Dictionary communeValues = current.communeValues().with(after.codeCommune());
+		Dictionary departementValues = current.departementValues().with(after.codeDepartement());
+		ids[position] = after.id();
+		populations[position] = after.nbHabitants();
+		noms[position] = nomValues.encode(after.nom());
+		communes[position] = communeValues.encode(after.codeCommune());
+		departements[position] = departementValues.encode(after.codeDepartement());
+		positions.put(after.id(), position);
+		columns = new Columns(ids, populations, noms, communes, departements, nomValues, communeValues,
+				departementValues, positions);
+	}
+
+	/**
+	 * Finds the cities whose number of inhabitants lies within a range, by
+	 * decreasing population then increasing ID.
+	 *
+	 * @param minPopulation the minimum number of inhabitants, inclusive
+	 * @param maxPopulation the maximum number of inhabitants, inclusive
+	 * @param offset        the number of matching cities to skip
+	 * @param count         the maximum number of cities to return
+	 * @return the matching cities
+	 */
+	public List<VilleResumeDto> findByPopulationRange(long minPopulation, long maxPopulation, int offset,
+			int count) {
+		Columns current = columns;
+		long[] populations = current.populations();
+		return select(current, i -> populations[i] >= minPopulation && populations[i] <= maxPopulation, offset,
+				count);
+	}
+
+	/**
+	 * Scans the columns for the best cities matching a filter. Each part of the
+	 * scan keeps its own best {@code offset + count} cities in a heap, and the
+	 * heaps are then merged, so that the matches are never all sorted.
+	 *
+	 * @param current the columns to scan
+	 * @param filter  the filter, on the position of a city
+	 * @param offset  the number of matching cities to skip
+	 * @param count   the maximum number of cities to return
+	 * @return the selected cities, by decreasing population then increasing ID
+	 */
+	private static List<VilleResumeDto> select(Columns current, IntPredicate filter, int offset, int count) {
+		int kept = offset + count;
+		if (count <= 0 || kept <= 0) {
+			return List.of();
+		}
+		Comparator<Integer> worstFirst = (a, b) -> current.compare(b, a);
+		IntStream positions = IntStream.range(0, current.size());
+		if (current.size() >= PARALLEL_THRESHOLD) {
+			positions = positions.parallel();
+		}
+		PriorityQueue<Integer> best = positions.filter(filter).collect(() -> new PriorityQueue<>(worstFirst),
+				(heap, position) -> keep(heap, position, kept),
+				(heap, other) -> other.forEach(position -> keep(heap, position, kept)));
+
+		Integer[] sorted = best.toArray(Integer[]::new);
+		Arrays.sort(sorted, current::compare);
+		List<VilleResumeDto> result = new ArrayList<>(Math.max(sorted.length - offset, 0));
+		for (int i = offset; i < sorted.length; i++) {
+			result.add(current.resume(sorted[i]));
+		}
+		return result;
+	}
+
+	/**
+	 * Adds a city to a bounded heap, dropping the worst one if it overflows.
+	 *
+	 * @param heap     the heap, the worst city at its head
+	 * @param position the position of the city
+	 * @param capacity the maximum size of the heap
+	 */
+	private static void keep(PriorityQueue<Integer> heap, int position, int capacity) {
+		heap.add(position);
+		if (heap.size() > capacity) {
+			heap.poll();
+		}
+	}
+
+	/**
+	 * Retrieves the number of cities held.
+	 *
+	 * @return the number of cities
+	 */
+	public int size() {
+		return columns.size();
+	}
+}
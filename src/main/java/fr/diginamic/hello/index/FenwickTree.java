@@ -0,0 +1,176 @@
+package fr.diginamic.hello.index;
+
+import java.util.Arrays;
+
+/**
+ * Immutable count of cities per population, over the distinct populations
+ * only, as a Fenwick tree: the number of cities more populated than a given
+ * one is read in O(log n).
+ *
+ * A change returns a new tree, copying the counts once; a population not seen
+ * yet also rebuilds the list of distinct populations, which is O(n) as well.
+ */
+final class FenwickTree {
+
+	/** Tree of no city. */
+	static final FenwickTree EMPTY = new FenwickTree(new long[0], new int[1], 0);
+
+	/** Distinct populations, in increasing order. */
+	private final long[] populations;
+
+	/** Fenwick tree of the counts, indexed from 1 like the populations + 1. */
+	private final int[] tree;
+
+	private final int total;
+
+	private FenwickTree(long[] populations, int[] tree, int total) {
+		this.populations = populations;
+		this.tree = tree;
+		this.total = total;
+	}
+
+	/**
+	 * Builds a tree from some populations.
+	 *
+	 * @param values the populations, one per city, in any order
+	 * @return the tree
+	 */
+	static FenwickTree of(long[] values) {
+		long[] sorted = values.clone();
+		Arrays.sort(sorted);
+		long[] distinct = Arrays.stream(sorted).distinct().toArray();
+		int[] counts = new int[distinct.length];
+		int position = 0;
+		for (long value : sorted) {
+			while (distinct[position] != value) {
+				position++;
+			}
+			counts[position]++;
+		}
+		return fromCounts(distinct, counts);
+	}
+
+	/**
+	 * Retrieves the number of cities.
+	 *
+	 * @return the number of cities
+	 */
+	int size() {
+		return total;
+	}
+
+	/**
+	 * Counts the cities strictly more populated than a population.
+	 *
+	 * @param population the population
+	 * @return the number of more populated cities
+	 */
+	int countGreaterThan(long population) {
+		// Number of distinct populations lower than or equal to the given one
+		int position = Arrays.binarySearch(populations, population);
+		int lowerOrEqual = position >= 0 ? position + 1 : -position - 1;
+		return total - prefixSum(lowerOrEqual);
+	}
+
+	/**
+	 * Returns a tree with one more city.
+	 *
+	 * @param population the population of the city
+	 * @return the new tree
+	 */
+	FenwickTree with(long population) {
+		int position = Arrays.binarySearch(populations, population);
+		if (position < 0) {
+			int insertion = -position - 1;
+			long[] grownPopulations = new long[populations.length + 1];
+			System.arraycopy(populations, 0, grownPopulations, 0, insertion);
+			grownPopulations[insertion] = population;
+			System.arraycopy(populations, insertion, grownPopulations, insertion + 1, populations.length - insertion);
+			int[] counts = counts();
+			int[] grownCounts = new int[counts.length + 1];
+			System.arraycopy(counts, 0, grownCounts, 0, insertion);
+			grownCounts[insertion] = 1;
+			System.arraycopy(counts, insertion, grownCounts, insertion + 1, counts.length - insertion);
+			return fromCounts(grownPopulations, grownCounts);
+		}
+		return add(position, 1);
+	}
+
+	/**
+	 * Returns a tree with one city less. Its population is kept in the list of
+	 * distinct populations, with a count of zero if it was the last one.
+	 *
+	 * @param population the population of the city
+	 * @return the new tree, or this one if no city has that population
+	 */
+	FenwickTree without(long population) {
+		int position = Arrays.binarySearch(populations, population);
+		if (position < 0 || prefixSum(position + 1) == prefixSum(position)) {
+			return this;
+		}
+		return add(position, -1);
+	}
+
+	/**
+	 * Returns a copy of the tree with a count changed.
+	 *
+	 * @param position the position of the population, from 0
+	 * @param delta    the number of cities added, negative if removed
+	 * @return the new tree
+	 */
+	private FenwickTree add(int position, int delta) {
+		int[] updated = tree.clone();
+		for (int i = position + 1; i < updated.length; i += i & -i) {
+			updated[i] += delta;
+		}
+		return new FenwickTree(populations, updated, total + delta);
+	}
+
+	/**
+	 * Sums the counts of the first populations.
+	 *
+	 * @param length the number of populations, from the smallest
+	 * @return the number of cities having one of them
+	 */
+	private int prefixSum(int length) {
+		int sum = 0;
+		for (int i = length; i > 0; i -= i & -i) {
+			sum += tree[i];
+		}
+		return sum;
+	}
+
+	/**
+	 * Recovers the count of each population from the tree.
+	 *
+	 * @return the counts, by position
+	 */
+	private int[] counts() {
+		int[] counts = new int[populations.length];
+		for (int position = 0; position < counts.length; position++) {
+			counts[position] = prefixSum(position + 1) - prefixSum(position);
+		}
+		return counts;
+	}
+
+	/**
+	 * Builds a tree from the count of each population, in O(n).
+	 *
+	 * @param populations the distinct populations, in increasing order
+	 * @param counts      the number of cities having each population
+	 * @return the tree
+	 */
+	private static FenwickTree fromCounts(long[] populations, int[] counts) {
+		int[] tree = new int[counts.length + 1];
+		int total = 0;
+		for (int i = 1; i < tree.length; i++) {
+			tree[i] += counts[i - 1];
+			total += counts[i - 1];
+			int parent = i + (i & -i);
+			if (parent < tree.length) {
+				tree[parent] += tree[i];
+			}
+		}
+		return new FenwickTree(populations, tree, total);
+	}
+}
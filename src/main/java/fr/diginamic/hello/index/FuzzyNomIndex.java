@@ -0,0 +1,276 @@
+package fr.diginamic.hello.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Trigram index over the folded city names, tolerating typos: "Montpelier" or
+ * "Besancon" still find Montpellier and Besançon.
+ *
+ * Each name is split into the set of its three-character sequences, padded
+ * with spaces so that the start and end of the name count. A query only visits
+ * the posting lists of its own trigrams, counting the trigrams each candidate
+ * shares with it; the similarity is then the Jaccard index of the two trigram
+ * sets. Candidates above the threshold are ranked by similarity, with a small
+ * bonus growing with the logarithm of the population, so that the larger of two
+ * equally close cities comes first.
+ *
+ * Like {@link AutocompleteIndex}, the postings are immutable and replaced on
+ * every change, so readers never wait. An updated city keeps its position, and
+ * only the posting lists of the trigrams entering or leaving its name are
+ * copied; a deleted city leaves an empty slot until the next rebuild.
+ */
+@Component
+public class FuzzyNomIndex implements VilleIndex {
+
+	/** Score bonus per power of ten of inhabitants. */
+	private static final double POPULATION_WEIGHT = 0.02;
+
+	private static final int[] NO_POSITIONS = new int[0];
+
+	private volatile Snapshot snapshot = Snapshot.of(List.of());
+
+	/**
+	 * A city found by a fuzzy search.
+	 *
+	 * @param id              the ID of the city
+	 * @param nom             the name of the city
+	 * @param nbHabitants     the number of inhabitants
+	 * @param codeDepartement the code of the department of the city, or null
+	 * @param similarity      the share of trigrams common to the query and the
+	 *                        name, from 0 to 1
+	 */
+	public record Match(long id, String nom, long nbHabitants, String codeDepartement, double similarity) {
+	}
+
+	/**
+	 * Immutable state of the index.
+	 *
+	 * @param villes        the indexed cities, null where a city has been deleted
+	 * @param trigramCounts the number of distinct trigrams of each city name
+	 * @param postings      for each trigram, the positions of the cities whose
+	 *                      name contains it, in increasing order
+	 * @param positions     the position of each city, by ID
+	 */
+	private record Snapshot(VilleSnapshot[] villes, int[] trigramCounts, Map<String, int[]> postings,
+			Map<Long, Integer> positions) {
+
+		static Snapshot of(List<VilleSnapshot> villes) {
+			VilleSnapshot[] array = villes.toArray(VilleSnapshot[]::new);
+			int[] trigramCounts = new int[array.length];
+			Map<String, List<Integer>> lists = new HashMap<>();
+			Map<Long, Integer> positions = new HashMap<>();
+			for (int i = 0; i < array.length; i++) {
+				positions.put(array[i].id(), i);
+				Set<String> trigrams = trigrams(array[i].nom());
+				trigramCounts[i] = trigrams.size();
+				for (String trigram : trigrams) {
+					lists.computeIfAbsent(trigram, t -> new ArrayList<>()).add(i);
+				}
+			}
+			Map<String, int[]> postings = new HashMap<>(lists.size() * 4 / 3 + 1);
+			lists.forEach((trigram, list) -> postings.put(trigram,
+					list.stream().mapToInt(Integer::intValue).toArray()));
+			return new Snapshot(array, trigramCounts, postings, positions);
+		}
+	}
+
+	/**
+	 * Splits a name into its distinct trigrams, once folded and padded with a
+	 * space on each side.
+	 *
+	 * @param nom the name
+	 * @return the trigrams of the name, empty if it has no letter or digit
+	 */
+	static Set<String> trigrams(String nom) {
+		String folded = NomNormalizer.fold(nom);
+		Set<String> trigrams = new LinkedHashSet<>();
+		if (folded.isEmpty()) {
+			return trigrams;
+		}
+		String padded = " " + folded + " ";
+		for (int i = 0; i + 3 <= padded.length(); i++) {
+			trigrams.add(padded.substring(i, i + 3));
+		}
+		return trigrams;
+	}
+
+	@Override
+	public synchronized void rebuild(List<VilleSnapshot> villes) {
+		snapshot = Snapshot.of(villes);
+	}
+
+	@Override
+	public synchronized void apply(VilleSnapshot before, VilleSnapshot after) {
+		Snapshot current = snapshot;
+		Integer existing = before != null ? current.positions().get(before.id()) : null;
+		if (existing == null && after == null) {
+			return;
+		}
+		Set<String> removed = existing != null ? trigrams(current.villes()[existing].nom()) : Set.of();
+		Set<String> added = after != null ? trigrams(after.nom()) : Set.of();
+		if (existing != null && after != null && removed.equals(added)) {
+			// Same trigrams, as for a population change: only the city is replaced
+			VilleSnapshot[] villes = current.villes().clone();
+			villes[existing] = after;
+			snapshot = new Snapshot(villes, current.trigramCounts(), current.postings(), current.positions());
+			return;
+		}
+
+		// An updated city keeps its position, a created one is appended
+		int length = current.villes().length;
+		int position = existing != null ? existing : length;
+		VilleSnapshot[] villes = Arrays.copyOf(current.villes(), Math.max(length, position + 1));
+		int[] trigramCounts = Arrays.copyOf(current.trigramCounts(), villes.length);
+		Map<String, int[]> postings = new HashMap<>(current.postings());
+		Map<Long, Integer> positions = current.positions();
+		if (existing == null || after == null) {
+			positions = new HashMap<>(positions);
+		}
+
+		for (String trigram : removed) {
+			if (!added.contains(trigram)) {
+				int[] remaining = without(postings.get(trigram), position);
+				if (remaining.length == 0) {
+					postings.remove(trigram);
+				} else {
+					postings.put(trigram, remaining);
+				}
+			}
+		}
+		for (String trigram : added) {
+			if (!removed.contains(trigram)) {
+				postings.put(trigram, with(postings.getOrDefault(trigram, NO_POSITIONS), position));
+			}
+		}
+		if (after != null) {
+			villes[position] = after;
+			trigramCounts[position] = added.size();
+			positions.put(after.id(), position);
+		} else {
+			villes[position] = null;
+			trigramCounts[position] = 0;
+			positions.remove(before.id());
+		}
+		snapshot = new Snapshot(villes, trigramCounts, postings, positions);
+	}
+
+	/**
+	 * Inserts a position into a sorted posting list.
+	 *
+	 * @param list     the posting list, left unchanged
+	 * @param position the position to insert
+	 * @return a copy of the list holding the position, still sorted
+	 */
+	private static int[] with(int[] list, int position) {
+		int index = Arrays.binarySearch(list, position);
+		if (index >= 0) {
+			return list;
+		}
+		int insertion = -index - 1;
+		int[] result = new int[list.length + 1];
+		System.arraycopy(list, 0, result, 0, insertion);
+		result[insertion] = position;
+		System.arraycopy(list, insertion, result, insertion + 1, list.length - insertion);
+		return result;
+	}
+
+	/**
+	 * Removes a position from a sorted posting list.
+	 *
+	 * @param list     the posting list, left unchanged
+	 * @param position the position to remove
+	 * @return a copy of the list without the position
+	 */
+	private static int[] without(int[] list, int position) {
+		int index = Arrays.binarySearch(list, position);
+		if (index < 0) {
+			return list;
+		}
+		int[] result = new int[list.length - 1];
+		System.arraycopy(list, 0, result, 0, index);
+		System.arraycopy(list, index + 1, result, index, list.length - index - 1);
+		return result;
+	}
+
+	/**
+	 * Finds the cities whose name is the closest to a possibly misspelt one.
+	 *
+	 * @param nom           the name searched for
+	 * @param limit         the maximum number of cities to return
+	 * @param minSimilarity the similarity below which cities are left out, from 0
+	 *                      to 1
+	 * @return the matching cities, the best first
+	 */
+	public List<Match> search(String nom, int limit, double minSimilarity) {
+		Snapshot current = snapshot;
+		Set<String> trigrams = trigrams(nom);
+		int[] common = new int[current.villes().length];
+		List<Integer> candidates = new ArrayList<>();
+		for (String trigram : trigrams) {
+			for (int position : current.postings().getOrDefault(trigram, NO_POSITIONS)) {
+				if (common[position]++ == 0) {
+					candidates.add(position);
+				}
+			}
+		}
+
+		// Keeps the best matches only, the worst of them at the head
+		Comparator<Match> byScore = Comparator.comparingDouble(FuzzyNomIndex::score)
+				.thenComparing(Comparator.comparingLong(Match::id).reversed());
+		PriorityQueue<Match> best = new PriorityQueue<>(byScore);
+		for (int position : candidates) {
+			double similarity = (double) common[position]
+					/ (trigrams.size() + current.trigramCounts()[position] - common[position]);
+			if (similarity < minSimilarity) {
+				continue;
+			}
+			VilleSnapshot ville = current.villes()[position];
+			best.add(new Match(ville.id(), ville.nom(), ville.nbHabitants(), ville.codeDepartement(), similarity));
+			if (best.size() > limit) {
+				best.poll();
+			}
+		}
+		List<Match> result = new ArrayList<>(best);
+		result.sort(byScore.reversed());
+		return result;
+	}
+
+	/**
+	 * Computes the ranking score of a match.
+	 *
+	 * @param match the match
+	 * @return its similarity plus its population bonus
+	 */
+	private static double score(Match match) {
+		return match.similarity() + POPULATION_WEIGHT * Math.log10(1 + Math.max(match.nbHabitants(), 0));
+	}
+
+	/**
+	 * Retrieves the number of indexed cities.
+	 *
+	 * @return the number of cities
+	 */
+	public int size() {
+		return snapshot.positions().size();
+	}
+
+	/**
+	 * Retrieves the number of slots, the empty slots left by deleted cities
+	 * included.
+	 *
+	 * @return the number of slots
+	 */
+	int slots() {
+		return snapshot.villes().length;
+	}
+}
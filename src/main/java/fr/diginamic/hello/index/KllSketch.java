@@ -0,0 +1,293 @@
+package fr.diginamic.hello.index;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * KLL quantile sketch of long values: answers rank and quantile questions on
+ * a stream of any length, within a rank error of about {@code 1.7 / k} of the
+ * number of values, from at most about {@code 3k} retained values.
+ *
+ * The values are kept in levels, a value of level {@code h} standing for
+ * {@code 2^h} values of the stream. Once a level outgrows its capacity, it is
+ * sorted and every other value, starting at random, is moved up a level. The
+ * capacities decrease geometrically from the top level down, which keeps the
+ * memory bounded. Two sketches are merged by concatenating their levels and
+ * compacting again, so sketches built separately can be combined.
+ *
+ * Not thread-safe: callers share copies that are never updated again.
+ */
+public final class KllSketch {
+
+	/** Default accuracy parameter, for a rank error of about 1%. */
+	public static final int DEFAULT_K = 200;
+
+	/** Ratio between the capacities of two consecutive levels. */
+	private static final double DECAY = 2.0 / 3.0;
+
+	/** Smallest capacity of a level. */
+	private static final int MIN_CAPACITY = 2;
+
+	private final int k;
+
+	private long[][] levels = { new long[8] };
+
+	private int[] sizes = new int[1];
+
+	private long count;
+
+	/**
+	 * Sorted values of a sketch with their cumulative weights.
+	 *
+	 * @param values            the retained values, in increasing order
+	 * @param cumulativeWeights the number of stream values each retained value
+	 *                          and the smaller ones stand for
+	 */
+	record SortedView(long[] values, long[] cumulativeWeights) {
+
+		/**
+		 * Estimates the number of stream values lower than or equal to a value.
+		 *
+		 * @param value the value
+		 * @return the estimated rank
+		 */
+		long rank(long value) {
+			int position = Arrays.binarySearch(values, value);
+			if (position < 0) {
+				position = -position - 2;
+			} else {
+				while (position + 1 < values.length && values[position + 1] == value) {
+					position++;
+				}
+			}
+			return position < 0 ? 0 : cumulativeWeights[position];
+		}
+	}
+
+	/**
+	 * Creates an empty sketch with the default accuracy.
+	 */
+	public KllSketch() {
+		this(DEFAULT_K);
+	}
+
+	/**
+	 * Creates an empty sketch.
+	 *
+	 * @param k the accuracy parameter: larger is more accurate and bigger
+	 */
+	public KllSketch(int k) {
+		if (k < MIN_CAPACITY) {
+			throw new IllegalArgumentException("Le paramètre de précision doit valoir au moins " + MIN_CAPACITY);
+		}
+		this.k = k;
+	}
+
+	/**
+	 * Adds a value to the sketch.
+	 *
+	 * @param value the value
+	 */
+	public void update(long value) {
+		append(0, value);
+		count++;
+		compress();
+	}
+
+	/**
+	 * Adds every value of another sketch to this one.
+	 *
+	 * @param other the other sketch, left unchanged
+	 */
+	public void merge(KllSketch other) {
+		for (int level = 0; level < other.levels.length; level++) {
+			for (int i = 0; i < other.sizes[level]; i++) {
+				append(level, other.levels[level][i]);
+			}
+		}
+		count += other.count;
+		compress();
+	}
+
+	/**
+	 * Creates an independent copy of the sketch.
+	 *
+	 * @return the copy
+	 */
+	public KllSketch copy() {
+		KllSketch copy = new KllSketch(k);
+		copy.levels = new long[levels.length][];
+		for (int level = 0; level < levels.length; level++) {
+			copy.levels[level] = Arrays.copyOf(levels[level], Math.max(sizes[level], 1));
+		}
+		copy.sizes = sizes.clone();
+		copy.count = count;
+		return copy;
+	}
+
+	/**
+	 * Retrieves the number of values added to the sketch.
+	 *
+	 * @return the number of values
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Retrieves the number of values actually held by the sketch.
+	 *
+	 * @return the number of retained values
+	 */
+	public int getRetained() {
+		return Arrays.stream(sizes).sum();
+	}
+
+	/**
+	 * Estimates the number of added values lower than or equal to a value.
+	 *
+	 * @param value the value
+	 * @return the estimated rank
+	 */
+	public long rank(long value) {
+		return sortedView().rank(value);
+	}
+
+	/**
+	 * Estimates a quantile of the added values.
+	 *
+	 * @param fraction the fraction of values lower than or equal to the quantile,
+	 *                 between 0 and 1
+	 * @return the estimated quantile, or null if the sketch is empty
+	 */
+	public Long quantile(double fraction) {
+		if (count == 0) {
+			return null;
+		}
+		SortedView view = sortedView();
+		long target = target(fraction, count);
+		int position = 0;
+		while (view.cumulativeWeights()[position] < target) {
+			position++;
+		}
+		return view.values()[position];
+	}
+
+	/**
+	 * Lists the retained values in increasing order, with their cumulative
+	 * weights.
+	 *
+	 * @return the sorted values
+	 */
+	SortedView sortedView() {
+		int retained = getRetained();
+		long[][] weighted = new long[retained][];
+		int next = 0;
+		for (int level = 0; level < levels.length; level++) {
+			for (int i = 0; i < sizes[level]; i++) {
+				weighted[next++] = new long[] { levels[level][i], 1L << level };
+			}
+		}
+		Arrays.sort(weighted, (a, b) -> Long.compare(a[0], b[0]));
+		long[] values = new long[retained];
+		long[] cumulativeWeights = new long[retained];
+		long cumulated = 0;
+		for (int i = 0; i < retained; i++) {
+			values[i] = weighted[i][0];
+			cumulated += weighted[i][1];
+			cumulativeWeights[i] = cumulated;
+		}
+		return new SortedView(values, cumulativeWeights);
+	}
+
+	/**
+	 * Computes the rank a quantile must reach.
+	 *
+	 * @param fraction the fraction of the quantile, between 0 and 1
+	 * @param count    the number of values
+	 * @return the rank, between 1 and the number of values
+	 */
+	static long target(double fraction, long count) {
+		if (fraction < 0 || fraction > 1) {
+			throw new IllegalArgumentException("La fraction doit être comprise entre 0 et 1 : " + fraction);
+		}
+		return Math.min(Math.max((long) Math.ceil(fraction * count), 1), count);
+	}
+
+	/**
+	 * Computes the capacity of a level, given the current number of levels.
+	 *
+	 * @param level the level
+	 * @return the maximum number of values the level holds before compaction
+	 */
+	private int capacity(int level) {
+		int depth = levels.length - 1 - level;
+		return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(DECAY, depth)));
+	}
+
+	/**
+	 * Compacts the lowest full level until the sketch fits its capacity.
+	 */
+	private void compress() {
+		while (true) {
+			int retained = 0;
+			int maxRetained = 0;
+			for (int level = 0; level < levels.length; level++) {
+				retained += sizes[level];
+				maxRetained += capacity(level);
+			}
+			if (retained <= maxRetained) {
+				return;
+			}
+			int level = 0;
+			while (sizes[level] < capacity(level)) {
+				level++;
+			}
+			compact(level);
+		}
+	}
+
+	/**
+	 * Moves every other value of a level up a level, keeping the smallest one
+	 * when the level holds an odd number of values.
+	 *
+	 * @param level the level to compact
+	 */
+	private void compact(int level) {
+		if (level == levels.length - 1) {
+			levels = Arrays.copyOf(levels, levels.length + 1);
+			levels[level + 1] = new long[8];
+			sizes = Arrays.copyOf(sizes, sizes.length + 1);
+		}
+		long[] values = levels[level];
+		int size = sizes[level];
+		Arrays.sort(values, 0, size);
+		int kept = size % 2;
+		int first = kept + (ThreadLocalRandom.current().nextBoolean() ? 1 : 0);
+		for (int i = first; i < size; i += 2) {
+			append(level + 1, values[i]);
+		}
+		sizes[level] = kept;
+	}
+
+	/**
+	 * Appends a value to a level, growing it if needed.
+	 *
+	 * @param level the level, created if needed
+	 * @param value the value
+	 */
+	private void append(int level, long value) {
+		if (level >= levels.length) {
+			int previous = levels.length;
+			levels = Arrays.copyOf(levels, level + 1);
+			sizes = Arrays.copyOf(sizes, level + 1);
+			for (int added = previous; added <= level; added++) {
+				levels[added] = new long[8];
+			}
+		}
+		if (sizes[level] == levels[level].length) {
+			levels[level] = Arrays.copyOf(levels[level], levels[level].length * 2);
+		}
+		levels[level][sizes[level]++] = value;
+	}
+}
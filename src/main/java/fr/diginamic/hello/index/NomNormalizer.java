@@ -0,0 +1,52 @@
+package fr.diginamic.hello.index;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Folds city names into the form used as keys by the in-memory indexes, so
+ * that lookups ignore case, accents and punctuation: "Saint-Étienne",
+ * "saint etienne" and "SAINT-ETIENNE" all fold to "saint etienne".
+ */
+public final class NomNormalizer {
+
+	private NomNormalizer() {
+	}
+
+	/**
+	 * Folds a name: accents are removed, ligatures expanded, letters lowercased
+	 * and any run of other characters (hyphens, apostrophes, spaces) replaced by a
+	 * single space.
+	 *
+	 * @param nom the name to fold
+	 * @return the folded name, empty if the name has no letter or digit
+	 */
+	public static String fold(String nom) {
+		if (nom == null) {
+			return "";
+		}
+		String decomposed = Normalizer.normalize(nom, Normalizer.Form.NFD);
+		StringBuilder folded = new StringBuilder(decomposed.length());
+		boolean pendingSpace = false;
+		for (int i = 0; i < decomposed.length(); i++) {
+			char c = decomposed.charAt(i);
+			if (Character.getType(c) == Character.NON_SPACING_MARK) {
+				continue;
+			}
+			if (Character.isLetterOrDigit(c)) {
+				if (pendingSpace && folded.length() > 0) {
+					folded.append(' ');
+				}
+				pendingSpace = false;
+				switch (c) {
+				case 'œ', 'Œ' -> folded.append("oe");
+				case 'æ', 'Æ' -> folded.append("ae");
+				default -> folded.append(Character.toLowerCase(c));
+				}
+			} else {
+				pendingSpace = true;
+			}
+		}
+		return folded.toString().toLowerCase(Locale.ROOT);
+	}
+}
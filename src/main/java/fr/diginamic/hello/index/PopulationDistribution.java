@@ -0,0 +1,111 @@
+package fr.diginamic.hello.index;
+
+/**
+ * Immutable, mergeable estimate of the distribution of the populations of a
+ * set of cities, made of two {@link KllSketch}: the populations added and the
+ * populations removed since it was built.
+ *
+ * A sketch cannot forget a value, so a removed city is recorded in the second
+ * sketch, and the rank of a value is its rank among the added populations
+ * minus its rank among the removed ones. The error therefore grows with the
+ * number of removals, until the next rebuild starts again from the cities.
+ */
+public final class PopulationDistribution {
+
+	/** Distribution of no city. */
+	public static final PopulationDistribution EMPTY = new PopulationDistribution(new KllSketch(), new KllSketch());
+
+	private final KllSketch added;
+
+	private final KllSketch removed;
+
+	private PopulationDistribution(KllSketch added, KllSketch removed) {
+		this.added = added;
+		this.removed = removed;
+	}
+
+	/**
+	 * Creates the distribution of the populations added to a sketch, which must
+	 * not be updated afterwards.
+	 *
+	 * @param sketch the sketch of the populations
+	 * @return the distribution
+	 */
+	static PopulationDistribution of(KllSketch sketch) {
+		return new PopulationDistribution(sketch, new KllSketch());
+	}
+
+	/**
+	 * Returns a distribution with one more city.
+	 *
+	 * @param nbHabitants the population of the city
+	 * @return the new distribution
+	 */
+	public PopulationDistribution with(long nbHabitants) {
+		KllSketch grown = added.copy();
+		grown.update(nbHabitants);
+		return new PopulationDistribution(grown, removed);
+	}
+
+	/**
+	 * Returns a distribution with one city less.
+	 *
+	 * @param nbHabitants the population of the city, as it was added
+	 * @return the new distribution
+	 */
+	public PopulationDistribution without(long nbHabitants) {
+		KllSketch grown = removed.copy();
+		grown.update(nbHabitants);
+		return new PopulationDistribution(added, grown);
+	}
+
+	/**
+	 * Returns the distribution of the cities of both distributions.
+	 *
+	 * @param other the other distribution
+	 * @return the merged distribution
+	 */
+	public PopulationDistribution merge(PopulationDistribution other) {
+		KllSketch mergedAdded = added.copy();
+		mergedAdded.merge(other.added);
+		KllSketch mergedRemoved = removed.copy();
+		mergedRemoved.merge(other.removed);
+		return new PopulationDistribution(mergedAdded, mergedRemoved);
+	}
+
+	/**
+	 * Retrieves the exact number of cities.
+	 *
+	 * @return the number of cities
+	 */
+	public long getCount() {
+		return added.getCount() - removed.getCount();
+	}
+
+	/**
+	 * Estimates a quantile of the populations, such as 0.5 for the median.
+	 *
+	 * @param fraction the fraction of cities at most as populated as the
+	 *                 quantile, between 0 and 1
+	 * @return the estimated population, or null if there is no city
+	 */
+	public Long quantile(double fraction) {
+		long count = getCount();
+		if (count <= 0) {
+			return null;
+		}
+		if (removed.getCount() == 0) {
+			return added.quantile(fraction);
+		}
+		long target = KllSketch.target(fraction, count);
+		KllSketch.SortedView addedView = added.sortedView();
+		KllSketch.SortedView removedView = removed.sortedView();
+		long[] values = addedView.values();
+		for (int i = 0; i < values.length; i++) {
+			if (addedView.cumulativeWeights()[i] - removedView.rank(values[i]) >= target) {
+				return values[i];
+			}
+		}
+		return values[values.length - 1];
+	}
+}
@@ -0,0 +1,95 @@
+package fr.diginamic.hello.index;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Distribution of the city populations of each department and of the whole
+ * country, as {@link PopulationDistribution} sketches of constant size. Those
+ * of a region are merged from its departments on demand.
+ *
+ * Like the other indexes, the state is immutable and replaced as a whole on
+ * every change, so readers never wait. A city change only copies the sketches
+ * of its departments and of the country.
+ */
+@Component
+public class PopulationQuantilesIndex implements VilleIndex {
+
+	private volatile State state = new State(Map.of(), PopulationDistribution.EMPTY);
+
+	/**
+	 * Immutable state of the index.
+	 *
+	 * @param byDepartement the distribution of each department with cities
+	 * @param nation        the distribution of every city
+	 */
+	private record State(Map<String, PopulationDistribution> byDepartement, PopulationDistribution nation) {
+	}
+
+	@Override
+	public synchronized void rebuild(List<VilleSnapshot> villes) {
+		Map<String, KllSketch> byDepartement = new HashMap<>();
+		KllSketch nation = new KllSketch();
+		for (VilleSnapshot ville : villes) {
+			nation.update(ville.nbHabitants());
+			if (ville.codeDepartement() != null) {
+				byDepartement.computeIfAbsent(ville.codeDepartement(), code -> new KllSketch())
+						.update(ville.nbHabitants());
+			}
+		}
+		Map<String, PopulationDistribution> distributions = new HashMap<>();
+		byDepartement.forEach((code, sketch) -> distributions.put(code, PopulationDistribution.of(sketch)));
+		state = new State(Map.copyOf(distributions), PopulationDistribution.of(nation));
+	}
+
+	@Override
+	public synchronized void apply(VilleSnapshot before, VilleSnapshot after) {
+		State current = state;
+		Map<String, PopulationDistribution> byDepartement = new HashMap<>(current.byDepartement());
+		PopulationDistribution nation = current.nation();
+		if (before != null) {
+			nation = nation.without(before.nbHabitants());
+			if (before.codeDepartement() != null) {
+				byDepartement.computeIfPresent(before.codeDepartement(),
+						(code, distribution) -> distribution.without(before.nbHabitants()));
+			}
+		}
+		if (after != null) {
+			nation = nation.with(after.nbHabitants());
+			if (after.codeDepartement() != null) {
+				byDepartement.merge(after.codeDepartement(), PopulationDistribution.EMPTY.with(after.nbHabitants()),
+						(distribution, added) -> distribution.with(after.nbHabitants()));
+			}
+		}
+		state = new State(Map.copyOf(byDepartement), nation);
+	}
+
+	/**
+	 * Retrieves the distribution of the populations of every city.
+	 *
+	 * @return the distribution
+	 */
+	public PopulationDistribution getNation() {
+		return state.nation();
+	}
+
+	/**
+	 * Retrieves the distribution of the populations of the cities of some
+	 * departments.
+	 *
+	 * @param codesDepartement the codes of the departments
+	 * @return the merged distribution, empty if the departments have no city
+	 */
+	public PopulationDistribution getDepartements(Collection<String> codesDepartement) {
+		Map<String, PopulationDistribution> byDepartement = state.byDepartement();
+		PopulationDistribution merged = PopulationDistribution.EMPTY;
+		for (String code : codesDepartement) {
+			merged = merged.merge(byDepartement.getOrDefault(code, PopulationDistribution.EMPTY));
+		}
+		return merged;
+	}
+}
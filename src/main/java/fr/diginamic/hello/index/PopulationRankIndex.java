@@ -0,0 +1,107 @@
+package fr.diginamic.hello.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.stereotype.Component;
+
+import fr.diginamic.hello.dto.VilleRankDto;
+
+/**
+ * Population rank of every city, nationally and within its department, read
+ * in O(log n) from a {@link FenwickTree} per scope rather than by counting the
+ * more populated cities in the database.
+ *
+ * Like the other indexes, the state is immutable and replaced as a whole on
+ * every change, so readers never wait. A city change copies the national tree
+ * and the trees of its departments.
+ */
+@Component
+public class PopulationRankIndex implements VilleIndex {
+
+	private volatile State state = new State(Map.of(), FenwickTree.EMPTY, Map.of());
+
+	/**
+	 * Immutable state of the index.
+	 *
+	 * @param villes        every city, by ID
+	 * @param nation        the populations of every city
+	 * @param byDepartement the populations of the cities of each department
+	 */
+	private record State(Map<Long, VilleSnapshot> villes, FenwickTree nation,
+			Map<String, FenwickTree> byDepartement) {
+	}
+
+	@Override
+	public synchronized void rebuild(List<VilleSnapshot> villes) {
+		Map<Long, VilleSnapshot> byId = new HashMap<>(villes.size() * 4 / 3 + 1);
+		Map<String, List<VilleSnapshot>> grouped = new HashMap<>();
+		for (VilleSnapshot ville : villes) {
+			byId.put(ville.id(), ville);
+			if (ville.codeDepartement() != null) {
+				grouped.computeIfAbsent(ville.codeDepartement(), code -> new ArrayList<>()).add(ville);
+			}
+		}
+		Map<String, FenwickTree> byDepartement = new HashMap<>();
+		grouped.forEach((code, departement) -> byDepartement.put(code, FenwickTree.of(populations(departement))));
+		state = new State(byId, FenwickTree.of(populations(villes)), byDepartement);
+	}
+
+	@Override
+	public synchronized void apply(VilleSnapshot before, VilleSnapshot after) {
+		State current = state;
+		Map<Long, VilleSnapshot> villes = new HashMap<>(current.villes());
+		Map<String, FenwickTree> byDepartement = new HashMap<>(current.byDepartement());
+		FenwickTree nation = current.nation();
+		if (before != null && villes.remove(before.id()) != null) {
+			nation = nation.without(before.nbHabitants());
+			if (before.codeDepartement() != null) {
+				byDepartement.computeIfPresent(before.codeDepartement(),
+						(code, tree) -> tree.without(before.nbHabitants()));
+			}
+		}
+		if (after != null) {
+			villes.put(after.id(), after);
+			nation = nation.with(after.nbHabitants());
+			if (after.codeDepartement() != null) {
+				byDepartement.put(after.codeDepartement(), byDepartement
+						.getOrDefault(after.codeDepartement(), FenwickTree.EMPTY).with(after.nbHabitants()));
+			}
+		}
+		state = new State(villes, nation, byDepartement);
+	}
+
+	/**
+	 * Finds the national and departmental ranks of a city.
+	 *
+	 * @param id the ID of the city
+	 * @return the ranks, or empty if the city does not exist
+	 */
+	public Optional<VilleRankDto> findRank(long id) {
+		State current = state;
+		VilleSnapshot ville = current.villes().get(id);
+		if (ville == null) {
+			return Optional.empty();
+		}
+		FenwickTree departement = ville.codeDepartement() != null
+				? current.byDepartement().get(ville.codeDepartement())
+				: null;
+		return Optional.of(new VilleRankDto(ville.id(), ville.nom(), ville.nbHabitants(), ville.codeDepartement(),
+				current.nation().countGreaterThan(ville.nbHabitants()) + 1L, current.nation().size(),
+				departement != null ? departement.countGreaterThan(ville.nbHabitants()) + 1L : null,
+				departement != null ? (long) departement.size() : null));
+	}
+
+	/**
+	 * Extracts the populations of some cities.
+	 *
+	 * @param villes the cities
+	 * @return their populations
+	 */
+	private static long[] populations(List<VilleSnapshot> villes) {
+		return villes.stream().mapToLong(VilleSnapshot::nbHabitants).toArray();
+	}
+}
@@ -0,0 +1,161 @@
+package fr.diginamic.hello.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+
+import fr.diginamic.hello.dto.VilleResumeDto;
+
+/**
+ * Cities of each department, kept sorted by decreasing population, so that the
+ * N most populated cities of a department are read in O(N) without querying
+ * the database.
+ *
+ * Each department holds an immutable sorted array. A city change copies the
+ * array of its department only, with the city inserted or removed in place by
+ * binary search, and publishes it with a single write to a concurrent map; a
+ * rebuild publishes a whole new map. Readers therefore never wait and always
+ * see a consistent array, while the other departments are left untouched.
+ */
+@Component
+public class TopVillesIndex implements VilleIndex {
+
+	/** Order of the cities of a department: by decreasing population, then ID. */
+	private static final Comparator<VilleResumeDto> ORDER = Comparator.comparingLong(VilleResumeDto::nbHabitants)
+			.reversed().thenComparingLong(VilleResumeDto::id);
+
+	private static final VilleResumeDto[] EMPTY = new VilleResumeDto[0];
+
+	private volatile Map<String, VilleResumeDto[]> byDepartement = new ConcurrentHashMap<>();
+
+	@Override
+	public synchronized void rebuild(List<VilleSnapshot> villes) {
+		Map<String, List<VilleResumeDto>> grouped = new HashMap<>();
+		for (VilleSnapshot ville : villes) {
+			if (ville.codeDepartement() != null) {
+				grouped.computeIfAbsent(ville.codeDepartement(), code -> new ArrayList<>()).add(resume(ville));
+			}
+		}
+		Map<String, VilleResumeDto[]> rebuilt = new ConcurrentHashMap<>(grouped.size() * 4 / 3 + 1);
+		grouped.forEach((code, resumes) -> {
+			VilleResumeDto[] sorted = resumes.toArray(VilleResumeDto[]::new);
+			Arrays.sort(sorted, ORDER);
+			rebuilt.put(code, sorted);
+		});
+		byDepartement = rebuilt;
+	}
+
+	@Override
+	public synchronized void apply(VilleSnapshot before, VilleSnapshot after) {
+		Map<String, VilleResumeDto[]> current = byDepartement;
+		String from = before != null ? before.codeDepartement() : null;
+		String to = after != null ? after.codeDepartement() : null;
+		if (from != null) {
+			VilleResumeDto[] villes = without(current.getOrDefault(from, EMPTY), resume(before));
+			if (from.equals(to)) {
+				// Published at once, so that readers never miss the city
+				villes = with(villes, resume(after));
+				to = null;
+			}
+			if (villes.length == 0) {
+				current.remove(from);
+			} else {
+				current.put(from, villes);
+			}
+		}
+		if (to != null) {
+			current.put(to, with(current.getOrDefault(to, EMPTY), resume(after)));
+		}
+	}
+
+	/**
+	 * Finds the most populated cities of a department, by decreasing population
+	 * then increasing ID.
+	 *
+	 * @param codeDepartement the code of the department
+	 * @param offset          the number of cities to skip
+	 * @param count           the maximum number of cities to return
+	 * @return the cities, empty if the department has none
+	 */
+	public List<VilleResumeDto> findTop(String codeDepartement, int offset, int count) {
+		VilleResumeDto[] villes = byDepartement.getOrDefault(codeDepartement, EMPTY);
+		int from = Math.min(Math.max(offset, 0), villes.length);
+		int to = from + Math.min(Math.max(count, 0), villes.length - from);
+		return List.of(Arrays.copyOfRange(villes, from, to));
+	}
+
+	/**
+	 * Retrieves the number of cities held.
+	 *
+	 * @return the number of cities
+	 */
+	public int size() {
+		return byDepartement.values().stream().mapToInt(villes -> villes.length).sum();
+	}
+
+	/**
+	 * Returns a copy of a sorted array with a city inserted at its place.
+	 *
+	 * @param villes the sorted cities
+	 * @param ville  the city to add
+	 * @return the sorted cities, including the new one
+	 */
+	private static VilleResumeDto[] with(VilleResumeDto[] villes, VilleResumeDto ville) {
+		int found = Arrays.binarySearch(villes, ville, ORDER);
+		if (found >= 0) {
+			VilleResumeDto[] replaced = villes.clone();
+			replaced[found] = ville;
+			return replaced;
+		}
+		int position = -found - 1;
+		VilleResumeDto[] grown = new VilleResumeDto[villes.length + 1];
+		System.arraycopy(villes, 0, grown, 0, position);
+		grown[position] = ville;
+		System.arraycopy(villes, position, grown, position + 1, villes.length - position);
+		return grown;
+	}
+
+	/**
+	 * Returns a copy of a sorted array without a city, or the same array if it
+	 * does not hold the city.
+	 *
+	 * @param villes the sorted cities
+	 * @param ville  the city to remove, as it was added
+	 * @return the sorted cities, excluding the removed one
+	 */
+	private static VilleResumeDto[] without(VilleResumeDto[] villes, VilleResumeDto ville) {
+		int position = Arrays.binarySearch(villes, ville, ORDER);
+		if (position < 0) {
+			// The population may have changed without the index knowing, so look
+			// for the city by its ID instead
+			position = 0;
+			while (position < villes.length && villes[position].id() != ville.id()) {
+				position++;
+			}
+			if (position == villes.length) {
+				return villes;
+			}
+		}
+		VilleResumeDto[] shrunk = new VilleResumeDto[villes.length - 1];
+		System.arraycopy(villes, 0, shrunk, 0, position);
+		System.arraycopy(villes, position + 1, shrunk, position, villes.length - position - 1);
+		return shrunk;
+	}
+
+	/**
+	 * Builds the summary of a city held by the index.
+	 *
+	 * @param ville the city
+	 * @return its summary
+	 */
+	private static VilleResumeDto resume(VilleSnapshot ville) {
+		return new VilleResumeDto(ville.id(), ville.nom(), ville.nbHabitants(), ville.codeCommune(),
+				ville.codeDepartement());
+	}
+}
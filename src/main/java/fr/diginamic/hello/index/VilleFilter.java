@@ -0,0 +1,19 @@
+package fr.diginamic.hello.index;
+
+import java.util.Collection;
+
+/**
+ * Combination of filters answered by a {@link VilleFilterIndex}. Every filter
+ * is optional: null matches any city, while an empty collection matches none.
+ * The codes of a same filter are OR'ed, and the filters are AND'ed.
+ *
+ * @param departements    the codes of the departments of the cities
+ * @param regions         the codes of the regions of the cities
+ * @param arrondissements the codes of the arrondissements of the cities
+ * @param cantons         the codes of the cantons of the cities
+ * @param minPopulation   the minimum number of inhabitants, inclusive
+ * @param maxPopulation   the maximum number of inhabitants, inclusive
+ */
+public record VilleFilter(Collection<String> departements, Collection<String> regions,
+		Collection<String> arrondissements, Collection<String> cantons, Long minPopulation, Long maxPopulation) {
+}
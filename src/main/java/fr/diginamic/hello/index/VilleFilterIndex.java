@@ -0,0 +1,272 @@
+package fr.diginamic.hello.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+import org.springframework.stereotype.Component;
+
+import fr.diginamic.hello.dto.VilleResumeDto;
+
+/**
+ * Bitmaps of the cities of each department, region, arrondissement, canton and
+ * population band, answering any combination of those filters without querying
+ * the database: the bitmaps of the codes of a filter are OR'ed, those of the
+ * filters AND'ed, and only the remaining cities are read, to check their exact
+ * population and keep the first ones.
+ *
+ * Each city has a position, the cities of a same region and department being
+ * given consecutive positions when the index is built, so that their
+ * {@link Bitmap} stay small. A modified city keeps its position, and a created
+ * city takes a new one at the end, until the next rebuild.
+ *
+ * Like the other indexes, the state is immutable and replaced as a whole on
+ * every change, so readers never wait.
+ */
+@Component
+public class VilleFilterIndex implements VilleIndex {
+
+	/** Lower bounds of the population bands, in increasing order. */
+	private static final long[] BANDS = { Long.MIN_VALUE, 100, 200, 500, 1_000, 2_000, 5_000, 10_000, 20_000,
+			50_000, 100_000, 200_000, 500_000, 1_000_000 };
+
+	/** Order of the positions when building: by region, department, then ID. */
+	private static final Comparator<VilleSnapshot> CLUSTERING = Comparator
+			.comparing(VilleSnapshot::codeRegion, Comparator.nullsLast(Comparator.naturalOrder()))
+			.thenComparing(VilleSnapshot::codeDepartement, Comparator.nullsLast(Comparator.naturalOrder()))
+			.thenComparingLong(VilleSnapshot::id);
+
+	private volatile State state = State.of(List.of());
+
+	/**
+	 * Immutable state of the index.
+	 *
+	 * @param villes          the city at each position, null if deleted since
+	 *                        the last rebuild
+	 * @param positions       the position of each city, by ID
+	 * @param live            the positions of every city
+	 * @param departements    the positions of the cities of each department
+	 * @param regions         the positions of the cities of each region
+	 * @param arrondissements the positions of the cities of each arrondissement
+	 * @param cantons         the positions of the cities of each canton
+	 * @param bands           the positions of the cities of each population band
+	 */
+	private record State(VilleSnapshot[] villes, Map<Long, Integer> positions, Bitmap live,
+			Map<String, Bitmap> departements, Map<String, Bitmap> regions, Map<String, Bitmap> arrondissements,
+			Map<String, Bitmap> cantons, Bitmap[] bands) {
+
+		static State of(List<VilleSnapshot> snapshots) {
+			VilleSnapshot[] villes = snapshots.toArray(VilleSnapshot[]::new);
+			Arrays.sort(villes, CLUSTERING);
+			Map<Long, Integer> positions = new HashMap<>(villes.length * 4 / 3 + 1);
+			int[] all = new int[villes.length];
+			for (int position = 0; position < villes.length; position++) {
+				positions.put(villes[position].id(), position);
+				all[position] = position;
+			}
+			int[][] bandPositions = new int[BANDS.length][villes.length];
+			int[] bandSizes = new int[BANDS.length];
+			for (int position = 0; position < villes.length; position++) {
+				int band = band(villes[position].nbHabitants());
+				bandPositions[band][bandSizes[band]++] = position;
+			}
+			Bitmap[] bands = new Bitmap[BANDS.length];
+			for (int band = 0; band < BANDS.length; band++) {
+				bands[band] = Bitmap.of(bandPositions[band], bandSizes[band]);
+			}
+			return new State(villes, positions, Bitmap.of(all, all.length),
+					group(villes, VilleSnapshot::codeDepartement), group(villes, VilleSnapshot::codeRegion),
+					group(villes, VilleSnapshot::codeArrondissement), group(villes, VilleSnapshot::codeCanton), bands);
+		}
+
+		/**
+		 * Builds the bitmap of each value of a field.
+		 *
+		 * @param villes the city at each position
+		 * @param field  the field
+		 * @return the positions of the cities having each value
+		 */
+		private static Map<String, Bitmap> group(VilleSnapshot[] villes, Function<VilleSnapshot, String> field) {
+			Map<String, List<Integer>> grouped = new HashMap<>();
+			for (int position = 0; position < villes.length; position++) {
+				String value = field.apply(villes[position]);
+				if (value != null) {
+					grouped.computeIfAbsent(value, key -> new ArrayList<>()).add(position);
+				}
+			}
+			Map<String, Bitmap> bitmaps = new HashMap<>(grouped.size() * 4 / 3 + 1);
+			grouped.forEach((value, positions) -> bitmaps.put(value,
+					Bitmap.of(positions.stream().mapToInt(Integer::intValue).toArray(), positions.size())));
+			return bitmaps;
+		}
+	}
+
+	@Override
+	public synchronized void rebuild(List<VilleSnapshot> villes) {
+		state = State.of(villes);
+	}
+
+	@Override
+	public synchronized void apply(VilleSnapshot before, VilleSnapshot after) {
+		State current = state;
+		Integer existing = before != null ? current.positions().get(before.id()) : null;
+		if (existing == null && after == null) {
+			return;
+		}
+		int position = existing != null ? existing : current.villes().length;
+		VilleSnapshot[] villes = Arrays.copyOf(current.villes(), Math.max(current.villes().length, position + 1));
+		Map<Long, Integer> positions = new HashMap<>(current.positions());
+		Bitmap live = current.live();
+		Map<String, Bitmap> departements = new HashMap<>(current.departements());
+		Map<String, Bitmap> regions = new HashMap<>(current.regions());
+		Map<String, Bitmap> arrondissements = new HashMap<>(current.arrondissements());
+		Map<String, Bitmap> cantons = new HashMap<>(current.cantons());
+		Bitmap[] bands = current.bands().clone();
+
+		if (existing != null) {
+			VilleSnapshot previous = current.villes()[position];
+			positions.remove(previous.id());
+			live = live.without(position);
+			remove(departements, previous.codeDepartement(), position);
+			remove(regions, previous.codeRegion(), position);
+			remove(arrondissements, previous.codeArrondissement(), position);
+			remove(cantons, previous.codeCanton(), position);
+			int band = band(previous.nbHabitants());
+			bands[band] = bands[band].without(position);
+			villes[position] = null;
+		}
+		if (after != null) {
+			villes[position] = after;
+			positions.put(after.id(), position);
+			live = live.with(position);
+			add(departements, after.codeDepartement(), position);
+			add(regions, after.codeRegion(), position);
+			add(arrondissements, after.codeArrondissement(), position);
+			add(cantons, after.codeCanton(), position);
+			int band = band(after.nbHabitants());
+			bands[band] = bands[band].with(position);
+		}
+		state = new State(villes, positions, live, departements, regions, arrondissements, cantons, bands);
+	}
+
+	/**
+	 * Finds the first cities matching a combination of filters.
+	 *
+	 * @param filter the filters
+	 * @param order  the order of the cities
+	 * @param limit  the maximum number of cities to return
+	 * @return the matching cities, in order
+	 */
+	public List<VilleResumeDto> find(VilleFilter filter, Comparator<VilleSnapshot> order, int limit) {
+		State current = state;
+		VilleSnapshot[] villes = current.villes();
+		long[] matching = new long[(villes.length + 63) >>> 6];
+		current.live().orInto(matching);
+		retain(matching, current.departements(), filter.departements());
+		retain(matching, current.regions(), filter.regions());
+		retain(matching, current.arrondissements(), filter.arrondissements());
+		retain(matching, current.cantons(), filter.cantons());
+
+		long min = filter.minPopulation() != null ? filter.minPopulation() : Long.MIN_VALUE;
+		long max = filter.maxPopulation() != null ? filter.maxPopulation() : Long.MAX_VALUE;
+		if (filter.minPopulation() != null || filter.maxPopulation() != null) {
+			long[] banded = new long[matching.length];
+			for (int band = band(min); band <= band(max); band++) {
+				current.bands()[band].orInto(banded);
+			}
+			and(matching, banded);
+		}
+
+		// The bands only narrow down the cities: their exact population is checked
+		PriorityQueue<VilleSnapshot> best = new PriorityQueue<>(order.reversed());
+		for (int word = 0; word < matching.length; word++) {
+			for (long bits = matching[word]; bits != 0; bits &= bits - 1) {
+				VilleSnapshot ville = villes[(word << 6) + Long.numberOfTrailingZeros(bits)];
+				if (ville.nbHabitants() >= min && ville.nbHabitants() <= max) {
+					best.add(ville);
+					if (best.size() > limit) {
+						best.poll();
+					}
+				}
+			}
+		}
+		VilleSnapshot[] sorted = best.toArray(VilleSnapshot[]::new);
+		Arrays.sort(sorted, order);
+		return Arrays.stream(sorted).map(ville -> new VilleResumeDto(ville.id(), ville.nom(), ville.nbHabitants(),
+				ville.codeCommune(), ville.codeDepartement())).toList();
+	}
+
+	/**
+	 * Keeps, in a plain bitmap, the positions found in the bitmap of any of some
+	 * codes.
+	 *
+	 * @param matching the plain bitmap, updated
+	 * @param bitmaps  the bitmap of each code
+	 * @param codes    the codes, or null to keep every position
+	 */
+	private static void retain(long[] matching, Map<String, Bitmap> bitmaps, Collection<String> codes) {
+		if (codes == null) {
+			return;
+		}
+		long[] any = new long[matching.length];
+		for (String code : codes) {
+			bitmaps.getOrDefault(code, Bitmap.EMPTY).orInto(any);
+		}
+		and(matching, any);
+	}
+
+	/**
+	 * Intersects two plain bitmaps of the same length.
+	 *
+	 * @param target the first bitmap, updated
+	 * @param other  the second bitmap
+	 */
+	private static void and(long[] target, long[] other) {
+		for (int i = 0; i < target.length; i++) {
+			target[i] &= other[i];
+		}
+	}
+
+	/**
+	 * Finds the population band of a number of inhabitants.
+	 *
+	 * @param nbHabitants the number of inhabitants
+	 * @return the index of its band
+	 */
+	private static int band(long nbHabitants) {
+		int position = Arrays.binarySearch(BANDS, nbHabitants);
+		return position >= 0 ? position : -position - 2;
+	}
+
+	/**
+	 * Adds a position to the bitmap of a code.
+	 *
+	 * @param bitmaps  the bitmap of each code, updated
+	 * @param code     the code, possibly null
+	 * @param position the position
+	 */
+	private static void add(Map<String, Bitmap> bitmaps, String code, int position) {
+		if (code != null) {
+			bitmaps.put(code, bitmaps.getOrDefault(code, Bitmap.EMPTY).with(position));
+		}
+	}
+
+	/**
+	 * Removes a position from the bitmap of a code.
+	 *
+	 * @param bitmaps  the bitmap of each code, updated
+	 * @param code     the code, possibly null
+	 * @param position the position
+	 */
+	private static void remove(Map<String, Bitmap> bitmaps, String code, int position) {
+		if (code != null) {
+			bitmaps.computeIfPresent(code, (key, bitmap) -> bitmap.without(position));
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package fr.diginamic.hello.index;
+
+import java.util.List;
+
+/**
+ * In-memory index over the cities, kept up to date by
+ * {@link VilleIndexMaintainer}: fully rebuilt at start-up and after each
+ * import, then updated incrementally after each committed city change.
+ *
+ * Implementations must let readers query the index while it is rebuilt or
+ * updated.
+ */
+public interface VilleIndex {
+
+	/**
+	 * Replaces the whole content of the index.
+	 *
+	 * @param villes every city
+	 */
+	void rebuild(List<VilleSnapshot> villes);
+
+	/**
+	 * Applies a single city change.
+	 *
+	 * @param before the city before the change, or null if it has been created
+	 * @param after  the city after the change, or null if it has been deleted
+	 */
+	void apply(VilleSnapshot before, VilleSnapshot after);
+}
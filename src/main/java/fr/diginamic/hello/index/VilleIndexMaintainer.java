@@ -0,0 +1,147 @@
+package fr.diginamic.hello.index;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import fr.diginamic.hello.events.DataImportedEvent;
+import fr.diginamic.hello.events.ReferenceDataChangedEvent;
+import fr.diginamic.hello.events.VilleChangedEvent;
+import fr.diginamic.hello.events.VillesBulkChangedEvent;
+import fr.diginamic.hello.repositories.VilleRepository;
+
+/**
+ * Keeps every {@link VilleIndex} in line with the database. The indexes are
+ * rebuilt from a projection of all cities once the application is ready, after
+ * each import and after each department or region change, since those change
+ * the department codes held by the snapshots. Single city changes are applied
+ * incrementally once committed; a chunk of a bulk import is rebuilt from once,
+ * as applying each of its changes would copy every index as many times.
+ * 
+ * Rebuilds and changes are serialized under one lock, the snapshot read
+ * included, so that a rebuild never overwrites a change applied after its
+ * read, and concurrent rebuilds finish in the order of their reads. A change
+ * committed just before a rebuild read may reach the lock after that rebuild:
+ * the maintainer keeps the current version of each city, so that such a change
+ * is skipped when the rebuild already holds it, rather than applied twice.
+ */
+@Component
+public class VilleIndexMaintainer {
+
+	@Autowired
+	private List<VilleIndex> indexes;
+
+	@Autowired
+	private VilleRepository villeRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private final Object lock = new Object();
+
+	/**
+	 * The version of each city held by the indexes, by ID. Guarded by
+	 * {@link #lock}.
+	 */
+	private Map<Long, VilleSnapshot> current = new HashMap<>();
+
+	/**
+	 * Loads every city and rebuilds all the indexes from them.
+	 */
+	public void rebuildAll() {
+		// A new transaction, as this may run right after another one has committed.
+		// It is not read-only, so that it reads from the primary database, which
+		// already holds that change, rather than from a possibly late replica.
+		TransactionTemplate tx = new TransactionTemplate(transactionManager);
+		tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		synchronized (lock) {
+			List<VilleSnapshot> villes = tx.execute(status -> villeRepository.findAllSnapshots());
+			Map<Long, VilleSnapshot> byId = new HashMap<>(villes.size() * 4 / 3 + 1);
+			for (VilleSnapshot ville : villes) {
+				byId.put(ville.id(), ville);
+			}
+			for (VilleIndex index : indexes) {
+				index.rebuild(villes);
+			}
+			current = byId;
+		}
+	}
+
+	/**
+	 * Builds the indexes once the application has started.
+	 *
+	 * @param event the start-up event
+	 */
+	@EventListener
+	public void onApplicationReady(ApplicationReadyEvent event) {
+		rebuildAll();
+	}
+
+	/**
+	 * Rebuilds the indexes after an import.
+	 *
+	 * @param event the import event
+	 */
+	@EventListener
+	public void onDataImported(DataImportedEvent event) {
+		rebuildAll();
+	}
+
+	/**
+	 * Rebuilds the indexes once a department or region change has been
+	 * committed.
+	 *
+	 * @param event the change event
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onReferenceDataChanged(ReferenceDataChangedEvent event) {
+		rebuildAll();
+	}
+
+	/**
+	 * Rebuilds the indexes once a chunk of a bulk import has been committed.
+	 *
+	 * @param event the bulk change event
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onVillesBulkChanged(VillesBulkChangedEvent event) {
+		rebuildAll();
+	}
+
+	/**
+	 * Applies a city change to every index once it has been committed. The change
+	 * is applied from the version of the city the indexes hold, and skipped if
+	 * they already hold the new one.
+	 *
+	 * @param event the change event
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onVilleChanged(VilleChangedEvent event) {
+		VilleSnapshot after = event.getAfter();
+		long id = event.getVilleId();
+		synchronized (lock) {
+			VilleSnapshot before = current.get(id);
+			if (Objects.equals(before, after)) {
+				return;
+			}
+			for (VilleIndex index : indexes) {
+				index.apply(before, after);
+			}
+			if (after != null) {
+				current.put(id, after);
+			} else {
+				current.remove(id);
+			}
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package fr.diginamic.hello.index;
+
+/**
+ * Immutable copy of the city fields held by the in-memory indexes. It is
+ * loaded by a projection query, so building an index never goes through
+ * managed entities, and it describes a city before and after each change.
+ *
+ * @param id                 the ID of the city
+ * @param nom                the name of the city
+ * @param nbHabitants        the number of inhabitants
+ * @param codeCommune        the commune code of the city
+ * @param codeArrondissement the code of the arrondissement of the city, within
+ *                           its department
+ * @param codeCanton         the code of the canton of the city, within its
+ *                           department
+ * @param codeDepartement    the code of the department of the city, or null
+ * @param codeRegion         the code of the region of its department, or null
+ */
+public record VilleSnapshot(long id, String nom, long nbHabitants, String codeCommune, String codeArrondissement,
+		String codeCanton, String codeDepartement, String codeRegion) {
+}
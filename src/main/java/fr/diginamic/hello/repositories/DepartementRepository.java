@@ -1,8 +1,15 @@
 package fr.diginamic.hello.repositories;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import jakarta.persistence.QueryHint;
 
 import fr.diginamic.hello.entities.Departement;
 
@@ -13,12 +20,14 @@ import fr.diginamic.hello.entities.Departement;
 public interface DepartementRepository extends JpaRepository<Departement, Integer> {
 
 	/**
-	 * Retrieves a department by its code.
+	 * Retrieves a department by its code. The result is held in the Hibernate
+	 * query cache, since most city searches resolve their department this way.
 	 *
 	 * @param code The code of the department to find.
 	 * @return An Optional containing the found department if it exists, or an empty
 	 *         Optional if no department is found with the provided code.
 	 */
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
 	Optional<Departement> findByCode(String code);
 
 	/**
@@ -28,4 +37,23 @@ public interface DepartementRepository extends JpaRepository<Departement, Intege
 	 * @return True if a department with the given code exists, otherwise false.
 	 */
 	boolean existsByCode(String code);
+
+	/**
+	 * Lists the codes of the departments of a region.
+	 *
+	 * @param codeRegion The code of the region.
+	 * @return The codes of its departments, empty if the region has none or does
+	 *         not exist.
+	 */
+	@Query("select d.code from Departement d where d.region.code = :codeRegion")
+	List<String> findCodesByRegionCode(String codeRegion);
+
+	/**
+	 * Finds the departments having some codes, such as those of a chunk of a bulk
+	 * import.
+	 *
+	 * @param codes The codes of the departments.
+	 * @return The existing departments among them, in no particular order.
+	 */
+	List<Departement> findByCodeIn(Collection<String> codes);
 }
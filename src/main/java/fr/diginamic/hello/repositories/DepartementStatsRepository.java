@@ -0,0 +1,86 @@
+package fr.diginamic.hello.repositories;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import fr.diginamic.hello.dto.PopulationStatsDto;
+import fr.diginamic.hello.entities.DepartementStats;
+
+/**
+ * Repository of the department population rollups. They are only written by
+ * the set-based statements below, which the callers run in the transaction of
+ * the city change they reflect.
+ */
+public interface DepartementStatsRepository extends JpaRepository<DepartementStats, Integer> {
+
+	/**
+	 * Finds the population figures of a department. A department without any
+	 * rollup row yet has no city.
+	 *
+	 * @param code the code of the department
+	 * @return the figures, or empty if the department does not exist
+	 */
+	@Query("select new fr.diginamic.hello.dto.PopulationStatsDto(d.code, coalesce(s.nbCommunes, 0L), "
+			+ "coalesce(s.nbHabitants, 0L), coalesce(s.populationMunicipale, 0L), "
+			+ "coalesce(s.populationCompteeAPart, 0L), coalesce(s.populationTotale, 0L), s.minHabitants, "
+			+ "s.maxHabitants) from Departement d left join DepartementStats s on s.departementId = d.id "
+			+ "where d.code = :code")
+	Optional<PopulationStatsDto> findStatsByCode(String code);
+
+	/**
+	 * Creates the empty rollup row of a department, unless it already exists.
+	 *
+	 * @param departementId the ID of the department
+	 * @return the number of rows created
+	 */
+	@Modifying
+	@Query(nativeQuery = true, value = "INSERT INTO departement_stats (departement_id, nb_communes, nb_habitants, "
+			+ "population_municipale, population_comptee_a_part, population_totale) "
+			+ "SELECT d.id, 0, 0, 0, 0, 0 FROM departement d WHERE d.id = :departementId "
+			+ "AND NOT EXISTS (SELECT 1 FROM departement_stats s WHERE s.departement_id = d.id)")
+	int insertIfMissing(int departementId);
+
+	/**
+	 * Adds the contribution of some cities to the rollup of their department.
+	 * The smallest and largest populations are read again from the population
+	 * index of the department, which costs two index seeks.
+	 *
+	 * @param departementId          the ID of the department
+	 * @param nbCommunes             the number of cities added, negative if
+	 *                               removed
+	 * @param nbHabitants            the number of inhabitants added
+	 * @param populationMunicipale   the municipal population added
+	 * @param populationCompteeAPart the population counted apart added
+	 * @param populationTotale       the total population added
+	 * @return the number of rows updated
+	 */
+	@Modifying
+	@Query(nativeQuery = true, value = "UPDATE departement_stats SET nb_communes = nb_communes + :nbCommunes, "
+			+ "nb_habitants = nb_habitants + :nbHabitants, "
+			+ "population_municipale = population_municipale + :populationMunicipale, "
+			+ "population_comptee_a_part = population_comptee_a_part + :populationCompteeAPart, "
+			+ "population_totale = population_totale + :populationTotale, "
+			+ "min_habitants = (SELECT MIN(v.nb_habitants) FROM ville v WHERE v.departement_id = :departementId), "
+			+ "max_habitants = (SELECT MAX(v.nb_habitants) FROM ville v WHERE v.departement_id = :departementId) "
+			+ "WHERE departement_id = :departementId")
+	int add(int departementId, long nbCommunes, long nbHabitants, long populationMunicipale,
+			long populationCompteeAPart, long populationTotale);
+
+	/**
+	 * Rebuilds the rollup row of every department from the cities, in a single
+	 * grouped statement. The existing rows must have been deleted first.
+	 *
+	 * @return the number of rows created
+	 */
+	@Modifying
+	@Query(nativeQuery = true, value = "INSERT INTO departement_stats (departement_id, nb_communes, nb_habitants, "
+			+ "population_municipale, population_comptee_a_part, population_totale, min_habitants, max_habitants) "
+			+ "SELECT d.id, COUNT(v.id), COALESCE(SUM(v.nb_habitants), 0), COALESCE(SUM(v.population_municipale), 0), "
+			+ "COALESCE(SUM(v.population_comptee_a_part), 0), COALESCE(SUM(v.population_totale), 0), "
+			+ "MIN(v.nb_habitants), MAX(v.nb_habitants) "
+			+ "FROM departement d LEFT JOIN ville v ON v.departement_id = d.id GROUP BY d.id")
+	int insertAllFromVilles();
+}
@@ -1,9 +1,16 @@
 package fr.diginamic.hello.repositories;
 
 import fr.diginamic.hello.entities.Region;
+
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import jakarta.persistence.QueryHint;
 
 /**
  * Repository interface for {@link Region} entities, providing methods to
@@ -37,11 +44,21 @@ public interface RegionRepository extends JpaRepository<Region, Long> {
 	Optional<Region> findByNom(String nomRegion);
 
 	/**
-	 * Finds a region by its code.
+	 * Finds a region by its code. The result is held in the Hibernate query cache.
 	 *
 	 * @param codeRegion The code of the region to find.
 	 * @return An Optional containing the region if found, or an empty Optional if
 	 *         no region is found.
 	 */
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
 	Optional<Region> findByCode(String codeRegion);
+
+	/**
+	 * Finds the regions having some codes, such as those of a chunk of a bulk
+	 * import.
+	 *
+	 * @param codes The codes of the regions.
+	 * @return The existing regions among them, in no particular order.
+	 */
+	List<Region> findByCodeIn(Collection<String> codes);
 }
@@ -0,0 +1,90 @@
+package fr.diginamic.hello.repositories;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import fr.diginamic.hello.dto.PopulationStatsDto;
+import fr.diginamic.hello.entities.RegionStats;
+
+/**
+ * Repository of the region population rollups. The rows are addressed through
+ * a department of the region, so that a city change never needs to load its
+ * region.
+ */
+public interface RegionStatsRepository extends JpaRepository<RegionStats, Long> {
+
+	/**
+	 * Finds the population figures of a region. A region without any rollup row
+	 * yet has no city.
+	 *
+	 * @param code the code of the region
+	 * @return the figures, or empty if the region does not exist
+	 */
+	@Query("select new fr.diginamic.hello.dto.PopulationStatsDto(r.code, coalesce(s.nbCommunes, 0L), "
+			+ "coalesce(s.nbHabitants, 0L), coalesce(s.populationMunicipale, 0L), "
+			+ "coalesce(s.populationCompteeAPart, 0L), coalesce(s.populationTotale, 0L), s.minHabitants, "
+			+ "s.maxHabitants) from Region r left join RegionStats s on s.regionId = r.id where r.code = :code")
+	Optional<PopulationStatsDto> findStatsByCode(String code);
+
+	/**
+	 * Creates the empty rollup row of the region of a department, unless it
+	 * already exists or the department has no region.
+	 *
+	 * @param departementId the ID of the department
+	 * @return the number of rows created
+	 */
+	@Modifying
+	@Query(nativeQuery = true, value = "INSERT INTO region_stats (region_id, nb_communes, nb_habitants, "
+			+ "population_municipale, population_comptee_a_part, population_totale) "
+			+ "SELECT d.region_id, 0, 0, 0, 0, 0 FROM departement d "
+			+ "WHERE d.id = :departementId AND d.region_id IS NOT NULL "
+			+ "AND NOT EXISTS (SELECT 1 FROM region_stats s WHERE s.region_id = d.region_id)")
+	int insertIfMissing(int departementId);
+
+	/**
+	 * Adds the contribution of some cities to the rollup of the region of their
+	 * department. The smallest and largest populations are taken from the
+	 * department rollups of the region, which must be up to date.
+	 *
+	 * @param departementId          the ID of the department of the cities
+	 * @param nbCommunes             the number of cities added, negative if
+	 *                               removed
+	 * @param nbHabitants            the number of inhabitants added
+	 * @param populationMunicipale   the municipal population added
+	 * @param populationCompteeAPart the population counted apart added
+	 * @param populationTotale       the total population added
+	 * @return the number of rows updated
+	 */
+	@Modifying
+	@Query(nativeQuery = true, value = "UPDATE region_stats SET nb_communes = nb_communes + :nbCommunes, "
+			+ "nb_habitants = nb_habitants + :nbHabitants, "
+			+ "population_municipale = population_municipale + :populationMunicipale, "
+			+ "population_comptee_a_part = population_comptee_a_part + :populationCompteeAPart, "
+			+ "population_totale = population_totale + :populationTotale, "
+			+ "min_habitants = (SELECT MIN(s.min_habitants) FROM departement_stats s "
+			+ "JOIN departement d ON d.id = s.departement_id WHERE d.region_id = region_stats.region_id), "
+			+ "max_habitants = (SELECT MAX(s.max_habitants) FROM departement_stats s "
+			+ "JOIN departement d ON d.id = s.departement_id WHERE d.region_id = region_stats.region_id) "
+			+ "WHERE region_id = (SELECT d.region_id FROM departement d WHERE d.id = :departementId)")
+	int add(int departementId, long nbCommunes, long nbHabitants, long populationMunicipale,
+			long populationCompteeAPart, long populationTotale);
+
+	/**
+	 * Rebuilds the rollup row of every region from the department rollups, in a
+	 * single grouped statement. The existing rows must have been deleted first.
+	 *
+	 * @return the number of rows created
+	 */
+	@Modifying
+	@Query(nativeQuery = true, value = "INSERT INTO region_stats (region_id, nb_communes, nb_habitants, "
+			+ "population_municipale, population_comptee_a_part, population_totale, min_habitants, max_habitants) "
+			+ "SELECT r.id, COALESCE(SUM(s.nb_communes), 0), COALESCE(SUM(s.nb_habitants), 0), "
+			+ "COALESCE(SUM(s.population_municipale), 0), COALESCE(SUM(s.population_comptee_a_part), 0), "
+			+ "COALESCE(SUM(s.population_totale), 0), MIN(s.min_habitants), MAX(s.max_habitants) "
+			+ "FROM region r LEFT JOIN departement d ON d.region_id = r.id "
+			+ "LEFT JOIN departement_stats s ON s.departement_id = d.id GROUP BY r.id")
+	int insertAllFromDepartements();
+}
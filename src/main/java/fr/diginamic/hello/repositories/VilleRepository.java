@@ -1,50 +1,70 @@
 package fr.diginamic.hello.repositories;
 
-import org.springframework.data.domain.Page;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import fr.diginamic.hello.config.CacheConfig;
+import fr.diginamic.hello.dto.VilleResumeDto;
 import fr.diginamic.hello.entities.Departement;
 import fr.diginamic.hello.entities.Ville;
+import fr.diginamic.hello.index.VilleSnapshot;
+import jakarta.persistence.QueryHint;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repository interface for {@link Ville} entities, providing methods to perform
  * operations on the database.
+ * 
+ * The search methods returning {@link VilleResumeDto} are read-only projection
+ * variants: they only select the columns returned by the API and do not load
+ * any managed entity. They return bounded slices ordered so that consecutive
+ * pages neither overlap nor skip rows.
+ * 
+ * The department of a city is lazy. The methods whose cities are returned by
+ * the API as is fetch it in the same query through an entity graph; the others
+ * leave it unloaded.
+ * 
+ * Arbitrary combinations of filters go through
+ * {@link VilleResumeQueries#findResumes} with {@link VilleSpecifications}.
  */
-public interface VilleRepository extends JpaRepository<Ville, Integer> {
+public interface VilleRepository extends JpaRepository<Ville, Integer>, VilleResumeQueries {
 
 	/**
-	 * Finds a city by its name.
-	 *
-	 * @param nom The name of the city.
-	 * @return An Optional containing the city if found, or an empty Optional if not
-	 *         found.
+	 * Number of rows the JDBC driver fetches at a time when streaming cities.
 	 */
-	Optional<Ville> findByNom(String nom);
+	String STREAM_FETCH_SIZE = "500";
 
 	/**
-	 * Retrieves a list of cities in a department, sorted by decreasing number of
-	 * inhabitants.
+	 * Finds a city by its ID, along with its department.
 	 *
-	 * @param departement The department entity.
-	 * @param pageable    Pagination information.
-	 * @return A paginated list of cities.
+	 * @param id The ID of the city.
+	 * @return An Optional containing the city if found, or an empty Optional if not
+	 *         found.
 	 */
-	List<Ville> findByDepartementOrderByNbHabitantsDesc(Departement departement, Pageable pageable);
+	@Override
+	@EntityGraph(attributePaths = "departement")
+	Optional<Ville> findById(Integer id);
 
 	/**
-	 * Finds cities within a specific population range and within a specific
-	 * department.
+	 * Finds a city by its name.
 	 *
-	 * @param minPopulation The minimum population limit.
-	 * @param maxPopulation The maximum population limit.
-	 * @param departement   The department entity.
-	 * @return A list of cities matching the criteria.
+	 * @param nom The name of the city.
+	 * @return An Optional containing the city if found, or an empty Optional if not
+	 *         found.
 	 */
-	List<Ville> findByNbHabitantsBetweenAndDepartement(int minPopulation, int maxPopulation, Departement departement);
+	@EntityGraph(attributePaths = "departement")
+	Optional<Ville> findByNom(String nom);
 
 	/**
 	 * Checks if a city with a specific name exists.
@@ -64,80 +84,212 @@ public interface VilleRepository extends JpaRepository<Ville, Integer> {
 	Boolean existsByNomAndDepartement(String nom, Departement departement);
 
 	/**
-	 * Finds all cities where the name starts with the specified prefix.
+	 * Finds all cities and orders them by population in descending order.
 	 *
-	 * @param prefix The prefix to match city names.
-	 * @return A list of cities with names starting with the given prefix.
+	 * @param pageable the pagination information
+	 * @return a slice of cities ordered by population in descending order, read
+	 *         without counting all cities
 	 */
-	List<Ville> findByNomStartingWith(String prefix);
+	Slice<Ville> findByOrderByNbHabitantsDesc(Pageable pageable);
 
 	/**
-	 * Finds all cities where the population is greater than the specified minimum.
+	 * Finds a slice of all cities. Unlike {@code findAll(Pageable)}, no count
+	 * query is run: one extra row is read to know whether a next slice exists.
+	 *
+	 * @param pageable the pagination information
+	 * @return a slice of cities
+	 */
+	@EntityGraph(attributePaths = "departement")
+	Slice<Ville> findBy(Pageable pageable);
+
+	/**
+	 * Counts all cities. The result is cached and evicted by every city write, so
+	 * that paged listings reporting a total do not count the whole table on each
+	 * request.
+	 *
+	 * @return the number of cities
+	 */
+	@Cacheable(CacheConfig.VILLE_COUNT)
+	@Query("select count(v) from Ville v")
+	long countVilles();
+
+	/**
+	 * Finds the cities following a given ID, by increasing ID. Used for keyset
+	 * pagination: the primary key is seeked directly, so any page costs the same
+	 * as the first one.
+	 *
+	 * @param id    the ID of the last city already returned
+	 * @param limit the maximum number of cities to return
+	 * @return the next cities by increasing ID
+	 */
+	@EntityGraph(attributePaths = "departement")
+	List<Ville> findByIdGreaterThanOrderByIdAsc(long id, Limit limit);
+
+	/**
+	 * Finds the cities following a given position in the listing by decreasing
+	 * population, then increasing ID. Used for keyset pagination: the range on the
+	 * population index starts at the given position, so any page costs the same
+	 * as the first one.
+	 *
+	 * @param nbHabitants the population of the last city already returned
+	 * @param id          the ID of the last city already returned
+	 * @param limit       the maximum number of cities to return
+	 * @return the next cities by decreasing population
+	 */
+	@EntityGraph(attributePaths = "departement")
+	@Query("select v from Ville v where v.nbHabitants <= :nbHabitants "
+			+ "and (v.nbHabitants < :nbHabitants or v.id > :id) order by v.nbHabitants desc, v.id")
+	List<Ville> findNextByPopulation(long nbHabitants, long id, Limit limit);
+
+	/**
+	 * Finds a summary of all cities whose name starts with the specified prefix.
+	 *
+	 * @param prefix   The prefix to match city names.
+	 * @param pageable The requested page.
+	 * @return A slice of city summaries with names starting with the given prefix,
+	 *         ordered by name.
+	 */
+	@Query("select new fr.diginamic.hello.dto.VilleResumeDto(v.id, v.nom, v.nbHabitants, v.codeCommune, d.code) "
+			+ "from Ville v left join v.departement d where v.nom like :#{escape(#prefix)}% escape :#{escapeCharacter()} "
+			+ "order by v.nom, v.id")
+	Slice<VilleResumeDto> findResumesByNomStartingWith(String prefix, Pageable pageable);
+
+	/**
+	 * Finds a summary of all cities where the population is greater than the
+	 * specified minimum.
 	 *
 	 * @param minPopulation The minimum population threshold.
-	 * @return A list of cities with a population greater than the specified
-	 *         minimum.
+	 * @param pageable      The requested page.
+	 * @return A slice of city summaries with a population greater than the
+	 *         specified minimum, ordered by decreasing population.
 	 */
-	List<Ville> findByNbHabitantsGreaterThan(int minPopulation);
+	@Query("select new fr.diginamic.hello.dto.VilleResumeDto(v.id, v.nom, v.nbHabitants, v.codeCommune, d.code) "
+			+ "from Ville v left join v.departement d where v.nbHabitants > :minPopulation "
+			+ "order by v.nbHabitants desc, v.id")
+	Slice<VilleResumeDto> findResumesByNbHabitantsGreaterThan(long minPopulation, Pageable pageable);
 
 	/**
-	 * Finds all cities where the population is between the specified minimum and
-	 * maximum.
+	 * Finds a summary of all cities where the population is between the specified
+	 * minimum and maximum.
 	 *
 	 * @param minPopulation The minimum population threshold.
 	 * @param maxPopulation The maximum population threshold.
-	 * @return A list of cities whose populations fall within the specified range.
+	 * @param pageable      The requested page.
+	 * @return A slice of city summaries whose populations fall within the
+	 *         specified range, ordered by decreasing population.
 	 */
-	List<Ville> findByNbHabitantsBetween(long minPopulation, long maxPopulation);
+	@Query("select new fr.diginamic.hello.dto.VilleResumeDto(v.id, v.nom, v.nbHabitants, v.codeCommune, d.code) "
+			+ "from Ville v left join v.departement d where v.nbHabitants between :minPopulation and :maxPopulation "
+			+ "order by v.nbHabitants desc, v.id")
+	Slice<VilleResumeDto> findResumesByNbHabitantsBetween(long minPopulation, long maxPopulation, Pageable pageable);
 
 	/**
-	 * Finds all cities in a specified department where the population is greater
-	 * than the specified minimum.
+	 * Finds a summary of all cities in a specified department where the
+	 * population is greater than the specified minimum.
 	 *
 	 * @param departement   The department entity.
 	 * @param minPopulation The minimum population threshold.
-	 * @return A list of cities meeting the population criteria within the specified
-	 *         department.
+	 * @param pageable      The requested page.
+	 * @return A slice of city summaries meeting the population criteria within the
+	 *         specified department, ordered by decreasing population.
 	 */
-	List<Ville> findByDepartementAndNbHabitantsGreaterThan(Departement departement, int minPopulation);
+	@Query("select new fr.diginamic.hello.dto.VilleResumeDto(v.id, v.nom, v.nbHabitants, v.codeCommune, d.code) "
+			+ "from Ville v left join v.departement d where d = :departement and v.nbHabitants > :minPopulation "
+			+ "order by v.nbHabitants desc, v.id")
+	Slice<VilleResumeDto> findResumesByDepartementAndNbHabitantsGreaterThan(Departement departement,
+			long minPopulation, Pageable pageable);
 
 	/**
-	 * Finds all cities in a specified department where the population is between
-	 * the specified minimum and maximum.
+	 * Finds a summary of all cities in a specified department where the
+	 * population is between the specified minimum and maximum.
 	 *
 	 * @param departement   The department entity.
 	 * @param minPopulation The minimum population threshold.
 	 * @param maxPopulation The maximum population threshold.
-	 * @return A list of cities whose populations fall within the specified range
-	 *         within the given department.
+	 * @param pageable      The requested page.
+	 * @return A slice of city summaries whose populations fall within the
+	 *         specified range within the given department, ordered by decreasing
+	 *         population.
 	 */
-	List<Ville> findByDepartementAndNbHabitantsBetween(Departement departement, int minPopulation, int maxPopulation);
+	@Query("select new fr.diginamic.hello.dto.VilleResumeDto(v.id, v.nom, v.nbHabitants, v.codeCommune, d.code) "
+			+ "from Ville v left join v.departement d "
+			+ "where d = :departement and v.nbHabitants between :minPopulation and :maxPopulation "
+			+ "order by v.nbHabitants desc, v.id")
+	Slice<VilleResumeDto> findResumesByDepartementAndNbHabitantsBetween(Departement departement, long minPopulation,
+			long maxPopulation, Pageable pageable);
 
 	/**
-	 * Finds the top 'n' most populated cities in a specified department.
+	 * Finds the cities of some departments having some commune codes, along with
+	 * their department. Every combination of a department and a commune code
+	 * matches, so the caller keeps the pairs it asked for.
 	 *
-	 * @param departement The department entity.
-	 * @param pageable    Pagination information to specify the number of cities to
-	 *                    return.
-	 * @return A paginated list of the most populated cities in the specified
-	 *         department.
+	 * @param departements The departments.
+	 * @param codesCommune The commune codes.
+	 * @return The matching cities, in no particular order.
 	 */
-	List<Ville> findTopNVillesByDepartementOrderByNbHabitantsDesc(Departement departement, Pageable pageable);
+	@EntityGraph(attributePaths = "departement")
+	List<Ville> findByDepartementInAndCodeCommuneIn(Collection<Departement> departements,
+			Collection<String> codesCommune);
 
 	/**
-	 * Finds all cities and orders them by population in descending order.
+	 * Finds a summary of the cities having some IDs, in no particular order.
 	 *
-	 * @param pageable the pagination information
-	 * @return a page of cities ordered by population in descending order
+	 * @param ids The IDs of the cities.
+	 * @return The summaries of the existing cities among them.
 	 */
-	Page<Ville> findByOrderByNbHabitantsDesc(Pageable pageable);
+	@Query("select new fr.diginamic.hello.dto.VilleResumeDto(v.id, v.nom, v.nbHabitants, v.codeCommune, d.code) "
+			+ "from Ville v left join v.departement d where v.id in :ids")
+	List<VilleResumeDto> findResumesByIdIn(Collection<Long> ids);
 
 	/**
-	 * Finds all cities in a given department.
+	 * Finds a summary of the cities of some departments having some commune
+	 * codes, in no particular order. Every combination of a department and a
+	 * commune code matches, so the caller keeps the pairs it asked for.
 	 *
-	 * @param departement the department to search for cities
-	 * @return a list of cities in the specified department
+	 * @param codesDepartement The codes of the departments.
+	 * @param codesCommune     The commune codes.
+	 * @return The summaries of the matching cities.
 	 */
-	List<Ville> findByDepartement(Departement departement);
+	@Query("select new fr.diginamic.hello.dto.VilleResumeDto(v.id, v.nom, v.nbHabitants, v.codeCommune, d.code) "
+			+ "from Ville v join v.departement d where d.code in :codesDepartement and v.codeCommune in :codesCommune")
+	List<VilleResumeDto> findResumesByDepartementCodeInAndCodeCommuneIn(Collection<String> codesDepartement,
+			Collection<String> codesCommune);
+
 
+	/**
+	 * Loads a snapshot of every city, to build the in-memory indexes. Only the
+	 * indexed columns are read and no entity is managed.
+	 *
+	 * @return a snapshot of every city
+	 */
+	@Query("select new fr.diginamic.hello.index.VilleSnapshot(v.id, v.nom, v.nbHabitants, v.codeCommune, "
+			+ "v.codeArrondissement, v.codeCanton, d.code, r.code) "
+			+ "from Ville v left join v.departement d left join d.region r")
+	List<VilleSnapshot> findAllSnapshots();
+
+	/**
+	 * Streams every city, with its department, ordered by ID. The rows are read
+	 * from an open cursor {@link #STREAM_FETCH_SIZE} at a time, as read-only
+	 * entities; the caller must close the stream within a transaction.
+	 *
+	 * @return a stream of all cities
+	 */
+	@QueryHints({ @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+			@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true") })
+	@Query("select v from Ville v left join fetch v.departement order by v.id")
+	Stream<Ville> streamAll();
+
+	/**
+	 * Streams the cities of some departments, with their department, ordered by
+	 * department code, then name. The rows are read from an open cursor
+	 * {@link #STREAM_FETCH_SIZE} at a time, as read-only entities; the caller
+	 * must close the stream within a transaction.
+	 *
+	 * @param codes the codes of the departments
+	 * @return a stream of the cities of these departments
+	 */
+	@QueryHints({ @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+			@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true") })
+	@Query("select v from Ville v join fetch v.departement d where d.code in :codes order by d.code, v.nom, v.id")
+	Stream<Ville> streamByDepartementCodes(Collection<String> codes);
 }
@@ -0,0 +1,28 @@
+package fr.diginamic.hello.repositories;
+
+import java.util.List;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import fr.diginamic.hello.dto.VilleResumeDto;
+import fr.diginamic.hello.entities.Ville;
+
+/**
+ * Criteria queries returning city summaries, added to {@link VilleRepository}.
+ */
+public interface VilleResumeQueries {
+
+	/**
+	 * Finds a summary of the cities matching a filter, in a single query. The
+	 * department is joined once, for both the filters and the selected code; no
+	 * entity is loaded.
+	 *
+	 * @param specification the filter, built from {@link VilleSpecifications}
+	 * @param sort          the order of the cities
+	 * @param limit         the maximum number of cities to return
+	 * @return the matching city summaries
+	 */
+	List<VilleResumeDto> findResumes(Specification<Ville> specification, Sort sort, Limit limit);
+}
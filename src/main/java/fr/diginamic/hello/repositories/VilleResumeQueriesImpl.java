@@ -0,0 +1,53 @@
+package fr.diginamic.hello.repositories;
+
+import java.util.List;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import fr.diginamic.hello.dto.VilleResumeDto;
+import fr.diginamic.hello.entities.Departement;
+import fr.diginamic.hello.entities.Ville;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+/**
+ * Implementation of {@link VilleResumeQueries}, picked up by Spring Data as a
+ * fragment of {@link VilleRepository}.
+ */
+class VilleResumeQueriesImpl implements VilleResumeQueries {
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Override
+	public List<VilleResumeDto> findResumes(Specification<Ville> specification, Sort sort, Limit limit) {
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<VilleResumeDto> query = cb.createQuery(VilleResumeDto.class);
+		Root<Ville> root = query.from(Ville.class);
+		// Created first, so that the filters on the department reuse it
+		Join<Ville, Departement> departement = VilleSpecifications.departement(root);
+		query.select(cb.construct(VilleResumeDto.class, root.get("id"), root.get("nom"), root.get("nbHabitants"),
+				root.get("codeCommune"), departement.get("code")));
+
+		Predicate predicate = specification.toPredicate(root, query, cb);
+		if (predicate != null) {
+			query.where(predicate);
+		}
+		query.orderBy(QueryUtils.toOrders(sort, root, cb));
+
+		TypedQuery<VilleResumeDto> typedQuery = entityManager.createQuery(query);
+		if (limit.isLimited()) {
+			typedQuery.setMaxResults(limit.max());
+		}
+		return typedQuery.getResultList();
+	}
+}
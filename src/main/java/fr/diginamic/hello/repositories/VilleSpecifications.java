@@ -0,0 +1,117 @@
+package fr.diginamic.hello.repositories;
+
+import java.util.Collection;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import fr.diginamic.hello.entities.Departement;
+import fr.diginamic.hello.entities.Ville;
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+
+/**
+ * Filters on the cities, to be combined into a single query run by
+ * {@link VilleResumeQueries#findResumes}.
+ *
+ * The department filters compare the department code in the joined
+ * department row, rather than a department loaded beforehand, so no filter
+ * costs an extra round trip. Each filter matches an index, except those on the
+ * arrondissement and canton, which only narrow down the rows of the others: the
+ * department code and region code are unique, and the cities are indexed by
+ * department, then population, by population and by name.
+ */
+public final class VilleSpecifications {
+
+	private static final char LIKE_ESCAPE = '\\';
+
+	private VilleSpecifications() {
+	}
+
+	/**
+	 * Keeps the cities of some departments.
+	 *
+	 * @param codes the codes of the departments
+	 * @return the filter
+	 */
+	public static Specification<Ville> inDepartements(Collection<String> codes) {
+		return (root, query, cb) -> departement(root).get("code").in(codes);
+	}
+
+	/**
+	 * Keeps the cities of a region.
+	 *
+	 * @param code the code of the region
+	 * @return the filter
+	 */
+	public static Specification<Ville> inRegion(String code) {
+		return (root, query, cb) -> cb.equal(departement(root).join("region").get("code"), code);
+	}
+
+	/**
+	 * Keeps the cities of some arrondissements.
+	 *
+	 * @param codes the codes of the arrondissements
+	 * @return the filter
+	 */
+	public static Specification<Ville> inArrondissements(Collection<String> codes) {
+		return (root, query, cb) -> root.get("codeArrondissement").in(codes);
+	}
+
+	/**
+	 * Keeps the cities of some cantons.
+	 *
+	 * @param codes the codes of the cantons
+	 * @return the filter
+	 */
+	public static Specification<Ville> inCantons(Collection<String> codes) {
+		return (root, query, cb) -> root.get("codeCanton").in(codes);
+	}
+
+	/**
+	 * Keeps the cities with at least a given number of inhabitants.
+	 *
+	 * @param minPopulation the minimum number of inhabitants, inclusive
+	 * @return the filter
+	 */
+	public static Specification<Ville> populationAtLeast(long minPopulation) {
+		return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("nbHabitants"), minPopulation);
+	}
+
+	/**
+	 * Keeps the cities with at most a given number of inhabitants.
+	 *
+	 * @param maxPopulation the maximum number of inhabitants, inclusive
+	 * @return the filter
+	 */
+	public static Specification<Ville> populationAtMost(long maxPopulation) {
+		return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("nbHabitants"), maxPopulation);
+	}
+
+	/**
+	 * Keeps the cities whose name starts with a prefix, case-sensitively so that
+	 * the name index can be used.
+	 *
+	 * @param prefix the start of the name
+	 * @return the filter
+	 */
+	public static Specification<Ville> nomStartingWith(String prefix) {
+		String pattern = prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+		return (root, query, cb) -> cb.like(root.get("nom"), pattern, LIKE_ESCAPE);
+	}
+
+	/**
+	 * Gets the join from a city to its department, reusing the one already in
+	 * the query if any, so that several filters and the selected columns share a
+	 * single join.
+	 *
+	 * @param root the city root of the query
+	 * @return the join to the department
+	 */
+	@SuppressWarnings("unchecked")
+	static Join<Ville, Departement> departement(From<?, Ville> root) {
+		return root.getJoins().stream().filter(join -> join.getAttribute().getName().equals("departement"))
+				.map(join -> (Join<Ville, Departement>) join).findFirst()
+				.orElseGet(() -> root.join("departement", JoinType.LEFT));
+	}
+}
@@ -0,0 +1,166 @@
+package fr.diginamic.hello.services;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import fr.diginamic.hello.dto.BulkRowResultDto;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+/**
+ * Reads bulk imports sent as NDJSON, one JSON object per line, while they are
+ * received. Each line is parsed and validated on its own, so that a bad line
+ * is reported without stopping the import; the valid lines are handed over in
+ * chunks to a service persisting each chunk in one transaction, with a few
+ * grouped queries rather than a few per line.
+ *
+ * The outcome of each line is written back as NDJSON, in the order of the
+ * lines, once its chunk has been persisted. Neither the request nor the
+ * response is ever held in memory beyond one chunk.
+ */
+@Service
+public class BulkImportService {
+
+	/** Media type of the bulk import bodies and of their outcomes. */
+	public static final String NDJSON = "application/x-ndjson";
+
+	private static final Logger LOG = LoggerFactory.getLogger(BulkImportService.class);
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private Validator validator;
+
+	/** Number of valid lines persisted in each transaction. */
+	@Value("${bulk.chunk-size:500}")
+	private int chunkSize;
+
+	/**
+	 * Imports the rows of an NDJSON body and writes the outcome of each line.
+	 * Blank lines are ignored.
+	 *
+	 * @param <T>     the type of the rows
+	 * @param input   the NDJSON body, read up to its end and left open
+	 * @param output  the stream to write the outcome of each line to, as NDJSON;
+	 *                it is flushed after each chunk and left open
+	 * @param rowType the type of the rows
+	 * @param writer  persists a chunk of valid lines in one transaction and
+	 *                returns the outcome of each of them
+	 * @return the number of lines imported or rejected
+	 * @throws IOException if an I/O error occurs reading the body or writing the
+	 *                     outcomes
+	 */
+	public <T> long importLines(InputStream input, OutputStream output, Class<T> rowType,
+			Function<List<BulkLine<T>>, List<BulkRowResultDto>> writer) throws IOException {
+		ObjectReader rowReader = objectMapper.readerFor(rowType);
+		ObjectWriter resultWriter = objectMapper.writerFor(BulkRowResultDto.class);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+		List<BulkLine<T>> chunk = new ArrayList<>(chunkSize);
+		List<BulkRowResultDto> rejected = new ArrayList<>();
+		long count = 0;
+		long number = 0;
+		String line;
+		while ((line = reader.readLine()) != null) {
+			number++;
+			if (line.isBlank()) {
+				continue;
+			}
+			String error = null;
+			T row = null;
+			try {
+				row = rowReader.readValue(line);
+				error = row == null ? "La ligne ne contient pas d'objet JSON." : violations(row);
+			} catch (JsonProcessingException e) {
+				error = "JSON invalide : " + e.getOriginalMessage();
+			}
+			if (error != null) {
+				rejected.add(BulkRowResultDto.rejected(number, error));
+			} else {
+				chunk.add(new BulkLine<>(number, row));
+			}
+			// Rejected lines count too, so that a body of mostly invalid lines is
+			// still answered, and held, one chunk at a time
+			if (chunk.size() + rejected.size() >= chunkSize) {
+				count += flush(chunk, rejected, writer, resultWriter, output);
+			}
+		}
+		return count + flush(chunk, rejected, writer, resultWriter, output);
+	}
+
+	/**
+	 * Persists a chunk of valid lines, then writes the outcome of every line read
+	 * since the previous chunk. Should the chunk fail as a whole, its
+	 * transaction is rolled back and each of its lines is reported as rejected.
+	 *
+	 * @param <T>          the type of the rows
+	 * @param chunk        the valid lines, emptied
+	 * @param rejected     the outcome of the invalid lines, emptied
+	 * @param writer       persists the chunk
+	 * @param resultWriter writes an outcome as JSON
+	 * @param output       the stream to write the outcomes to
+	 * @return the number of outcomes written
+	 * @throws IOException if an I/O error occurs writing the outcomes
+	 */
+	private <T> int flush(List<BulkLine<T>> chunk, List<BulkRowResultDto> rejected,
+			Function<List<BulkLine<T>>, List<BulkRowResultDto>> writer, ObjectWriter resultWriter,
+			OutputStream output) throws IOException {
+		List<BulkRowResultDto> results = new ArrayList<>(rejected);
+		if (!chunk.isEmpty()) {
+			try {
+				results.addAll(writer.apply(List.copyOf(chunk)));
+			} catch (RuntimeException e) {
+				LOG.warn("Lot de {} lignes rejeté à partir de la ligne {} : {}", chunk.size(), chunk.get(0).number(),
+						e.getMessage());
+				chunk.forEach(bulkLine -> results
+						.add(BulkRowResultDto.rejected(bulkLine.number(), "Lot rejeté : " + e.getMessage())));
+			}
+		}
+		results.sort(Comparator.comparingLong(BulkRowResultDto::line));
+		for (BulkRowResultDto result : results) {
+			output.write(resultWriter.writeValueAsBytes(result));
+			output.write('\n');
+		}
+		output.flush();
+		chunk.clear();
+		rejected.clear();
+		return results.size();
+	}
+
+	/**
+	 * Validates a row against its constraints.
+	 *
+	 * @param <T> the type of the row
+	 * @param row the row
+	 * @return the messages of the violated constraints, or null if the row is
+	 *         valid
+	 */
+	private <T> String violations(T row) {
+		Set<ConstraintViolation<T>> violations = validator.validate(row);
+		if (violations.isEmpty()) {
+			return null;
+		}
+		return violations.stream().map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining(" ; "));
+	}
+}
@@ -0,0 +1,12 @@
+package fr.diginamic.hello.services;
+
+/**
+ * A valid line of a bulk import, handed over to the service persisting its
+ * chunk.
+ *
+ * @param <T>    the type of the rows
+ * @param number the number of the line in the request body, from 1
+ * @param row    the row read from the line
+ */
+public record BulkLine<T>(long number, T row) {
+}
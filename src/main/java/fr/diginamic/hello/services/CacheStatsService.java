@@ -0,0 +1,45 @@
+package fr.diginamic.hello.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import fr.diginamic.hello.config.CacheConfig;
+import fr.diginamic.hello.dto.CacheStatsDto;
+
+/**
+ * Service exposing the statistics of the city search result caches.
+ */
+@Service
+public class CacheStatsService {
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	/**
+	 * Retrieves the statistics of every city search cache, one entry per search
+	 * endpoint.
+	 *
+	 * @return the statistics of each cache
+	 */
+	public List<CacheStatsDto> getVilleSearchCacheStats() {
+		List<CacheStatsDto> stats = new ArrayList<>();
+		for (String name : CacheConfig.VILLE_SEARCH_CACHES) {
+			Cache cache = cacheManager.getCache(name);
+			if (cache != null
+					&& cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> caffeineCache) {
+				CacheStats cacheStats = caffeineCache.stats();
+				long weight = caffeineCache.policy().eviction().map(e -> e.weightedSize().orElse(0L)).orElse(0L);
+				stats.add(new CacheStatsDto(name, cacheStats.hitCount(), cacheStats.missCount(), cacheStats.hitRate(),
+						cacheStats.evictionCount(), caffeineCache.estimatedSize(), weight));
+			}
+		}
+		return stats;
+	}
+}
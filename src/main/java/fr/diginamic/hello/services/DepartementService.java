@@ -1,15 +1,27 @@
 package fr.diginamic.hello.services;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import fr.diginamic.hello.config.EvictVilleSearchCaches;
+import fr.diginamic.hello.dto.BulkRowResultDto;
+import fr.diginamic.hello.dto.DepartementBulkRow;
 import fr.diginamic.hello.entities.Departement;
 import fr.diginamic.hello.entities.Region;
+import fr.diginamic.hello.events.ReferenceDataChangedEvent;
 import fr.diginamic.hello.exceptions.DepartementNotFoundException;
 import fr.diginamic.hello.repositories.DepartementRepository;
+import fr.diginamic.hello.repositories.RegionRepository;
 import jakarta.persistence.EntityNotFoundException;
 
 /**
@@ -26,6 +38,12 @@ public class DepartementService {
 	@Autowired
 	private RegionService regionService;
 
+	@Autowired
+	private RegionRepository regionRepository;
+
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
+
 	/**
 	 * Retrieves all departments.
 	 *
@@ -84,7 +102,10 @@ public class DepartementService {
 			Region existingRegion = regionService.findById(region.getId());
 			departement.setRegion(existingRegion);
 		}
-		return departementRepository.save(departement);
+		Departement savedDepartement = departementRepository.save(departement);
+		eventPublisher.publishEvent(
+				new ReferenceDataChangedEvent("Création du département " + departement.getCode()));
+		return savedDepartement;
 	}
 
 	/**
@@ -95,13 +116,16 @@ public class DepartementService {
 	 * @return The updated department.
 	 * @throws EntityNotFoundException if no department with the given ID is found.
 	 */
+	@EvictVilleSearchCaches
 	@Transactional
 	public Departement updateDepartement(int id, Departement dptm) {
-		return departementRepository.findById(id).map(d -> {
+		Departement updatedDepartement = departementRepository.findById(id).map(d -> {
 			d.setCode(dptm.getCode());
 			d.setRegion(dptm.getRegion());
 			return departementRepository.save(d);
 		}).orElseThrow(() -> new EntityNotFoundException("Departement non trouvé avec ID : " + id));
+		eventPublisher.publishEvent(new ReferenceDataChangedEvent("Modification du département " + id));
+		return updatedDepartement;
 
 	}
 
@@ -111,12 +135,64 @@ public class DepartementService {
 	 * @param id The ID of the department to delete.
 	 * @throws EntityNotFoundException if no department with the given ID is found.
 	 */
+	@EvictVilleSearchCaches
 	@Transactional
 	public void deleteDepartement(int id) {
 		if (!departementRepository.existsById(id)) {
 			throw new EntityNotFoundException("Departement non trouvé avec ID : " + id);
 		}
 		departementRepository.deleteById(id);
+		eventPublisher.publishEvent(new ReferenceDataChangedEvent("Suppression du département " + id));
+	}
+
+	/**
+	 * Creates or updates a chunk of departments of a bulk import, in one
+	 * transaction. A department is identified by its code; the existing
+	 * departments and the regions of the whole chunk are read with one query
+	 * each, and a single change event is published for the chunk.
+	 *
+	 * @param lines The valid lines of the chunk, in order.
+	 * @return The outcome of each line, in order; a line whose region does not
+	 *         exist is rejected.
+	 */
+	@EvictVilleSearchCaches
+	@Transactional
+	public List<BulkRowResultDto> upsertDepartements(List<BulkLine<DepartementBulkRow>> lines) {
+		Map<String, Departement> departements = new HashMap<>();
+		departementRepository.findByCodeIn(lines.stream().map(line -> line.row().code()).collect(Collectors.toSet()))
+				.forEach(departement -> departements.put(departement.getCode(), departement));
+		Map<String, Region> regions = new HashMap<>();
+		Set<String> codesRegion = lines.stream().map(line -> line.row().codeRegion()).filter(Objects::nonNull)
+				.collect(Collectors.toSet());
+		if (!codesRegion.isEmpty()) {
+			regionRepository.findByCodeIn(codesRegion).forEach(region -> regions.put(region.getCode(), region));
+		}
+
+		List<BulkRowResultDto> results = new ArrayList<>(lines.size());
+		for (BulkLine<DepartementBulkRow> line : lines) {
+			DepartementBulkRow row = line.row();
+			Region region = row.codeRegion() != null ? regions.get(row.codeRegion()) : null;
+			if (row.codeRegion() != null && region == null) {
+				results.add(BulkRowResultDto.rejected(line.number(),
+						"La région avec le code " + row.codeRegion() + " n'existe pas."));
+				continue;
+			}
+			Departement departement = departements.get(row.code());
+			if (departement == null) {
+				departement = departementRepository.save(new Departement(row.code(), region));
+				departements.put(row.code(), departement);
+				results.add(BulkRowResultDto.created(line.number(), departement.getId()));
+			} else {
+				if (region != null) {
+					departement.setRegion(region);
+				}
+				results.add(BulkRowResultDto.updated(line.number(), departement.getId()));
+			}
+		}
+		if (results.stream().anyMatch(result -> result.status() != BulkRowResultDto.Status.REJECTED)) {
+			eventPublisher.publishEvent(new ReferenceDataChangedEvent("Import de " + lines.size() + " départements"));
+		}
+		return results;
 	}
 
 	/**
@@ -0,0 +1,143 @@
+package fr.diginamic.hello.services;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.itextpdf.text.DocumentException;
+
+import fr.diginamic.hello.dto.VilleDto;
+
+/**
+ * Service generating the top N cities exports and keeping the generated
+ * documents in a memory-bounded cache.
+ * 
+ * Documents are cached by format, number of cities and version of the city
+ * dataset, so that a document is only generated again once the cities have
+ * changed. The entity tag of a document is derived from the same key, which
+ * lets clients revalidate without the document being generated.
+ */
+@Service
+public class ExportCacheService {
+
+	/**
+	 * Formats in which the top N cities can be exported.
+	 */
+	public enum ExportFormat {
+		CSV, PDF
+	}
+
+	/**
+	 * A generated export.
+	 *
+	 * @param content the bytes of the document
+	 * @param etag    the entity tag of the document
+	 */
+	public record CachedExport(byte[] content, String etag) {
+	}
+
+	private record ExportKey(ExportFormat format, int nbVilles, long datasetVersion) {
+	}
+
+	@Autowired
+	private VilleService villeService;
+
+	@Autowired
+	private PdfGenerationService pdfGenerationService;
+
+	@Autowired
+	private CSVGenerationService csvGenerationService;
+
+	@Autowired
+	private VilleDatasetVersion datasetVersion;
+
+	@Autowired
+	private SingleFlight singleFlight;
+
+	private final Cache<ExportKey, CachedExport> exports;
+
+	/**
+	 * Constructs the service.
+	 *
+	 * @param maxBytes the maximum total size, in bytes, of the cached documents
+	 */
+	public ExportCacheService(@Value("${villes.export-cache.max-bytes:67108864}") long maxBytes) {
+		this.exports = Caffeine.newBuilder().maximumWeight(maxBytes)
+				.weigher((ExportKey key, CachedExport export) -> export.content().length).build();
+	}
+
+	/**
+	 * Computes the entity tag that an export of the current city dataset has,
+	 * without generating it.
+	 *
+	 * @param format   the format of the export
+	 * @param nbVilles the number of cities in the export
+	 * @return the entity tag
+	 */
+	public String getCurrentEtag(ExportFormat format, int nbVilles) {
+		return etag(new ExportKey(format, nbVilles, datasetVersion.current()));
+	}
+
+	/**
+	 * Retrieves the export of the top N cities of the current city dataset,
+	 * generating it if it is not cached yet. Concurrent requests for the same
+	 * missing export wait for a single generation, and an export is never
+	 * generated again once cached.
+	 *
+	 * @param format   the format of the export
+	 * @param nbVilles the number of cities in the export
+	 * @return the generated export
+	 */
+	public CachedExport getTopVillesExport(ExportFormat format, int nbVilles) {
+		ExportKey key = new ExportKey(format, nbVilles, datasetVersion.current());
+		CachedExport export = exports.getIfPresent(key);
+		if (export != null) {
+			return export;
+		}
+		// A caller may reach the flight just after another one has cached the
+		// export and left it, so the cache is checked again within the flight.
+		// The generation itself runs outside any cache computation, so that it
+		// does not block the other keys
+		return singleFlight.execute("export", key, () -> {
+			CachedExport cached = exports.getIfPresent(key);
+			if (cached != null) {
+				return cached;
+			}
+			CachedExport generated = generate(key);
+			exports.put(key, generated);
+			return generated;
+		});
+	}
+
+	private CachedExport generate(ExportKey key) {
+		List<VilleDto> cities = villeService
+				.getTopNVillesDtos(PageRequest.of(0, key.nbVilles(), Sort.by(Sort.Direction.DESC, "nbHabitants")));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			if (key.format() == ExportFormat.PDF) {
+				pdfGenerationService.generateTopCitiesReport(cities, out, key.nbVilles());
+			} else {
+				csvGenerationService.generateCitiesCsvReport(cities, out);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (DocumentException e) {
+			throw new IllegalStateException("Erreur lors de la génération du PDF : " + e.getMessage(), e);
+		}
+		return new CachedExport(out.toByteArray(), etag(key));
+	}
+
+	private String etag(ExportKey key) {
+		return "W/\"" + key.format().name().toLowerCase() + "-" + key.nbVilles() + "-"
+				+ datasetVersion.tag(key.datasetVersion()) + "\"";
+	}
+}
@@ -5,17 +5,22 @@ import com.itextpdf.text.pdf.*;
 
 import fr.diginamic.hello.dto.VilleDto;
 import fr.diginamic.hello.entities.Ville;
-import jakarta.servlet.ServletOutputStream;
 
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Iterator;
 import java.util.List;
 
 @Service
 public class PdfGenerationService {
 
+	/**
+	 * Number of cities after which the rows of a city list are written out.
+	 */
+	private static final int ROWS_PER_FLUSH = 500;
+
 	public void generateTopCitiesReport(List<VilleDto> cities, OutputStream outputStream, int nbVilles)
 			throws DocumentException, IOException {
 		Document document = new Document(PageSize.A4);
@@ -69,8 +74,21 @@ public class PdfGenerationService {
 		document.close();
 	}
 
-	public void generatePDFReport(String titlePDF, String[] headers, List<Ville> cities,
-			ServletOutputStream outputStream) throws DocumentException, IOException {
+	/**
+	 * Writes a PDF report listing the name and population of some cities. The
+	 * cities are consumed one at a time and the rows of the table are written out
+	 * every {@link #ROWS_PER_FLUSH} cities, so the document held in memory does
+	 * not grow with the number of cities.
+	 *
+	 * @param titlePDF     the title of the report
+	 * @param headers      the headers of the two columns
+	 * @param cities       the cities to list, in order
+	 * @param outputStream the output stream to write the PDF to
+	 * @throws DocumentException if the document cannot be built
+	 * @throws IOException       if the font cannot be loaded
+	 */
+	public void generatePDFReport(String titlePDF, String[] headers, Iterator<Ville> cities,
+			OutputStream outputStream) throws DocumentException, IOException {
 		Document document = new Document(PageSize.A4);
 		PdfWriter.getInstance(document, outputStream);
 		document.open();
@@ -88,11 +106,13 @@ public class PdfGenerationService {
 		// Space
 		document.add(new Paragraph(" "));
 
-		// Table with 2 columns
+		// Table with 2 columns, added to the document in several parts
 		PdfPTable table = new PdfPTable(2);
 		table.setWidthPercentage(100);
 		table.setSpacingBefore(10f);
 		table.setSpacingAfter(10f);
+		table.setHeaderRows(1);
+		table.setComplete(false);
 
 		// Set Column widths
 		float[] columnWidths = {2f, 2f};
@@ -107,13 +127,20 @@ public class PdfGenerationService {
 			table.addCell(headerCell);
 		}
 
-		for (Ville city : cities) {
+		int rows = 0;
+		while (cities.hasNext()) {
+			Ville city = cities.next();
 			table.addCell(new Phrase(city.getNom(), cellFont));
 			PdfPCell populationCell = new PdfPCell(new Phrase(String.valueOf(city.getNbHabitants()), cellFont));
 			populationCell.setHorizontalAlignment(Element.ALIGN_CENTER);
 			table.addCell(populationCell);
+			// Adding an incomplete table writes out and drops its completed rows
+			if (++rows % ROWS_PER_FLUSH == 0) {
+				document.add(table);
+			}
 		}
+		table.setComplete(true);
 		document.add(table);
-		document.close();		
+		document.close();
 	}
 }
@@ -0,0 +1,295 @@
+package fr.diginamic.hello.services;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import fr.diginamic.hello.dto.PopulationQuantilesDto;
+import fr.diginamic.hello.dto.PopulationStatsDto;
+import fr.diginamic.hello.entities.Ville;
+import fr.diginamic.hello.events.DataImportedEvent;
+import fr.diginamic.hello.events.ReferenceDataChangedEvent;
+import fr.diginamic.hello.exceptions.DepartementNotFoundException;
+import fr.diginamic.hello.exceptions.RegionNotFoundException;
+import fr.diginamic.hello.index.PopulationDistribution;
+import fr.diginamic.hello.index.PopulationQuantilesIndex;
+import fr.diginamic.hello.repositories.DepartementRepository;
+import fr.diginamic.hello.repositories.DepartementStatsRepository;
+import fr.diginamic.hello.repositories.RegionRepository;
+import fr.diginamic.hello.repositories.RegionStatsRepository;
+
+/**
+ * Maintains the population rollups of the departments and regions, and serves
+ * them.
+ *
+ * Every city change adds its difference to the rollups of its department and
+ * region, within the transaction of the change, so that the figures are never
+ * seen out of step with the cities. After an import, which may bypass this
+ * service, the rollups are rebuilt set-based instead; so are the region
+ * rollups after a department or region change, which may move cities from one
+ * region to another.
+ */
+@Service
+public class PopulationStatsService {
+
+	@Autowired
+	private DepartementStatsRepository departementStatsRepository;
+
+	@Autowired
+	private RegionStatsRepository regionStatsRepository;
+
+	@Autowired
+	private PopulationQuantilesIndex populationQuantilesIndex;
+
+	@Autowired
+	private DepartementRepository departementRepository;
+
+	@Autowired
+	private RegionRepository regionRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	/**
+	 * Retrieves the population figures of a department.
+	 *
+	 * @param code the code of the department
+	 * @return the figures
+	 * @throws DepartementNotFoundException if the department does not exist
+	 */
+	@Transactional(readOnly = true)
+	public PopulationStatsDto getDepartementStats(String code) {
+		return departementStatsRepository.findStatsByCode(code).orElseThrow(
+				() -> new DepartementNotFoundException("Le département avec le code " + code + " n'existe pas."));
+	}
+
+	/**
+	 * Retrieves the population figures of a region.
+	 *
+	 * @param code the code of the region
+	 * @return the figures
+	 * @throws RegionNotFoundException if the region does not exist
+	 */
+	@Transactional(readOnly = true)
+	public PopulationStatsDto getRegionStats(String code) {
+		return regionStatsRepository.findStatsByCode(code)
+				.orElseThrow(() -> new RegionNotFoundException("La région avec le code " + code + " n'existe pas."));
+	}
+
+	/**
+	 * Estimates the population quantiles of the cities of the whole country.
+	 *
+	 * @return the quantiles
+	 */
+	public PopulationQuantilesDto getNationalQuantiles() {
+		return toQuantiles(null, populationQuantilesIndex.getNation());
+	}
+
+	/**
+	 * Estimates the population quantiles of the cities of a department.
+	 *
+	 * @param code the code of the department
+	 * @return the quantiles
+	 * @throws DepartementNotFoundException if the department does not exist
+	 */
+	@Transactional(readOnly = true)
+	public PopulationQuantilesDto getDepartementQuantiles(String code) {
+		if (!departementRepository.existsByCode(code)) {
+			throw new DepartementNotFoundException("Le département avec le code " + code + " n'existe pas.");
+		}
+		return toQuantiles(code, populationQuantilesIndex.getDepartements(List.of(code)));
+	}
+
+	/**
+	 * Estimates the population quantiles of the cities of a region, merging the
+	 * sketches of its departments.
+	 *
+	 * @param code the code of the region
+	 * @return the quantiles
+	 * @throws RegionNotFoundException if the region does not exist
+	 */
+	@Transactional(readOnly = true)
+	public PopulationQuantilesDto getRegionQuantiles(String code) {
+		List<String> codesDepartement = departementRepository.findCodesByRegionCode(code);
+		if (codesDepartement.isEmpty() && !regionRepository.existsByCode(code)) {
+			throw new RegionNotFoundException("La région avec le code " + code + " n'existe pas.");
+		}
+		return toQuantiles(code, populationQuantilesIndex.getDepartements(codesDepartement));
+	}
+
+	/**
+	 * Adds a new city to the rollups of its department and region.
+	 *
+	 * @param ville the city, already saved
+	 */
+	@Transactional
+	public void villeAdded(Ville ville) {
+		add(ville, 1, ville.getNbHabitants(), ville.getPopulationMunicipale(), ville.getPopulationCompteeAPart(),
+				ville.getPopulationTotale());
+	}
+
+	/**
+	 * Removes a deleted city from the rollups of its department and region.
+	 *
+	 * @param ville the city, already deleted
+	 */
+	@Transactional
+	public void villeRemoved(Ville ville) {
+		add(ville, -1, -ville.getNbHabitants(), -ville.getPopulationMunicipale(),
+				-ville.getPopulationCompteeAPart(), -ville.getPopulationTotale());
+	}
+
+	/**
+	 * Reflects a change of the number of inhabitants of a city in the rollups of
+	 * its department and region.
+	 *
+	 * @param ville               the city, already modified
+	 * @param previousNbHabitants its number of inhabitants before the change
+	 */
+	@Transactional
+	public void nbHabitantsChanged(Ville ville, long previousNbHabitants) {
+		add(ville, 0, ville.getNbHabitants() - previousNbHabitants, 0, 0, 0);
+	}
+
+	/**
+	 * Reflects the changes of several cities of a department in the rollups of
+	 * the department and its region at once, as a bulk import does for each
+	 * department of a chunk.
+	 *
+	 * @param departementId          the ID of the department of the cities,
+	 *                               already saved
+	 * @param nbCommunes             the number of cities added
+	 * @param nbHabitants            the number of inhabitants added, negative if
+	 *                               removed
+	 * @param populationMunicipale   the municipal population added
+	 * @param populationCompteeAPart the population counted apart added
+	 * @param populationTotale       the total population added
+	 */
+	@Transactional
+	public void villesChanged(int departementId, long nbCommunes, long nbHabitants, long populationMunicipale,
+			long populationCompteeAPart, long populationTotale) {
+		add(departementId, nbCommunes, nbHabitants, populationMunicipale, populationCompteeAPart, populationTotale);
+	}
+
+	/**
+	 * Rebuilds every rollup from the cities, in a transaction of its own.
+	 */
+	public void refreshAll() {
+		inNewTransaction().executeWithoutResult(status -> {
+			regionStatsRepository.deleteAllInBatch();
+			departementStatsRepository.deleteAllInBatch();
+			departementStatsRepository.insertAllFromVilles();
+			regionStatsRepository.insertAllFromDepartements();
+		});
+	}
+
+	/**
+	 * Rebuilds the region rollups from the department rollups, in a transaction
+	 * of its own. The department rollups do not depend on the reference data:
+	 * those of a deleted department go with it.
+	 */
+	public void refreshRegions() {
+		inNewTransaction().executeWithoutResult(status -> {
+			regionStatsRepository.deleteAllInBatch();
+			regionStatsRepository.insertAllFromDepartements();
+		});
+	}
+
+	/**
+	 * Rebuilds every rollup after an import.
+	 *
+	 * @param event the import event
+	 */
+	@EventListener
+	public void onDataImported(DataImportedEvent event) {
+		refreshAll();
+	}
+
+	/**
+	 * Rebuilds the region rollups once a department or region change has been
+	 * committed, since a department may have moved to another region.
+	 *
+	 * @param event the change event
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onReferenceDataChanged(ReferenceDataChangedEvent event) {
+		refreshRegions();
+	}
+
+	/**
+	 * Reads the median, 90th and 99th percentiles of a distribution.
+	 *
+	 * @param code         the code of the department or region, or null
+	 * @param distribution the distribution of the populations
+	 * @return the quantiles
+	 */
+	private static PopulationQuantilesDto toQuantiles(String code, PopulationDistribution distribution) {
+		return new PopulationQuantilesDto(code, distribution.getCount(), distribution.quantile(0.5),
+				distribution.quantile(0.9), distribution.quantile(0.99));
+	}
+
+	/**
+	 * Creates a template for a new transaction, as the rebuilds may run right
+	 * after another transaction has committed. It is not read-only, since it
+	 * writes, which also keeps it on the primary database.
+	 *
+	 * @return the transaction template
+	 */
+	private TransactionTemplate inNewTransaction() {
+		TransactionTemplate tx = new TransactionTemplate(transactionManager);
+		tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		return tx;
+	}
+
+	/**
+	 * Adds a difference to the rollups of the department and region of a city,
+	 * creating the rollup rows first if needed.
+	 *
+	 * @param ville                  the changed city
+	 * @param nbCommunes             the number of cities added, negative if
+	 *                               removed
+	 * @param nbHabitants            the number of inhabitants added
+	 * @param populationMunicipale   the municipal population added
+	 * @param populationCompteeAPart the population counted apart added
+	 * @param populationTotale       the total population added
+	 */
+	private void add(Ville ville, long nbCommunes, long nbHabitants, long populationMunicipale,
+			long populationCompteeAPart, long populationTotale) {
+		if (ville.getDepartement() == null) {
+			return;
+		}
+		add(ville.getDepartement().getId(), nbCommunes, nbHabitants, populationMunicipale, populationCompteeAPart,
+				populationTotale);
+	}
+
+	/**
+	 * Adds a difference to the rollups of a department and its region, creating
+	 * the rollup rows first if needed.
+	 *
+	 * @param departementId          the ID of the department
+	 * @param nbCommunes             the number of cities added, negative if
+	 *                               removed
+	 * @param nbHabitants            the number of inhabitants added
+	 * @param populationMunicipale   the municipal population added
+	 * @param populationCompteeAPart the population counted apart added
+	 * @param populationTotale       the total population added
+	 */
+	private void add(int departementId, long nbCommunes, long nbHabitants, long populationMunicipale,
+			long populationCompteeAPart, long populationTotale) {
+		// The extremes are read back from the cities, which must reflect the change
+		departementStatsRepository.flush();
+		departementStatsRepository.insertIfMissing(departementId);
+		departementStatsRepository.add(departementId, nbCommunes, nbHabitants, populationMunicipale,
+				populationCompteeAPart, populationTotale);
+		regionStatsRepository.insertIfMissing(departementId);
+		regionStatsRepository.add(departementId, nbCommunes, nbHabitants, populationMunicipale,
+				populationCompteeAPart, populationTotale);
+	}
+}
@@ -0,0 +1,133 @@
+package fr.diginamic.hello.services;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.diginamic.hello.events.ReferenceDataChangedEvent;
+
+/**
+ * Keeps the JSON responses of the region and department listings as
+ * pre-serialized, and pre-gzipped, byte arrays.
+ * 
+ * Each response is tagged with the version of the reference data it was built
+ * from. The version is bumped after every committed region or department
+ * mutation, which makes the next request rebuild the response.
+ */
+@Service
+public class ReferenceDataResponseCache {
+
+	private static final String REGIONS = "regions";
+	private static final String DEPARTEMENTS = "departements";
+
+	@Autowired
+	private RegionService regionService;
+
+	@Autowired
+	private DepartementService departementService;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private final AtomicLong version = new AtomicLong();
+
+	private final Map<String, SerializedResponse> responses = new ConcurrentHashMap<>();
+
+	/**
+	 * A JSON response body serialized once, along with its gzipped form.
+	 *
+	 * @param version the reference data version it was built from
+	 * @param json    the JSON body
+	 * @param gzipped the gzipped JSON body
+	 */
+	public record SerializedResponse(long version, byte[] json, byte[] gzipped) {
+	}
+
+	/**
+	 * Retrieves the serialized list of all regions, with their departments.
+	 *
+	 * @return the serialized response
+	 */
+	public SerializedResponse getRegions() {
+		return get(REGIONS, regionService::getAllRegions);
+	}
+
+	/**
+	 * Retrieves the serialized list of all departments.
+	 *
+	 * @return the serialized response
+	 */
+	public SerializedResponse getDepartements() {
+		return get(DEPARTEMENTS, departementService::extractDepartements);
+	}
+
+	/**
+	 * Bumps the reference data version once a region or department mutation has
+	 * been committed, so that the cached responses are rebuilt.
+	 *
+	 * @param event the change event
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onReferenceDataChanged(ReferenceDataChangedEvent event) {
+		version.incrementAndGet();
+		responses.clear();
+	}
+
+	private SerializedResponse get(String key, Supplier<List<?>> loader) {
+		long currentVersion = version.get();
+		SerializedResponse response = responses.get(key);
+		if (response != null && response.version() == currentVersion) {
+			return response;
+		}
+		response = serialize(currentVersion, loader);
+		responses.put(key, response);
+		return response;
+	}
+
+	/**
+	 * Loads and serializes a list within a transaction, since lazy associations
+	 * such as the departments of a region are walked during serialization. The
+	 * transaction is not read-only, so that the data is read from the primary
+	 * database: a replica might not hold yet the change which bumped the version.
+	 */
+	private SerializedResponse serialize(long dataVersion, Supplier<List<?>> loader) {
+		TransactionTemplate tx = new TransactionTemplate(transactionManager);
+		return tx.execute(status -> {
+			List<?> data = loader.get();
+			try {
+				byte[] json = objectMapper.writeValueAsBytes(data);
+				return new SerializedResponse(dataVersion, json, gzip(json));
+			} catch (JsonProcessingException e) {
+				throw new IllegalStateException("Impossible de sérialiser les données de référence", e);
+			}
+		});
+	}
+
+	private static byte[] gzip(byte[] data) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+			gzip.write(data);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return out.toByteArray();
+	}
+}
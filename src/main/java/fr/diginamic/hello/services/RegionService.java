@@ -1,13 +1,22 @@
 package fr.diginamic.hello.services;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import fr.diginamic.hello.config.EvictVilleSearchCaches;
+import fr.diginamic.hello.dto.BulkRowResultDto;
+import fr.diginamic.hello.dto.RegionBulkRow;
 import fr.diginamic.hello.entities.Region;
+import fr.diginamic.hello.events.ReferenceDataChangedEvent;
 import fr.diginamic.hello.repositories.RegionRepository;
 import jakarta.persistence.EntityNotFoundException;
 
@@ -21,6 +30,9 @@ public class RegionService {
 	@Autowired
 	private RegionRepository regionRepository;
 
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
+
 	/**
 	 * Creates a new region. Ensures that the region does not already exist based on
 	 * its code.
@@ -36,7 +48,44 @@ public class RegionService {
 		if (exists) {
 			throw new IllegalArgumentException("La région avec le code " + region.getCode() + " existe déjà.");
 		}
-		return regionRepository.save(region);
+		Region savedRegion = regionRepository.save(region);
+		eventPublisher.publishEvent(new ReferenceDataChangedEvent("Création de la région " + region.getCode()));
+		return savedRegion;
+	}
+
+	/**
+	 * Creates or renames a chunk of regions of a bulk import, in one
+	 * transaction. A region is identified by its code; the existing regions of
+	 * the whole chunk are read with one query, and a single change event is
+	 * published for the chunk.
+	 *
+	 * @param lines The valid lines of the chunk, in order.
+	 * @return The outcome of each line, in order.
+	 */
+	@EvictVilleSearchCaches
+	@Transactional
+	public List<BulkRowResultDto> upsertRegions(List<BulkLine<RegionBulkRow>> lines) {
+		Map<String, Region> regions = new HashMap<>();
+		regionRepository.findByCodeIn(lines.stream().map(line -> line.row().code()).collect(Collectors.toSet()))
+				.forEach(region -> regions.put(region.getCode(), region));
+
+		List<BulkRowResultDto> results = new ArrayList<>(lines.size());
+		for (BulkLine<RegionBulkRow> line : lines) {
+			RegionBulkRow row = line.row();
+			Region region = regions.get(row.code());
+			if (region == null) {
+				region = regionRepository.save(new Region(row.code(), row.nom()));
+				regions.put(row.code(), region);
+				results.add(BulkRowResultDto.created(line.number(), region.getId()));
+			} else {
+				region.setNom(row.nom());
+				results.add(BulkRowResultDto.updated(line.number(), region.getId()));
+			}
+		}
+		if (!lines.isEmpty()) {
+			eventPublisher.publishEvent(new ReferenceDataChangedEvent("Import de " + lines.size() + " régions"));
+		}
+		return results;
 	}
 
 	/**
@@ -81,6 +130,7 @@ public class RegionService {
 	 * @throws IllegalArgumentException if the region with the specified ID does not
 	 *                                  exist.
 	 */
+	@EvictVilleSearchCaches
 	@Transactional
 	public Region updateRegion(long id, Region regionDetails) {
 		Optional<Region> existingRegion = regionRepository.findById(id);
@@ -90,7 +140,9 @@ public class RegionService {
 		Region regionToUpdate = existingRegion.get();
 		regionToUpdate.setCode(regionDetails.getCode());
 		regionToUpdate.setNom(regionDetails.getNom());
-		return regionRepository.save(regionToUpdate);
+		Region updatedRegion = regionRepository.save(regionToUpdate);
+		eventPublisher.publishEvent(new ReferenceDataChangedEvent("Modification de la région " + id));
+		return updatedRegion;
 	}
 
 	/**
@@ -100,6 +152,7 @@ public class RegionService {
 	 * @throws IllegalArgumentException if the region with the specified ID does not
 	 *                                  exist.
 	 */
+	@EvictVilleSearchCaches
 	@Transactional
 	public void deleteRegionById(long id) {
 		boolean exists = regionRepository.existsById(id);
@@ -107,14 +160,17 @@ public class RegionService {
 			throw new IllegalArgumentException("La région avec l'ID " + id + " n'existe pas.");
 		}
 		regionRepository.deleteById(id);
+		eventPublisher.publishEvent(new ReferenceDataChangedEvent("Suppression de la région " + id));
 	}
 
 	/**
 	 * Deletes all regions.
 	 */
+	@EvictVilleSearchCaches
 	@Transactional
 	public void deleteAllRegions() {
 		regionRepository.deleteAll();
+		eventPublisher.publishEvent(new ReferenceDataChangedEvent("Suppression de toutes les régions"));
 	}
 
 	/**
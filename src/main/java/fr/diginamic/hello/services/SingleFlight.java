@@ -0,0 +1,99 @@
+package fr.diginamic.hello.services;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import fr.diginamic.hello.dto.SingleFlightStatsDto;
+
+/**
+ * Coalesces identical concurrent computations: while a computation is running
+ * for a given key, callers asking for the same key wait for it and share its
+ * result instead of running it again.
+ * 
+ * Computations are grouped by name (an endpoint or an export, for instance) so
+ * that the number of coalesced calls can be reported per group.
+ */
+@Component
+public class SingleFlight {
+
+	private record FlightKey(String group, Object key) {
+	}
+
+	private static final class GroupStats {
+		private final LongAdder executions = new LongAdder();
+		private final LongAdder coalesced = new LongAdder();
+	}
+
+	private final Map<FlightKey, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+	private final Map<String, GroupStats> stats = new ConcurrentHashMap<>();
+
+	/**
+	 * Runs a computation, or waits for the identical one already in flight.
+	 *
+	 * @param <T>         the type of the result
+	 * @param group       the name of the group the computation belongs to
+	 * @param key         the key identifying the computation within its group
+	 * @param computation the computation to run
+	 * @return the result of the computation, possibly shared with other callers
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T execute(String group, Object key, Supplier<T> computation) {
+		FlightKey flightKey = new FlightKey(group, key);
+		GroupStats groupStats = stats.computeIfAbsent(group, g -> new GroupStats());
+		CompletableFuture<Object> flight = new CompletableFuture<>();
+		CompletableFuture<Object> existing = inFlight.putIfAbsent(flightKey, flight);
+		if (existing != null) {
+			groupStats.coalesced.increment();
+			return (T) await(existing);
+		}
+
+		groupStats.executions.increment();
+		try {
+			T result = computation.get();
+			flight.complete(result);
+			return result;
+		} catch (RuntimeException | Error e) {
+			flight.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(flightKey, flight);
+		}
+	}
+
+	/**
+	 * Retrieves, for each group, how many computations were run and how many
+	 * calls were served by a computation already in flight.
+	 *
+	 * @return the statistics of each group
+	 */
+	public List<SingleFlightStatsDto> getStats() {
+		return stats.entrySet().stream().map(e -> new SingleFlightStatsDto(e.getKey(),
+				e.getValue().executions.sum(), e.getValue().coalesced.sum())).toList();
+	}
+
+	/**
+	 * Waits for a computation in flight, rethrowing its failure as is so that the
+	 * waiting callers fail the same way as the one running it.
+	 */
+	private static Object await(CompletableFuture<Object> flight) {
+		try {
+			return flight.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			if (e.getCause() instanceof Error cause) {
+				throw cause;
+			}
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package fr.diginamic.hello.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import fr.diginamic.hello.entities.Ville;
+
+/**
+ * Position of a client in a keyset-paginated listing of cities. It holds the
+ * sort keys of the last city returned, so that the next page starts right after
+ * it through an index seek, whatever its depth.
+ *
+ * Clients only see it as an opaque Base64 string.
+ *
+ * @param order       the order of the listing
+ * @param nbHabitants the population of the last city returned, for the
+ *                    population order
+ * @param id          the ID of the last city returned
+ */
+public record VilleCursor(Order order, long nbHabitants, long id) {
+
+	/**
+	 * Orders available for keyset pagination.
+	 */
+	public enum Order {
+		/** By increasing ID. */
+		ID,
+		/** By decreasing population, then increasing ID. */
+		POPULATION
+	}
+
+	/**
+	 * Returns the position before the first city of a listing.
+	 *
+	 * @param order the order of the listing
+	 * @return the starting position
+	 */
+	public static VilleCursor start(Order order) {
+		return new VilleCursor(order, Long.MAX_VALUE, 0);
+	}
+
+	/**
+	 * Returns the position right after a given city.
+	 *
+	 * @param order the order of the listing
+	 * @param ville the last city returned
+	 * @return the position after this city
+	 */
+	public static VilleCursor after(Order order, Ville ville) {
+		return new VilleCursor(order, ville.getNbHabitants(), ville.getId());
+	}
+
+	/**
+	 * Encodes this position as an opaque string.
+	 *
+	 * @return the URL-safe Base64 cursor
+	 */
+	public String encode() {
+		String value = order == Order.POPULATION ? order + ":" + nbHabitants + ":" + id : order + ":" + id;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Decodes a cursor previously returned by {@link #encode()}.
+	 *
+	 * @param cursor the opaque cursor
+	 * @return the position it designates
+	 * @throws IllegalArgumentException if the cursor is malformed
+	 */
+	public static VilleCursor decode(String cursor) {
+		try {
+			String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+			Order order = Order.valueOf(parts[0]);
+			if (order == Order.POPULATION && parts.length == 3) {
+				return new VilleCursor(order, Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+			}
+			if (order == Order.ID && parts.length == 2) {
+				return new VilleCursor(order, Long.MAX_VALUE, Long.parseLong(parts[1]));
+			}
+		} catch (IllegalArgumentException e) {
+			// Reported below, whatever the cause
+		}
+		throw new IllegalArgumentException("Curseur de pagination invalide : " + cursor);
+	}
+}
@@ -0,0 +1,78 @@
+package fr.diginamic.hello.services;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import fr.diginamic.hello.events.DataImportedEvent;
+import fr.diginamic.hello.events.VilleChangedEvent;
+import fr.diginamic.hello.events.VillesBulkChangedEvent;
+
+/**
+ * Tracks the version of the city dataset. The version changes after every
+ * committed city mutation and after every import, so that anything derived
+ * from the cities can be tagged with the version it was built from.
+ */
+@Component
+public class VilleDatasetVersion {
+
+	/**
+	 * Distinguishes the versions of this process from those of a previous run,
+	 * since the counter starts over on every start-up.
+	 */
+	private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+	private final AtomicLong version = new AtomicLong();
+
+	/**
+	 * Retrieves the current version of the city dataset.
+	 *
+	 * @return the current version
+	 */
+	public long current() {
+		return version.get();
+	}
+
+	/**
+	 * Retrieves a tag identifying a version across restarts, suitable for use in
+	 * an HTTP entity tag.
+	 *
+	 * @param datasetVersion the version to tag
+	 * @return the tag of the version
+	 */
+	public String tag(long datasetVersion) {
+		return epoch + "." + datasetVersion;
+	}
+
+	/**
+	 * Bumps the version once a city mutation has been committed.
+	 *
+	 * @param event the change event
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onVilleChanged(VilleChangedEvent event) {
+		version.incrementAndGet();
+	}
+
+	/**
+	 * Bumps the version once a chunk of a bulk import has been committed.
+	 *
+	 * @param event the bulk change event
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onVillesBulkChanged(VillesBulkChangedEvent event) {
+		version.incrementAndGet();
+	}
+
+	/**
+	 * Bumps the version after an import.
+	 *
+	 * @param event the import event
+	 */
+	@EventListener
+	public void onDataImported(DataImportedEvent event) {
+		version.incrementAndGet();
+	}
+}
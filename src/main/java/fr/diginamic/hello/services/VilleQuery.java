@@ -0,0 +1,73 @@
+package fr.diginamic.hello.services;
+
+import java.util.List;
+
+/**
+ * Combination of filters on the cities, run as a single query. Every filter is
+ * optional; those given are all applied.
+ *
+ * Blank values count as absent, so that the same query written in different
+ * ways shares one cache entry. Arrondissement and canton codes are only unique
+ * within a department, so they are usually combined with a department filter.
+ *
+ * @param departements    the codes of the departments the cities must belong
+ *                        to, or null for any department
+ * @param region          the code of the region the cities must belong to, or
+ *                        null for any region
+ * @param arrondissements the codes of the arrondissements the cities must
+ *                        belong to, or null for any arrondissement
+ * @param cantons         the codes of the cantons the cities must belong to, or
+ *                        null for any canton
+ * @param minPopulation   the minimum number of inhabitants, inclusive, or null
+ * @param maxPopulation   the maximum number of inhabitants, inclusive, or null
+ * @param prefix          the start of the name of the cities, or null
+ * @param order           the order of the cities
+ * @param limit           the maximum number of cities to return
+ */
+public record VilleQuery(List<String> departements, String region, List<String> arrondissements,
+		List<String> cantons, Long minPopulation, Long maxPopulation, String prefix, Order order, int limit) {
+
+	/**
+	 * Orders available for the results of a query.
+	 */
+	public enum Order {
+		/** By decreasing population, then increasing ID. */
+		POPULATION,
+		/** By name, ignoring case and accents, then increasing ID. */
+		NOM
+	}
+
+	/**
+	 * Normalizes the filters.
+	 *
+	 * @throws IllegalArgumentException if the population range is empty
+	 */
+	public VilleQuery {
+		departements = codes(departements);
+		arrondissements = codes(arrondissements);
+		cantons = codes(cantons);
+		region = region == null || region.isBlank() ? null : region.strip();
+		prefix = prefix == null || prefix.isBlank() ? null : prefix.strip();
+		order = order == null ? Order.POPULATION : order;
+		if (minPopulation != null && maxPopulation != null && minPopulation > maxPopulation) {
+			throw new IllegalArgumentException("La population minimale " + minPopulation
+					+ " dépasse la population maximale " + maxPopulation + ".");
+		}
+	}
+
+	/**
+	 * Normalizes a list of codes: strips them, drops the blank ones and the
+	 * duplicates, and sorts them.
+	 *
+	 * @param codes the codes, possibly null
+	 * @return the normalized codes, or null if there is none
+	 */
+	private static List<String> codes(List<String> codes) {
+		if (codes == null) {
+			return null;
+		}
+		List<String> normalized = codes.stream().filter(code -> code != null && !code.isBlank()).map(String::strip)
+				.distinct().sorted().toList();
+		return normalized.isEmpty() ? null : normalized;
+	}
+}
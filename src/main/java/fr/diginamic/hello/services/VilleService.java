@@ -1,27 +1,71 @@
 package fr.diginamic.hello.services;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.event.EventListener;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import fr.diginamic.hello.config.CacheConfig;
+import fr.diginamic.hello.config.EvictVilleSearchCaches;
+import fr.diginamic.hello.dto.BulkRowResultDto;
 import fr.diginamic.hello.dto.DepartementApiGouvDto;
+import fr.diginamic.hello.dto.VilleBatchKey;
+import fr.diginamic.hello.dto.VilleBatchResultDto;
+import fr.diginamic.hello.dto.VilleBulkRow;
+import fr.diginamic.hello.dto.VilleCursorPageDto;
 import fr.diginamic.hello.dto.VilleDto;
+import fr.diginamic.hello.dto.VilleRankDto;
+import fr.diginamic.hello.dto.VilleResumeDto;
 import fr.diginamic.hello.entities.Departement;
 import fr.diginamic.hello.entities.Ville;
+import fr.diginamic.hello.events.DataImportedEvent;
+import fr.diginamic.hello.events.VilleChangedEvent;
+import fr.diginamic.hello.events.VilleChangedEvent.ChangeType;
+import fr.diginamic.hello.events.VillesBulkChangedEvent;
 import fr.diginamic.hello.exceptions.DepartementNotFoundException;
 import fr.diginamic.hello.exceptions.ServiceException;
 import fr.diginamic.hello.exceptions.VilleNotFoundException;
+import fr.diginamic.hello.index.AutocompleteIndex;
+import fr.diginamic.hello.index.ColumnarVilleIndex;
+import fr.diginamic.hello.index.FuzzyNomIndex;
+import fr.diginamic.hello.index.NomNormalizer;
+import fr.diginamic.hello.index.PopulationRankIndex;
+import fr.diginamic.hello.index.TopVillesIndex;
+import fr.diginamic.hello.index.VilleFilter;
+import fr.diginamic.hello.index.VilleFilterIndex;
+import fr.diginamic.hello.index.VilleSnapshot;
 import fr.diginamic.hello.mappers.VilleMapper;
 import fr.diginamic.hello.repositories.DepartementRepository;
 import fr.diginamic.hello.repositories.VilleRepository;
+import fr.diginamic.hello.repositories.VilleSpecifications;
 import jakarta.persistence.EntityNotFoundException;
 
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Service class for managing city entities.
@@ -29,6 +73,15 @@ import java.util.List;
 @Service
 public class VilleService {
 
+	/**
+	 * Order of the cities by name, ignoring case and accents like the default
+	 * collation of the MySQL name column, so that the queries answered in memory
+	 * list the cities in the same order as those sorted by the database.
+	 */
+	private static final Comparator<VilleSnapshot> BY_NOM = Comparator
+			.comparing(VilleSnapshot::nom, primary(Collator.getInstance(Locale.FRENCH)))
+			.thenComparingLong(VilleSnapshot::id);
+
 	@Autowired
 	private VilleRepository villeRepository;
 
@@ -38,17 +91,152 @@ public class VilleService {
 	@Autowired
 	private DepartementService departementService;
 
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	private SingleFlight singleFlight;
+
+	@Autowired
+	private PopulationStatsService populationStatsService;
+
+	@Autowired
+	private AutocompleteIndex autocompleteIndex;
+
+	@Autowired
+	private FuzzyNomIndex fuzzyNomIndex;
+
+	@Autowired
+	private TopVillesIndex topVillesIndex;
+
+	@Autowired
+	private PopulationRankIndex populationRankIndex;
+
+	@Autowired
+	private VilleFilterIndex villeFilterIndex;
+
+	/** Columnar copy of the cities, absent unless enabled. */
+	@Autowired(required = false)
+	private ColumnarVilleIndex columnarVilleIndex;
+
+	/** Largest page a listing or search request may return. */
+	@Value("${villes.search.max-page-size:1000}")
+	private int maxPageSize;
+
+	/** Largest number of cities an autocomplete or fuzzy search may return. */
+	@Value("${villes.autocomplete.max-results:50}")
+	private int maxAutocompleteResults;
+
+	/** Largest number of keys a batch lookup may request. */
+	@Value("${villes.batch.max-keys:1000}")
+	private int maxBatchKeys;
+
+	/** Share of common trigrams below which a city is not a fuzzy match. */
+	@Value("${villes.fuzzy.min-similarity:0.3}")
+	private double minFuzzySimilarity;
+
 	private VilleMapper villeMapper = new VilleMapper();
 
 	/**
-	 * Retrieves a paginated list of all cities.
+	 * Largest number of values bound to the {@code IN} list of one batch lookup
+	 * query, so that the statements stay of a bounded size and their plans are
+	 * reused.
+	 */
+	private static final int BATCH_CHUNK_SIZE = 500;
+
+	/**
+	 * Retrieves a paginated list of all cities. The total comes from the cached
+	 * number of cities rather than from a count query per page.
 	 *
-	 * @param pageable Pagination information.
+	 * @param pageable Pagination information, bounded by the maximum page size.
 	 * @return A page of cities.
 	 */
 	@Transactional(readOnly = true)
 	public Page<Ville> extractVilles(Pageable pageable) {
-		return villeRepository.findAll(pageable);
+		Pageable page = bounded(pageable);
+		return PageableExecutionUtils.getPage(villeRepository.findBy(page).getContent(), page,
+				villeRepository::countVilles);
+	}
+
+	/**
+	 * Retrieves a slice of all cities, only telling whether a next slice exists.
+	 * No count query is run, which suits infinite-scroll clients.
+	 *
+	 * @param pageable Pagination information, bounded by the maximum page size.
+	 * @return A slice of cities.
+	 */
+	@Transactional(readOnly = true)
+	public Slice<Ville> extractVillesSlice(Pageable pageable) {
+		return villeRepository.findBy(bounded(pageable));
+	}
+
+	/**
+	 * Retrieves the number of cities, from a cache evicted by every city write and
+	 * every import.
+	 *
+	 * @return The number of cities.
+	 */
+	@Transactional(readOnly = true)
+	public long countVilles() {
+		return villeRepository.countVilles();
+	}
+
+	/**
+	 * Clears the search result caches and the cached number of cities once a file
+	 * import, which bypasses this service, has loaded new cities.
+	 *
+	 * @param event the import notification
+	 */
+	@EvictVilleSearchCaches
+	@EventListener
+	public void onDataImported(DataImportedEvent event) {
+		// The caches are cleared by the annotation
+	}
+
+	/**
+	 * Retrieves the page of cities following a keyset pagination cursor. Unlike
+	 * {@link #extractVilles(Pageable)}, no row is skipped by the database: the
+	 * query seeks an index right after the cursor, so deep pages cost the same as
+	 * the first one.
+	 *
+	 * @param cursor the position after which to read
+	 * @param size   the number of cities per page, bounded by the maximum page
+	 *               size
+	 * @return the cities, with the cursor of the next page if there is one
+	 */
+	@Transactional(readOnly = true)
+	public VilleCursorPageDto scrollVilles(VilleCursor cursor, int size) {
+		int pageSize = Math.min(Math.max(size, 1), maxPageSize);
+		Limit limit = Limit.of(pageSize + 1);
+		List<Ville> villes = switch (cursor.order()) {
+		case ID -> villeRepository.findByIdGreaterThanOrderByIdAsc(cursor.id(), limit);
+		case POPULATION -> villeRepository.findNextByPopulation(cursor.nbHabitants(), cursor.id(), limit);
+		};
+
+		if (villes.size() <= pageSize) {
+			return new VilleCursorPageDto(villes, null);
+		}
+		List<Ville> page = villes.subList(0, pageSize);
+		return new VilleCursorPageDto(List.copyOf(page),
+				VilleCursor.after(cursor.order(), page.get(pageSize - 1)).encode());
+	}
+
+	/**
+	 * Limits the size of a requested page to the maximum page size, so that no
+	 * request can load an unbounded number of cities. Clients go through larger
+	 * results page by page.
+	 *
+	 * @param pageable the requested page
+	 * @return the same page, at most {@code maxPageSize} elements long
+	 */
+	private Pageable bounded(Pageable pageable) {
+		if (pageable.isUnpaged()) {
+			return PageRequest.of(0, maxPageSize);
+		}
+		if (pageable.getPageSize() <= maxPageSize) {
+			return pageable;
+		}
+		return PageRequest.of(pageable.getPageNumber(), maxPageSize, pageable.getSort());
 	}
 
 	/**
@@ -130,7 +318,8 @@ public class VilleService {
 	 * This method queries the database to fetch a page of cities sorted by
 	 * descending population. Each city is then converted into a {@link VilleDto},
 	 * with additional information potentially retrieved through calls to external
-	 * or internal services to enrich the returned DTOs.
+	 * or internal services to enrich the returned DTOs. Concurrent calls with the
+	 * same pagination share a single computation.
 	 *
 	 * @param pageVilles The pagination and sorting parameter that specifies the
 	 *                   number of results per page and the sorting order.
@@ -139,15 +328,17 @@ public class VilleService {
 	 */
 	@Transactional(readOnly = true)
 	public List<VilleDto> getTopNVillesDtos(Pageable pageVilles) {
-		Page<Ville> villes = villeRepository.findByOrderByNbHabitantsDesc(pageVilles);
+		return singleFlight.execute("topVillesDtos", pageVilles, () -> {
+			Slice<Ville> villes = villeRepository.findByOrderByNbHabitantsDesc(pageVilles);
 
-		List<VilleDto> villesDtos = villes.stream().map(v -> {
-			int idToInt = (int) (long) v.getId();
-			VilleDto dto = getVilleDto(idToInt);
-			return dto;
-		}).toList();
+			List<VilleDto> villesDtos = villes.stream().map(v -> {
+				int idToInt = (int) (long) v.getId();
+				VilleDto dto = getVilleDto(idToInt);
+				return dto;
+			}).toList();
 
-		return villesDtos;
+			return villesDtos;
+		});
 	}
 
 	/**
@@ -158,6 +349,7 @@ public class VilleService {
 	 * @throws EntityException          if the city already exists.
 	 * @throws IllegalArgumentException if the associated department does not exist.
 	 */
+	@EvictVilleSearchCaches
 	@Transactional
 	public Ville createVille(Ville ville) {
 		boolean villeExists = villeRepository.existsByNomAndDepartement(ville.getNom(), ville.getDepartement());
@@ -175,7 +367,11 @@ public class VilleService {
 		Departement departement = departementRepository.findById(ville.getDepartement().getId()).get();
 		ville.setDepartement(departement);
 
-		return villeRepository.save(ville);
+		Ville savedVille = villeRepository.save(ville);
+		populationStatsService.villeAdded(savedVille);
+		eventPublisher.publishEvent(
+				new VilleChangedEvent(ChangeType.CREATED, savedVille.getId(), null, toSnapshot(savedVille)));
+		return savedVille;
 	}
 
 	/**
@@ -186,13 +382,19 @@ public class VilleService {
 	 * @return The updated city.
 	 * @throws EntityNotFoundException if the city is not found.
 	 */
+	@EvictVilleSearchCaches
 	@Transactional
 	public Ville modifierVille(int idVille, Ville villeModifiee) {
-		return villeRepository.findById(idVille).map(ville -> {
-			ville.setNom(villeModifiee.getNom());
-			ville.setNbHabitants(villeModifiee.getNbHabitants());
-			return villeRepository.save(ville);
-		}).orElseThrow(() -> new EntityNotFoundException("Ville non trouvée avec ID : " + idVille));
+		Ville ville = villeRepository.findById(idVille)
+				.orElseThrow(() -> new EntityNotFoundException("Ville non trouvée avec ID : " + idVille));
+		VilleSnapshot before = toSnapshot(ville);
+		ville.setNom(villeModifiee.getNom());
+		ville.setNbHabitants(villeModifiee.getNbHabitants());
+		Ville updatedVille = villeRepository.save(ville);
+		populationStatsService.nbHabitantsChanged(updatedVille, before.nbHabitants());
+		eventPublisher.publishEvent(
+				new VilleChangedEvent(ChangeType.UPDATED, updatedVille.getId(), before, toSnapshot(updatedVille)));
+		return updatedVille;
 	}
 
 	/**
@@ -201,12 +403,14 @@ public class VilleService {
 	 * @param idVille The ID of the city to delete.
 	 * @throws EntityNotFoundException if the city is not found.
 	 */
+	@EvictVilleSearchCaches
 	@Transactional
 	public void supprimerVille(int idVille) {
-		if (!villeRepository.existsById(idVille)) {
-			throw new EntityNotFoundException("Ville non trouvée avec ID : " + idVille);
-		}
-		villeRepository.deleteById(idVille);
+		Ville ville = villeRepository.findById(idVille)
+				.orElseThrow(() -> new EntityNotFoundException("Ville non trouvée avec ID : " + idVille));
+		villeRepository.delete(ville);
+		populationStatsService.villeRemoved(ville);
+		eventPublisher.publishEvent(new VilleChangedEvent(ChangeType.DELETED, idVille, toSnapshot(ville), null));
 	}
 
 	/**
@@ -214,29 +418,33 @@ public class VilleService {
 	 * department.
 	 *
 	 * @param departementId The ID of the department.
-	 * @param maxResults    The maximum number of results to return.
+	 * @param maxResults    The maximum number of results to return, bounded by the
+	 *                      maximum page size.
 	 * @return A list of cities, or null if the department is not found.
 	 */
 	@Transactional(readOnly = true)
-	public List<Ville> findTopNVillesByDepartement(int departementId, int maxResults) {
+	public List<VilleResumeDto> findTopNVillesByDepartement(int departementId, int maxResults) {
 		Departement departement = departementService.extractDepartement(departementId);
-		PageRequest pageRequest = PageRequest.of(0, maxResults);
-		return villeRepository.findByDepartementOrderByNbHabitantsDesc(departement, pageRequest);
+		return findTopNVillesByDepartementOrderByNbHabitantsDesc(departement, PageRequest.of(0, maxResults));
 	}
 
 	/**
-	 * Retrieves a list of cities within a specific department where the population
+	 * Retrieves a page of cities within a specific department where the population
 	 * falls within a specified range.
 	 *
 	 * @param minPopulation The minimum population threshold.
 	 * @param maxPopulation The maximum population threshold.
 	 * @param departement   The department in which to search for cities.
-	 * @return A list of cities meeting the population criteria.
+	 * @param pageable      The requested page, bounded by the maximum page size.
+	 * @return A slice of cities meeting the population criteria.
 	 */
+	@Cacheable(cacheNames = CacheConfig.VILLES_BY_DEPARTEMENT_POPULATION,
+			key = "{#departement.id, #minPopulation, #maxPopulation, #pageable.pageNumber, #pageable.pageSize}")
 	@Transactional(readOnly = true)
-	public List<Ville> findVillesByPopulationAndDepartement(int minPopulation, int maxPopulation,
-			Departement departement) {
-		return villeRepository.findByNbHabitantsBetweenAndDepartement(minPopulation, maxPopulation, departement);
+	public Slice<VilleResumeDto> findVillesByPopulationAndDepartement(int minPopulation, int maxPopulation,
+			Departement departement, Pageable pageable) {
+		return villeRepository.findResumesByDepartementAndNbHabitantsBetween(departement, minPopulation, maxPopulation,
+				bounded(pageable));
 	}
 
 	/**
@@ -251,52 +459,81 @@ public class VilleService {
 	}
 
 	/**
-	 * Retrieves a list of cities whose names start with a specified prefix.
+	 * Retrieves a page of cities whose names start with a specified prefix.
 	 *
-	 * @param prefix The prefix to search by.
-	 * @return A list of cities that start with the given prefix.
+	 * @param prefix   The prefix to search by.
+	 * @param pageable The requested page, bounded by the maximum page size.
+	 * @return A slice of cities that start with the given prefix.
 	 */
+	@Cacheable(cacheNames = CacheConfig.VILLES_BY_PREFIX,
+			key = "{#prefix.strip(), #pageable.pageNumber, #pageable.pageSize}")
 	@Transactional(readOnly = true)
-	public List<Ville> findByNomStartingWith(String prefix) {
-		List<Ville> result = villeRepository.findByNomStartingWith(prefix);
-		if (result.isEmpty()) {
+	public Slice<VilleResumeDto> findByNomStartingWith(String prefix, Pageable pageable) {
+		String normalizedPrefix = prefix.strip();
+		Pageable page = bounded(pageable);
+		Slice<VilleResumeDto> result = singleFlight.execute("search.prefix",
+				List.of(normalizedPrefix, page.getPageNumber(), page.getPageSize()),
+				() -> villeRepository.findResumesByNomStartingWith(normalizedPrefix, page));
+		if (result.isFirst() && !result.hasContent()) {
 			throw new VilleNotFoundException("Aucune ville dont le nom commence par " + prefix + " n’a été trouvée.");
 		}
 		return result;
 	}
 
 	/**
-	 * Retrieves a list of cities where the population is greater than a specified
+	 * Retrieves a page of cities where the population is greater than a specified
 	 * minimum.
 	 *
 	 * @param minPopulation The minimum population threshold.
-	 * @return A list of cities with a population greater than the specified
+	 * @param pageable      The requested page, bounded by the maximum page size.
+	 * @return A slice of cities with a population greater than the specified
 	 *         minimum.
 	 */
+	@Cacheable(cacheNames = CacheConfig.VILLES_BY_MIN_POPULATION,
+			key = "{#minPopulation, #pageable.pageNumber, #pageable.pageSize}")
 	@Transactional(readOnly = true)
-	public List<Ville> findByNbHabitantsGreaterThan(int minPopulation) {
-		List<Ville> result = villeRepository.findByNbHabitantsGreaterThan(minPopulation);
-		if (result.isEmpty()) {
+	public Slice<VilleResumeDto> findByNbHabitantsGreaterThan(int minPopulation, Pageable pageable) {
+		Pageable page = bounded(pageable);
+		Slice<VilleResumeDto> result = singleFlight.execute("search.minPopulation",
+				List.of(minPopulation, page.getPageNumber(), page.getPageSize()),
+				() -> villeRepository.findResumesByNbHabitantsGreaterThan(minPopulation, page));
+		if (result.isFirst() && !result.hasContent()) {
 			throw new VilleNotFoundException("Aucune ville n’a une population supérieure à " + minPopulation);
 		}
 		return result;
 	}
 
 	/**
-	 * Retrieves a list of cities where the population falls within a specified
+	 * Retrieves a page of cities where the population falls within a specified
 	 * range.
 	 *
 	 * @param minPopulation The minimum population threshold.
 	 * @param maxPopulation The maximum population threshold.
-	 * @return A list of cities where the population is between the specified
+	 * @param pageable      The requested page, bounded by the maximum page size.
+	 * @return A slice of cities where the population is between the specified
 	 *         minimum and maximum.
 	 */
+	@Cacheable(cacheNames = CacheConfig.VILLES_BY_POPULATION_RANGE,
+			key = "{#minPopulation, #maxPopulation, #pageable.pageNumber, #pageable.pageSize}")
 	@Transactional(readOnly = true)
-	public List<Ville> findByNbHabitantsBetween(long minPopulation, long maxPopulation) {
-
-		List<Ville> result = villeRepository.findByNbHabitantsBetween(minPopulation, maxPopulation);
+	public Slice<VilleResumeDto> findByNbHabitantsBetween(long minPopulation, long maxPopulation,
+			Pageable pageable) {
+		Pageable page = bounded(pageable);
+		Slice<VilleResumeDto> result;
+		if (columnarVilleIndex != null) {
+			// One more city than asked tells whether there is a next slice
+			List<VilleResumeDto> villes = columnarVilleIndex.findByPopulationRange(minPopulation, maxPopulation,
+					(int) page.getOffset(), page.getPageSize() + 1);
+			boolean hasNext = villes.size() > page.getPageSize();
+			result = new SliceImpl<>(hasNext ? List.copyOf(villes.subList(0, page.getPageSize())) : villes, page,
+					hasNext);
+		} else {
+			result = singleFlight.execute("search.populationRange",
+					List.of(minPopulation, maxPopulation, page.getPageNumber(), page.getPageSize()),
+					() -> villeRepository.findResumesByNbHabitantsBetween(minPopulation, maxPopulation, page));
+		}
 
-		if (result.isEmpty()) {
+		if (result.isFirst() && !result.hasContent()) {
 			throw new VilleNotFoundException(
 					"Aucune ville n’a une population comprise entre " + minPopulation + " et " + maxPopulation);
 		}
@@ -304,20 +541,25 @@ public class VilleService {
 	}
 
 	/**
-	 * Retrieves a list of cities in a given department where the population is
+	 * Retrieves a page of cities in a given department where the population is
 	 * greater than a specified minimum.
 	 *
 	 * @param departement   The department in which to search for cities.
 	 * @param minPopulation The minimum population threshold.
-	 * @return A list of cities in the specified department with a population
+	 * @param pageable      The requested page, bounded by the maximum page size.
+	 * @return A slice of cities in the specified department with a population
 	 *         greater than the specified minimum.
 	 */
+	@Cacheable(cacheNames = CacheConfig.VILLES_BY_DEPARTEMENT_AND_MIN_POPULATION,
+			key = "{#departement.id, #minPopulation, #pageable.pageNumber, #pageable.pageSize}")
 	@Transactional(readOnly = true)
-	public List<Ville> findByDepartementAndNbHabitantsGreaterThan(Departement departement, int minPopulation) {
+	public Slice<VilleResumeDto> findByDepartementAndNbHabitantsGreaterThan(Departement departement,
+			int minPopulation, Pageable pageable) {
 
-		List<Ville> result = villeRepository.findByDepartementAndNbHabitantsGreaterThan(departement, minPopulation);
+		Slice<VilleResumeDto> result = villeRepository.findResumesByDepartementAndNbHabitantsGreaterThan(departement,
+				minPopulation, bounded(pageable));
 
-		if (result.isEmpty()) {
+		if (result.isFirst() && !result.hasContent()) {
 			throw new VilleNotFoundException("Aucune ville n’a une population supérieure à " + minPopulation
 					+ "dans le département " + departement.getCode());
 		}
@@ -325,21 +567,24 @@ public class VilleService {
 	}
 
 	/**
-	 * Retrieves a list of cities in a given department where the population falls
+	 * Retrieves a page of cities in a given department where the population falls
 	 * within a specified range.
 	 *
 	 * @param departement   The department in which to search for cities.
 	 * @param minPopulation The minimum population threshold.
 	 * @param maxPopulation The maximum population threshold.
-	 * @return A list of cities in the specified department where the population is
-	 *         between the specified minimum and maximum.
+	 * @param pageable      The requested page, bounded by the maximum page size.
+	 * @return A slice of cities in the specified department where the population
+	 *         is between the specified minimum and maximum.
 	 */
+	@Cacheable(cacheNames = CacheConfig.VILLES_BY_DEPARTEMENT_AND_POPULATION_RANGE,
+			key = "{#departement.id, #minPopulation, #maxPopulation, #pageable.pageNumber, #pageable.pageSize}")
 	@Transactional(readOnly = true)
-	public List<Ville> findByDepartementAndNbHabitantsBetween(Departement departement, int minPopulation,
-			int maxPopulation) {
-		List<Ville> result = villeRepository.findByDepartementAndNbHabitantsBetween(departement, minPopulation,
-				maxPopulation);
-		if (result.isEmpty()) {
+	public Slice<VilleResumeDto> findByDepartementAndNbHabitantsBetween(Departement departement, int minPopulation,
+			int maxPopulation, Pageable pageable) {
+		Slice<VilleResumeDto> result = villeRepository.findResumesByDepartementAndNbHabitantsBetween(departement,
+				minPopulation, maxPopulation, bounded(pageable));
+		if (result.isFirst() && !result.hasContent()) {
 			throw new VilleNotFoundException("Aucune ville n’a une population comprise entre " + minPopulation + " et "
 					+ maxPopulation + " dans le département " + departement.getCode());
 		}
@@ -348,26 +593,358 @@ public class VilleService {
 
 	/**
 	 * Retrieves a list of the top n most populated cities within a specific
-	 * department, ordered by population descending.
+	 * department, ordered by population descending. The answer comes from an
+	 * in-memory index rather than from the database.
 	 *
 	 * @param departement The department to search within.
-	 * @param pageable    Pagination and sorting information.
+	 * @param pageable    Pagination and sorting information, bounded by the
+	 *                    maximum page size.
 	 * @return A paginated list of cities ordered by descending population.
 	 */
+	public List<VilleResumeDto> findTopNVillesByDepartementOrderByNbHabitantsDesc(Departement departement,
+			Pageable pageable) {
+		Pageable page = bounded(pageable);
+		return topVillesIndex.findTop(departement.getCode(), (int) page.getOffset(), page.getPageSize());
+	}
+
+	/**
+	 * Retrieves the cities matching any combination of filters, in a single query
+	 * joining the departments and regions by code. Unlike the other searches, the
+	 * department is not loaded beforehand: an unknown department code simply
+	 * matches no city. Without a name prefix, the query is answered from the
+	 * in-memory bitmaps of a {@link VilleFilterIndex} instead.
+	 *
+	 * @param villeQuery The filters, order and limit, bounded by the maximum page
+	 *                   size.
+	 * @return The matching city summaries.
+	 * @throws VilleNotFoundException if no city matches the filters.
+	 */
+	@Cacheable(cacheNames = CacheConfig.VILLES_BY_QUERY)
 	@Transactional(readOnly = true)
-	public List<Ville> findTopNVillesByDepartementOrderByNbHabitantsDesc(Departement departement, Pageable pageable) {
-		return villeRepository.findTopNVillesByDepartementOrderByNbHabitantsDesc(departement, pageable);
+	public List<VilleResumeDto> query(VilleQuery villeQuery) {
+		int limit = Math.min(Math.max(villeQuery.limit(), 1), maxPageSize);
+		if (villeQuery.prefix() == null) {
+			VilleFilter filter = new VilleFilter(villeQuery.departements(),
+					villeQuery.region() != null ? List.of(villeQuery.region()) : null, villeQuery.arrondissements(),
+					villeQuery.cantons(), villeQuery.minPopulation(), villeQuery.maxPopulation());
+			Comparator<VilleSnapshot> order = switch (villeQuery.order()) {
+			case POPULATION -> Comparator.comparingLong(VilleSnapshot::nbHabitants).reversed()
+					.thenComparingLong(VilleSnapshot::id);
+			case NOM -> BY_NOM;
+			};
+			return found(villeFilterIndex.find(filter, order, limit));
+		}
+
+		Specification<Ville> specification = Specification.where(null);
+		if (villeQuery.departements() != null) {
+			specification = specification.and(VilleSpecifications.inDepartements(villeQuery.departements()));
+		}
+		if (villeQuery.region() != null) {
+			specification = specification.and(VilleSpecifications.inRegion(villeQuery.region()));
+		}
+		if (villeQuery.arrondissements() != null) {
+			specification = specification.and(VilleSpecifications.inArrondissements(villeQuery.arrondissements()));
+		}
+		if (villeQuery.cantons() != null) {
+			specification = specification.and(VilleSpecifications.inCantons(villeQuery.cantons()));
+		}
+		if (villeQuery.minPopulation() != null) {
+			specification = specification.and(VilleSpecifications.populationAtLeast(villeQuery.minPopulation()));
+		}
+		if (villeQuery.maxPopulation() != null) {
+			specification = specification.and(VilleSpecifications.populationAtMost(villeQuery.maxPopulation()));
+		}
+		if (villeQuery.prefix() != null) {
+			specification = specification.and(VilleSpecifications.nomStartingWith(villeQuery.prefix()));
+		}
+		Sort sort = switch (villeQuery.order()) {
+		case POPULATION -> Sort.by(Sort.Order.desc("nbHabitants"), Sort.Order.asc("id"));
+		case NOM -> Sort.by("nom", "id");
+		};
+
+		return found(villeRepository.findResumes(specification, sort, Limit.of(limit)));
+	}
+
+	/**
+	 * Restricts a collator to the base letters, so that it ignores case and
+	 * accents.
+	 *
+	 * @param collator The collator to restrict.
+	 * @return The same collator.
+	 */
+	private static Collator primary(Collator collator) {
+		collator.setStrength(Collator.PRIMARY);
+		return collator;
+	}
+
+	/**
+	 * Checks that a query has found some cities.
+	 *
+	 * @param villes The cities found.
+	 * @return The same cities.
+	 * @throws VilleNotFoundException if no city has been found.
+	 */
+	private static List<VilleResumeDto> found(List<VilleResumeDto> villes) {
+		if (villes.isEmpty()) {
+			throw new VilleNotFoundException("Aucune ville ne correspond aux critères de recherche.");
+		}
+		return villes;
+	}
+
+	/**
+	 * Creates or updates a chunk of cities of a bulk import, in one transaction.
+	 * A city is identified by its department and commune code; the departments,
+	 * then the existing cities, of the whole chunk are read with one query each,
+	 * and the rollups of each department are updated once for the chunk rather
+	 * than once per city. A single change event is published for the chunk, so
+	 * that the in-memory indexes are rebuilt once rather than updated per city.
+	 *
+	 * @param lines The valid lines of the chunk, in order.
+	 * @return The outcome of each line, in order; a line whose department does
+	 *         not exist is rejected.
+	 */
+	@EvictVilleSearchCaches
+	@Transactional
+	public List<BulkRowResultDto> upsertVilles(List<BulkLine<VilleBulkRow>> lines) {
+		Map<String, Departement> departements = new HashMap<>();
+		departementRepository
+				.findByCodeIn(lines.stream().map(line -> line.row().codeDepartement()).collect(Collectors.toSet()))
+				.forEach(departement -> departements.put(departement.getCode(), departement));
+		Map<List<String>, Ville> villes = new HashMap<>();
+		if (!departements.isEmpty()) {
+			Set<String> codesCommune = lines.stream().map(line -> line.row().codeCommune())
+					.collect(Collectors.toSet());
+			for (Ville ville : villeRepository.findByDepartementInAndCodeCommuneIn(departements.values(),
+					codesCommune)) {
+				villes.putIfAbsent(List.of(ville.getDepartement().getCode(), ville.getCodeCommune()), ville);
+			}
+		}
+
+		// Differences of the rollups of each department: communes, then each population
+		Map<Integer, long[]> deltas = new HashMap<>();
+		List<BulkRowResultDto> results = new ArrayList<>(lines.size());
+		for (BulkLine<VilleBulkRow> line : lines) {
+			VilleBulkRow row = line.row();
+			Departement departement = departements.get(row.codeDepartement());
+			if (departement == null) {
+				results.add(BulkRowResultDto.rejected(line.number(),
+						"Le département avec le code " + row.codeDepartement() + " n'existe pas."));
+				continue;
+			}
+			List<String> key = List.of(row.codeDepartement(), row.codeCommune());
+			Ville ville = villes.get(key);
+			boolean created = ville == null;
+			long[] previous = ville != null ? populations(ville) : new long[5];
+			if (ville == null) {
+				ville = villeRepository.save(new Ville(row.nom(), row.nbHabitants(), row.codeArrondissement(),
+						row.codeCanton(), row.codeCommune(), orZero(row.populationMunicipale()),
+						orZero(row.populationCompteeAPart()), orZero(row.populationTotale()), departement));
+				villes.put(key, ville);
+			} else {
+				// Modified in place, the managed city is written by the batched flush
+				ville.setNom(row.nom());
+				ville.setNbHabitants(row.nbHabitants());
+				if (row.codeArrondissement() != null) {
+					ville.setCodeArrondissement(row.codeArrondissement());
+				}
+				if (row.codeCanton() != null) {
+					ville.setCodeCanton(row.codeCanton());
+				}
+				if (row.populationMunicipale() != null) {
+					ville.setPopulationMunicipale(row.populationMunicipale());
+				}
+				if (row.populationCompteeAPart() != null) {
+					ville.setPopulationCompteeAPart(row.populationCompteeAPart());
+				}
+				if (row.populationTotale() != null) {
+					ville.setPopulationTotale(row.populationTotale());
+				}
+			}
+			long[] current = populations(ville);
+			long[] delta = deltas.computeIfAbsent(departement.getId(), id -> new long[5]);
+			for (int i = 0; i < delta.length; i++) {
+				delta[i] += current[i] - previous[i];
+			}
+			results.add(created ? BulkRowResultDto.created(line.number(), ville.getId())
+					: BulkRowResultDto.updated(line.number(), ville.getId()));
+		}
+		deltas.forEach((departementId, delta) -> populationStatsService.villesChanged(departementId, delta[0],
+				delta[1], delta[2], delta[3], delta[4]));
+		int changed = (int) results.stream().filter(result -> result.status() != BulkRowResultDto.Status.REJECTED)
+				.count();
+		if (changed > 0) {
+			eventPublisher.publishEvent(new VillesBulkChangedEvent(changed));
+		}
+		return results;
+	}
+
+	/**
+	 * Reads the figures of a city added to the rollups of its department.
+	 *
+	 * @param ville the city
+	 * @return one commune, then its number of inhabitants, municipal population,
+	 *         population counted apart and total population
+	 */
+	private static long[] populations(Ville ville) {
+		return new long[] { 1, ville.getNbHabitants(), ville.getPopulationMunicipale(),
+				ville.getPopulationCompteeAPart(), ville.getPopulationTotale() };
+	}
+
+	/**
+	 * Replaces a missing figure by 0.
+	 *
+	 * @param value the figure, possibly null
+	 * @return the figure, or 0 if null
+	 */
+	private static long orZero(Long value) {
+		return value != null ? value : 0;
+	}
+
+	/**
+	 * Suggests the most populated cities whose name starts with a prefix, for
+	 * autocompletion. Case, accents and punctuation are ignored, and the answer
+	 * comes from an in-memory index rather than from the database.
+	 *
+	 * @param prefix The typed prefix.
+	 * @param limit  The maximum number of suggestions, bounded by the server.
+	 * @return The matching cities, the most populated first.
+	 * @throws IllegalArgumentException if the prefix has no letter or digit.
+	 */
+	public List<VilleSnapshot> autocomplete(String prefix, int limit) {
+		if (NomNormalizer.fold(prefix).isEmpty()) {
+			throw new IllegalArgumentException("Le préfixe doit contenir au moins une lettre ou un chiffre.");
+		}
+		return autocompleteIndex.search(prefix, Math.min(Math.max(limit, 1), maxAutocompleteResults));
 	}
 
 	/**
-	 * Retrieves a list of cities in a specified department.
+	 * Finds the cities whose name is the closest to a possibly misspelt one, such
+	 * as "Montpelier" for Montpellier. The answer comes from an in-memory trigram
+	 * index; among equally close names, the most populated cities come first.
 	 *
-	 * @param departement the department to search for cities
-	 * @return a list of cities in the specified department
+	 * @param nom   The name searched for.
+	 * @param limit The maximum number of cities, bounded by the server.
+	 * @return The matching cities, the best first.
+	 * @throws IllegalArgumentException if the name has no letter or digit.
+	 * @throws VilleNotFoundException   if no city name is close enough.
 	 */
+	public List<FuzzyNomIndex.Match> fuzzySearch(String nom, int limit) {
+		if (NomNormalizer.fold(nom).isEmpty()) {
+			throw new IllegalArgumentException("Le nom doit contenir au moins une lettre ou un chiffre.");
+		}
+		List<FuzzyNomIndex.Match> matches = fuzzyNomIndex.search(nom,
+				Math.min(Math.max(limit, 1), maxAutocompleteResults), minFuzzySimilarity);
+		if (matches.isEmpty()) {
+			throw new VilleNotFoundException("Aucune ville ne ressemble à " + nom);
+		}
+		return matches;
+	}
 
+	/**
+	 * Retrieves the population rank of a city, nationally and within its
+	 * department. The answer comes from an in-memory index rather than from the
+	 * database.
+	 *
+	 * @param idVille The ID of the city.
+	 * @return The ranks of the city.
+	 * @throws VilleNotFoundException if the city does not exist.
+	 */
+	public VilleRankDto getRank(int idVille) {
+		return populationRankIndex.findRank(idVille)
+				.orElseThrow(() -> new VilleNotFoundException("Ville non trouvée avec ID : " + idVille));
+	}
+
+	/**
+	 * Looks up many cities at once, by ID or by department and commune code.
+	 * The distinct IDs, then the distinct pairs of codes, are resolved with
+	 * {@code IN} queries of at most {@link #BATCH_CHUNK_SIZE} values, instead of
+	 * one query per key.
+	 *
+	 * @param keys The keys of the cities, bounded by the server.
+	 * @return The result of each key, in the order of the keys, flagged as not
+	 *         found when no city matches it.
+	 * @throws IllegalArgumentException if there are too many keys, or if a key
+	 *                                  has neither an ID nor both codes.
+	 */
 	@Transactional(readOnly = true)
-	public List<Ville> findByDepartement(Departement departement) {
-		return villeRepository.findByDepartement(departement);
+	public List<VilleBatchResultDto> batchGet(List<VilleBatchKey> keys) {
+		if (keys.size() > maxBatchKeys) {
+			throw new IllegalArgumentException(
+					"Le lot ne peut pas contenir plus de " + maxBatchKeys + " clés, " + keys.size() + " reçues.");
+		}
+		Set<Long> ids = new LinkedHashSet<>();
+		Set<List<String>> codes = new LinkedHashSet<>();
+		for (VilleBatchKey key : keys) {
+			if (key == null || (key.id() == null && (key.codeDepartement() == null || key.codeCommune() == null))) {
+				throw new IllegalArgumentException(
+						"Chaque clé doit contenir un ID, ou un code de département et un code de commune.");
+			}
+			if (key.id() != null) {
+				ids.add(key.id());
+			} else {
+				codes.add(List.of(key.codeDepartement(), key.codeCommune()));
+			}
+		}
+
+		Map<Long, VilleResumeDto> byId = new HashMap<>();
+		for (List<Long> chunk : chunks(ids)) {
+			villeRepository.findResumesByIdIn(chunk).forEach(ville -> byId.put(ville.id(), ville));
+		}
+		Map<List<String>, VilleResumeDto> byCodes = new HashMap<>();
+		for (List<List<String>> chunk : chunks(codes)) {
+			Set<String> codesDepartement = new HashSet<>();
+			Set<String> codesCommune = new HashSet<>();
+			chunk.forEach(pair -> {
+				codesDepartement.add(pair.get(0));
+				codesCommune.add(pair.get(1));
+			});
+			for (VilleResumeDto ville : villeRepository
+					.findResumesByDepartementCodeInAndCodeCommuneIn(codesDepartement, codesCommune)) {
+				List<String> pair = List.of(ville.codeDepartement(), ville.codeCommune());
+				// The query matches every combination of the codes, not only the requested pairs
+				if (codes.contains(pair)) {
+					byCodes.putIfAbsent(pair, ville);
+				}
+			}
+		}
+
+		return keys.stream().map(key -> {
+			VilleResumeDto ville = key.id() != null ? byId.get(key.id())
+					: byCodes.get(List.of(key.codeDepartement(), key.codeCommune()));
+			return new VilleBatchResultDto(key, ville != null, ville);
+		}).toList();
+	}
+
+	/**
+	 * Splits distinct values into lists of at most {@link #BATCH_CHUNK_SIZE}
+	 * values.
+	 *
+	 * @param <T>    the type of the values
+	 * @param values the values
+	 * @return the chunks, in order
+	 */
+	private static <T> List<List<T>> chunks(Collection<T> values) {
+		List<T> all = List.copyOf(values);
+		List<List<T>> chunks = new ArrayList<>();
+		for (int from = 0; from < all.size(); from += BATCH_CHUNK_SIZE) {
+			chunks.add(all.subList(from, Math.min(from + BATCH_CHUNK_SIZE, all.size())));
+		}
+		return chunks;
+	}
+
+	/**
+	 * Copies the indexed fields of a city.
+	 *
+	 * @param ville the city
+	 * @return its snapshot
+	 */
+	private VilleSnapshot toSnapshot(Ville ville) {
+		Departement departement = ville.getDepartement();
+		String codeRegion = departement != null && departement.getRegion() != null
+				? departement.getRegion().getCode()
+				: null;
+		String codeDepartement = departement != null ? departement.getCode() : null;
+		return new VilleSnapshot(ville.getId(), ville.getNom(), ville.getNbHabitants(), ville.getCodeCommune(),
+				ville.getCodeArrondissement(), ville.getCodeCanton(), codeDepartement, codeRegion);
 	}
 }
@@ -0,0 +1,102 @@
+package fr.diginamic.hello.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.itextpdf.text.DocumentException;
+
+import fr.diginamic.hello.entities.Ville;
+import fr.diginamic.hello.repositories.VilleRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * Writes large lists of cities as a JSON array, one element at a time, while
+ * they are read from the database. Neither the list nor its JSON form is ever
+ * held in memory: each city is serialized as soon as it is read, then detached
+ * from the persistence context, so the memory used does not grow with the
+ * number of cities. The cities of a department can also be written as a PDF
+ * report, in the same way.
+ */
+@Service
+public class VilleStreamingService {
+
+	@Autowired
+	private VilleRepository villeRepository;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private PdfGenerationService pdfGenerationService;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	/**
+	 * Writes the cities of some departments, or all cities, as a JSON array.
+	 *
+	 * @param codesDepartement the codes of the departments, or null or empty for
+	 *                         all cities
+	 * @param outputStream     the output stream to write the JSON to; it is left
+	 *                         open
+	 * @return the number of cities written
+	 * @throws IOException if an I/O error occurs writing to the output stream
+	 */
+	@Transactional(readOnly = true)
+	public long writeVilles(Collection<String> codesDepartement, OutputStream outputStream) throws IOException {
+		// The generator buffers its output, so a flush per city is not needed
+		ObjectWriter writer = objectMapper.writerFor(Ville.class)
+				.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+		long count = 0;
+		try (Stream<Ville> villes = codesDepartement == null || codesDepartement.isEmpty()
+				? villeRepository.streamAll()
+				: villeRepository.streamByDepartementCodes(codesDepartement);
+				JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			generator.writeStartArray();
+			Iterator<Ville> iterator = villes.iterator();
+			while (iterator.hasNext()) {
+				Ville ville = iterator.next();
+				writer.writeValue(generator, ville);
+				entityManager.detach(ville);
+				count++;
+			}
+			generator.writeEndArray();
+		}
+		return count;
+	}
+
+	/**
+	 * Writes the cities of a department, by name, as a PDF report.
+	 *
+	 * @param codeDepartement the code of the department
+	 * @param titlePDF        the title of the report
+	 * @param headers         the headers of the name and population columns
+	 * @param outputStream    the output stream to write the PDF to
+	 * @throws DocumentException if the document cannot be built
+	 * @throws IOException       if an I/O error occurs writing to the output
+	 *                           stream
+	 */
+	@Transactional(readOnly = true)
+	public void writeVillesPdf(String codeDepartement, String titlePDF, String[] headers, OutputStream outputStream)
+			throws DocumentException, IOException {
+		try (Stream<Ville> villes = villeRepository.streamByDepartementCodes(List.of(codeDepartement))) {
+			// Only loaded columns are rendered, so each city is detached as soon as read
+			pdfGenerationService.generatePDFReport(titlePDF, headers, villes.peek(entityManager::detach).iterator(),
+					outputStream);
+		}
+	}
+}
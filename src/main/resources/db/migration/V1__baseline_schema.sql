@@ -0,0 +1,33 @@
+-- Baseline schema, as previously generated by Hibernate from the entities.
+-- Databases created before migrations were introduced are baselined at this
+-- version (spring.flyway.baseline-on-migrate) and skip this script.
+
+CREATE TABLE region (
+	id BIGINT NOT NULL AUTO_INCREMENT,
+	code VARCHAR(10) NOT NULL,
+	nom VARCHAR(100) NOT NULL,
+	PRIMARY KEY (id)
+);
+
+CREATE TABLE departement (
+	id INTEGER NOT NULL AUTO_INCREMENT,
+	code VARCHAR(10) NOT NULL,
+	region_id BIGINT,
+	PRIMARY KEY (id),
+	CONSTRAINT fk_departement_region FOREIGN KEY (region_id) REFERENCES region (id)
+);
+
+CREATE TABLE ville (
+	id BIGINT NOT NULL AUTO_INCREMENT,
+	nom VARCHAR(100) NOT NULL,
+	nb_habitants BIGINT NOT NULL,
+	code_arrondissement VARCHAR(255),
+	code_canton VARCHAR(255),
+	code_commune VARCHAR(255),
+	population_municipale BIGINT NOT NULL,
+	population_comptee_a_part BIGINT NOT NULL,
+	population_totale BIGINT NOT NULL,
+	departement_id INTEGER,
+	PRIMARY KEY (id),
+	CONSTRAINT fk_ville_departement FOREIGN KEY (departement_id) REFERENCES departement (id)
+);
@@ -0,0 +1,18 @@
+-- Indexes matching the query shapes of the repositories.
+
+-- findByNom, existsByNom, existsByNomAndDepartement, findByNomStartingWith
+CREATE INDEX idx_ville_nom_departement ON ville (nom, departement_id);
+
+-- findByNbHabitantsGreaterThan, findByNbHabitantsBetween, findByOrderByNbHabitantsDesc
+-- (descending, as every listing is ordered by decreasing population)
+CREATE INDEX idx_ville_nb_habitants ON ville (nb_habitants DESC);
+
+-- findByDepartement, population filters and top-N ordering within a department
+CREATE INDEX idx_ville_departement_nb_habitants ON ville (departement_id, nb_habitants DESC);
+
+-- findByCode, existsByCode
+CREATE UNIQUE INDEX uk_departement_code ON departement (code);
+CREATE UNIQUE INDEX uk_region_code ON region (code);
+
+-- findByNom, existsByNom
+CREATE INDEX idx_region_nom ON region (nom);
@@ -0,0 +1,6 @@
+-- Keyset pagination by decreasing population reads the cities in
+-- (nb_habitants DESC, id) order, right after the cursor. The tie-breaker is
+-- part of the index so that no page has to be sorted after being read.
+DROP INDEX idx_ville_nb_habitants ON ville;
+
+CREATE INDEX idx_ville_nb_habitants_id ON ville (nb_habitants DESC, id);
@@ -0,0 +1,48 @@
+-- Population rollups per department and per region, so that aggregate
+-- questions are answered from one row instead of summing every city.
+-- Rebuilt set-based after each import, and updated incrementally by every
+-- city creation, modification and deletion.
+
+CREATE TABLE departement_stats (
+	departement_id INTEGER NOT NULL,
+	nb_communes BIGINT NOT NULL,
+	nb_habitants BIGINT NOT NULL,
+	population_municipale BIGINT NOT NULL,
+	population_comptee_a_part BIGINT NOT NULL,
+	population_totale BIGINT NOT NULL,
+	min_habitants BIGINT,
+	max_habitants BIGINT,
+	PRIMARY KEY (departement_id),
+	CONSTRAINT fk_departement_stats_departement FOREIGN KEY (departement_id) REFERENCES departement (id)
+		ON DELETE CASCADE
+);
+
+CREATE TABLE region_stats (
+	region_id BIGINT NOT NULL,
+	nb_communes BIGINT NOT NULL,
+	nb_habitants BIGINT NOT NULL,
+	population_municipale BIGINT NOT NULL,
+	population_comptee_a_part BIGINT NOT NULL,
+	population_totale BIGINT NOT NULL,
+	min_habitants BIGINT,
+	max_habitants BIGINT,
+	PRIMARY KEY (region_id),
+	CONSTRAINT fk_region_stats_region FOREIGN KEY (region_id) REFERENCES region (id) ON DELETE CASCADE
+);
+
+INSERT INTO departement_stats (departement_id, nb_communes, nb_habitants, population_municipale,
+		population_comptee_a_part, population_totale, min_habitants, max_habitants)
+	SELECT d.id, COUNT(v.id), COALESCE(SUM(v.nb_habitants), 0), COALESCE(SUM(v.population_municipale), 0),
+		COALESCE(SUM(v.population_comptee_a_part), 0), COALESCE(SUM(v.population_totale), 0),
+		MIN(v.nb_habitants), MAX(v.nb_habitants)
+	FROM departement d LEFT JOIN ville v ON v.departement_id = d.id
+	GROUP BY d.id;
+
+INSERT INTO region_stats (region_id, nb_communes, nb_habitants, population_municipale,
+		population_comptee_a_part, population_totale, min_habitants, max_habitants)
+	SELECT r.id, COALESCE(SUM(s.nb_communes), 0), COALESCE(SUM(s.nb_habitants), 0),
+		COALESCE(SUM(s.population_municipale), 0), COALESCE(SUM(s.population_comptee_a_part), 0),
+		COALESCE(SUM(s.population_totale), 0), MIN(s.min_habitants), MAX(s.max_habitants)
+	FROM region r LEFT JOIN departement d ON d.region_id = r.id
+		LEFT JOIN departement_stats s ON s.departement_id = d.id
+	GROUP BY r.id;
@@ -0,0 +1,4 @@
+-- Batch lookups of cities by department and commune code
+-- (findResumesByDepartementCodeInAndCodeCommuneIn): the department is found by
+-- its unique code, then its cities are seeked by commune code.
+CREATE INDEX idx_ville_departement_code_commune ON ville (departement_id, code_commune);
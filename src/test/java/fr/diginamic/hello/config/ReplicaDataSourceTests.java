@@ -0,0 +1,136 @@
+package fr.diginamic.hello.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+class ReplicaDataSourceTests {
+
+	private final SwitchableDataSource replica1 = new SwitchableDataSource(database("replica1"));
+
+	private final SwitchableDataSource replica2 = new SwitchableDataSource(database("replica2"));
+
+	private final DataSource primary = database("primary");
+
+	private ReplicaDataSource replicas;
+
+	private JdbcTemplate jdbcTemplate;
+
+	private TransactionTemplate readWrite;
+
+	private TransactionTemplate readOnly;
+
+	@BeforeEach
+	void setUp() {
+		Map<String, DataSource> byName = new LinkedHashMap<>();
+		byName.put("replica1", replica1);
+		byName.put("replica2", replica2);
+		replicas = new ReplicaDataSource(primary, byName, Duration.ofHours(1));
+
+		LazyConnectionDataSourceProxy routing = new LazyConnectionDataSourceProxy(primary);
+		routing.setReadOnlyDataSource(replicas);
+		jdbcTemplate = new JdbcTemplate(routing);
+		DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(routing);
+		readWrite = new TransactionTemplate(transactionManager);
+		readOnly = new TransactionTemplate(transactionManager);
+		readOnly.setReadOnly(true);
+	}
+
+	@AfterEach
+	void tearDown() {
+		replicas.close();
+	}
+
+	@Test
+	void readOnlyTransactionsAreSpreadOverTheReplicas() {
+		assertThat(readOnlyDatabaseName()).isEqualTo("REPLICA1");
+		assertThat(readOnlyDatabaseName()).isEqualTo("REPLICA2");
+		assertThat(readOnlyDatabaseName()).isEqualTo("REPLICA1");
+
+		assertThat(readWriteDatabaseName()).isEqualTo("PRIMARY");
+		assertThat(databaseName()).isEqualTo("PRIMARY");
+	}
+
+	@Test
+	void failedReplicasAreSetAsideThenPutBackOnceHealthy() {
+		replica1.down = true;
+
+		assertThat(readOnlyDatabaseName()).isEqualTo("REPLICA2");
+		assertThat(readOnlyDatabaseName()).isEqualTo("REPLICA2");
+		assertThat(replicas.getHealthyReplicas()).containsExactly("replica2");
+
+		replica1.down = false;
+		replicas.checkHealth();
+
+		assertThat(replicas.getHealthyReplicas()).containsExactly("replica1", "replica2");
+	}
+
+	@Test
+	void primaryServesReadsWhenNoReplicaIsAvailable() {
+		replica1.down = true;
+		replica2.down = true;
+
+		assertThat(readOnlyDatabaseName()).isEqualTo("PRIMARY");
+
+		replicas.checkHealth();
+		assertThat(replicas.getHealthyReplicas()).isEmpty();
+		replica2.down = false;
+		replicas.checkHealth();
+		assertThat(readOnlyDatabaseName()).isEqualTo("REPLICA2");
+	}
+
+	private String readOnlyDatabaseName() {
+		return readOnly.execute(status -> databaseName());
+	}
+
+	private String readWriteDatabaseName() {
+		return readWrite.execute(status -> databaseName());
+	}
+
+	private String databaseName() {
+		return jdbcTemplate.queryForObject("select database()", String.class);
+	}
+
+	private static DataSource database(String name) {
+		JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+		return dataSource;
+	}
+
+	/**
+	 * Data source which can be made to refuse connections, like a replica which
+	 * is down.
+	 */
+	private static final class SwitchableDataSource extends DelegatingDataSource {
+
+		private volatile boolean down;
+
+		SwitchableDataSource(DataSource target) {
+			super(target);
+		}
+
+		@Override
+		public Connection getConnection() throws SQLException {
+			if (down) {
+				throw new SQLException("Connection refused");
+			}
+			return super.getConnection();
+		}
+	}
+}
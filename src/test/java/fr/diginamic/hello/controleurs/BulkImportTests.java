@@ -0,0 +1,199 @@
+package fr.diginamic.hello.controleurs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.diginamic.hello.HelloApplication;
+import fr.diginamic.hello.TraitementFichiersApplication;
+import fr.diginamic.hello.dto.BulkRowResultDto;
+import fr.diginamic.hello.dto.BulkRowResultDto.Status;
+import fr.diginamic.hello.dto.PopulationStatsDto;
+import fr.diginamic.hello.dto.VilleBulkRow;
+import fr.diginamic.hello.entities.Departement;
+import fr.diginamic.hello.entities.Region;
+import fr.diginamic.hello.entities.Ville;
+import fr.diginamic.hello.index.VilleSnapshot;
+import fr.diginamic.hello.repositories.DepartementRepository;
+import fr.diginamic.hello.repositories.RegionRepository;
+import fr.diginamic.hello.repositories.VilleRepository;
+import fr.diginamic.hello.services.BulkImportService;
+import fr.diginamic.hello.services.PopulationStatsService;
+import fr.diginamic.hello.services.VilleService;
+
+/**
+ * Sends NDJSON bodies to the bulk import endpoints, with chunks of two lines,
+ * and checks the outcome reported for each line as well as what has been
+ * persisted.
+ */
+@SpringBootTest(classes = HelloApplication.class, properties = "bulk.chunk-size=2")
+@AutoConfigureMockMvc
+class BulkImportTests {
+
+	@MockBean
+	private TraitementFichiersApplication traitementFichiersApplication;
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private VilleRepository villeRepository;
+
+	@Autowired
+	private DepartementRepository departementRepository;
+
+	@Autowired
+	private RegionRepository regionRepository;
+
+	@Autowired
+	private PopulationStatsService populationStatsService;
+
+	@Autowired
+	private VilleService villeService;
+
+	@Autowired
+	private BulkImportService bulkImportService;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@BeforeEach
+	void setUp() {
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			villeRepository.deleteAllInBatch();
+			departementRepository.deleteAllInBatch();
+			regionRepository.deleteAllInBatch();
+			Region occitanie = regionRepository.save(new Region("76", "Occitanie"));
+			Departement herault = departementRepository.save(new Departement("34", occitanie));
+			villeRepository.save(new Ville("Montpellier", 300000, "3", "99", "172", 300000, 0, 300000, herault));
+		});
+		populationStatsService.refreshAll();
+	}
+
+	@Test
+	void villesAreCreatedOrUpdatedLineByLine() throws Exception {
+		List<BulkRowResultDto> results = importLines("/villes/bulk", """
+				{"codeDepartement": "34", "codeCommune": "172", "nom": "Montpellier", "nbHabitants": 302000}
+				{"codeDepartement": "34", "codeCommune": "301", "nom": "Sète", "nbHabitants": 44000}
+
+				{"codeDepartement": "34", "codeCommune": "301", "nom": "Sète", "nbHabitants": 45000}
+				{"codeDepartement": "99", "codeCommune": "001", "nom": "Nulle part", "nbHabitants": 10}
+				{"codeDepartement": "34", "codeCommune": "032", "nom": "B", "nbHabitants": 0}
+				{"codeDepartement": "34", "codeCommune":
+				{"codeDepartement": "34", "codeCommune": "032", "nom": "Béziers", "nbHabitants": 78000}
+				""");
+
+		assertThat(results).extracting(BulkRowResultDto::line).containsExactly(1L, 2L, 4L, 5L, 6L, 7L, 8L);
+		assertThat(results).extracting(BulkRowResultDto::status).containsExactly(Status.UPDATED, Status.CREATED,
+				Status.UPDATED, Status.REJECTED, Status.REJECTED, Status.REJECTED, Status.CREATED);
+		assertThat(results.get(2).id()).isEqualTo(results.get(1).id());
+		assertThat(results.get(3).message()).isEqualTo("Le département avec le code 99 n'existe pas.");
+		assertThat(results.get(4).message()).contains("Le nom doit contenir de 2 à 100 caractères",
+				"Le nombre d'habitants doit être au moins 1");
+		assertThat(results.get(5).message()).startsWith("JSON invalide");
+
+		assertThat(villeRepository.findAll()).extracting(Ville::getNom, Ville::getNbHabitants)
+				.containsExactlyInAnyOrder(tuple("Montpellier", 302000L), tuple("Sète", 45000L),
+						tuple("Béziers", 78000L));
+		assertThat(populationStatsService.getDepartementStats("34"))
+				.isEqualTo(new PopulationStatsDto("34", 3, 425000, 300000, 0, 300000, 45000L, 302000L));
+		assertThat(populationStatsService.getRegionStats("76"))
+				.isEqualTo(new PopulationStatsDto("76", 3, 425000, 300000, 0, 300000, 45000L, 302000L));
+		// The in-memory indexes are rebuilt after each chunk
+		assertThat(villeService.autocomplete("bez", 10)).extracting(VilleSnapshot::nbHabitants)
+				.containsExactly(78000L);
+		assertThat(villeService.getRank((int) (long) results.get(1).id()).rangNational()).isEqualTo(3);
+		assertThat(villeService.getRank((int) (long) results.get(0).id()).nbHabitants()).isEqualTo(302000);
+	}
+
+	@Test
+	void departementsAreCreatedOrMovedToTheirRegion() throws Exception {
+		List<BulkRowResultDto> results = importLines("/departements/bulk", """
+				{"code": "30", "codeRegion": "76"}
+				{"code": "34"}
+				{"code": "11", "codeRegion": "00"}
+				{"code": ""}
+				""");
+
+		assertThat(results).extracting(BulkRowResultDto::status).containsExactly(Status.CREATED, Status.UPDATED,
+				Status.REJECTED, Status.REJECTED);
+		assertThat(results.get(2).message()).isEqualTo("La région avec le code 00 n'existe pas.");
+		assertThat(departementRepository.findCodesByRegionCode("76")).containsExactlyInAnyOrder("30", "34");
+		assertThat(departementRepository.existsByCode("11")).isFalse();
+	}
+
+	@Test
+	void regionsAreCreatedOrRenamed() throws Exception {
+		List<BulkRowResultDto> results = importLines("/regions/bulk", """
+				{"code": "76", "nom": "Occitanie-Pyrénées-Méditerranée"}
+				{"code": "84", "nom": "Auvergne-Rhône-Alpes"}
+				{"code": "93"}
+				""");
+
+		assertThat(results).extracting(BulkRowResultDto::status).containsExactly(Status.UPDATED, Status.CREATED,
+				Status.REJECTED);
+		assertThat(results.get(2).message()).isEqualTo("Le nom de la région est obligatoire");
+		assertThat(regionRepository.findByCode("76")).get().extracting(Region::getNom)
+				.isEqualTo("Occitanie-Pyrénées-Méditerranée");
+		assertThat(regionRepository.existsByCode("84")).isTrue();
+	}
+
+	/**
+	 * Sends an NDJSON body to a bulk import endpoint.
+	 *
+	 * @param path  the path of the endpoint
+	 * @param lines the body
+	 * @return the outcome of each line, as reported
+	 * @throws Exception if the request fails
+	 */
+	@Test
+	void rejectedLinesAreAnsweredOneChunkAtATime() throws Exception {
+		List<String> flushed = new ArrayList<>();
+		ByteArrayOutputStream output = new ByteArrayOutputStream() {
+			@Override
+			public void flush() {
+				flushed.add(toString(StandardCharsets.UTF_8));
+			}
+		};
+		String lines = "{\n".repeat(5);
+
+		long count = bulkImportService.importLines(new ByteArrayInputStream(lines.getBytes(StandardCharsets.UTF_8)),
+				output, VilleBulkRow.class, chunk -> List.of());
+
+		assertThat(count).isEqualTo(5);
+		// Two lines per chunk, then the last one
+		assertThat(flushed).extracting(written -> written.lines().count()).containsExactly(2L, 4L, 5L);
+	}
+
+	private List<BulkRowResultDto> importLines(String path, String lines) throws Exception {
+		String body = mockMvc.perform(post(path).contentType(BulkImportService.NDJSON).content(lines))
+				.andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+		List<BulkRowResultDto> results = new ArrayList<>();
+		for (String line : body.split("\n")) {
+			results.add(objectMapper.readValue(line, BulkRowResultDto.class));
+		}
+		return results;
+	}
+}
@@ -0,0 +1,95 @@
+package fr.diginamic.hello.controleurs;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Data source counting, through JDBC proxies, the statements executed on its
+ * connections and the rows read from their results.
+ */
+class CountingDataSource extends DelegatingDataSource {
+
+	private final AtomicLong statements = new AtomicLong();
+
+	private final AtomicLong rows = new AtomicLong();
+
+	CountingDataSource(DataSource target) {
+		super(target);
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return proxy(Connection.class, super.getConnection());
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return proxy(Connection.class, super.getConnection(username, password));
+	}
+
+	/**
+	 * Resets both counters.
+	 */
+	void reset() {
+		statements.set(0);
+		rows.set(0);
+	}
+
+	long getStatements() {
+		return statements.get();
+	}
+
+	long getRows() {
+		return rows.get();
+	}
+
+	/**
+	 * Wraps a JDBC object: connections hand out counting statements, statements
+	 * count their executions and hand out counting result sets, which count the
+	 * rows read.
+	 */
+	private <T> T proxy(Class<T> type, T target) {
+		return type.cast(Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { type },
+				(proxy, method, args) -> {
+					Object result;
+					try {
+						result = method.invoke(target, args);
+					} catch (InvocationTargetException e) {
+						throw e.getCause();
+					}
+					if (target instanceof Connection) {
+						if (result instanceof CallableStatement statement) {
+							return proxy(CallableStatement.class, statement);
+						}
+						if (result instanceof PreparedStatement statement) {
+							return proxy(PreparedStatement.class, statement);
+						}
+						if (result instanceof Statement statement) {
+							return proxy(Statement.class, statement);
+						}
+					} else if (target instanceof Statement) {
+						if (method.getName().startsWith("execute")) {
+							statements.incrementAndGet();
+						}
+						if (result instanceof ResultSet resultSet) {
+							return proxy(ResultSet.class, resultSet);
+						}
+					} else if (target instanceof ResultSet && method.getName().equals("next")
+							&& Boolean.TRUE.equals(result)) {
+						rows.incrementAndGet();
+					}
+					return result;
+				}));
+	}
+}
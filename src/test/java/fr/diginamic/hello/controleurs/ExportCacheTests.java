@@ -0,0 +1,157 @@
+package fr.diginamic.hello.controleurs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import fr.diginamic.hello.HelloApplication;
+import fr.diginamic.hello.TraitementFichiersApplication;
+import fr.diginamic.hello.dto.VilleDto;
+import fr.diginamic.hello.entities.Departement;
+import fr.diginamic.hello.entities.Region;
+import fr.diginamic.hello.entities.Ville;
+import fr.diginamic.hello.events.DataImportedEvent;
+import fr.diginamic.hello.repositories.DepartementRepository;
+import fr.diginamic.hello.repositories.RegionRepository;
+import fr.diginamic.hello.repositories.VilleRepository;
+import fr.diginamic.hello.services.VilleService;
+
+/**
+ * Checks the conditional requests of the top N cities export: the entity tag
+ * of the first response lets the client revalidate without the export being
+ * generated again, until a city changes or a census file is imported.
+ *
+ * The cities of the export are read from the database only, instead of being
+ * completed through the external departments API.
+ */
+@SpringBootTest(classes = HelloApplication.class)
+@AutoConfigureMockMvc
+class ExportCacheTests {
+
+	private static final String EXPORT = "/villes/csv-export-top-villes";
+
+	@MockBean
+	private TraitementFichiersApplication traitementFichiersApplication;
+
+	@SpyBean
+	private VilleService villeService;
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	private VilleRepository villeRepository;
+
+	@Autowired
+	private DepartementRepository departementRepository;
+
+	@Autowired
+	private RegionRepository regionRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private Departement herault;
+
+	@BeforeEach
+	void setUp() {
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			villeRepository.deleteAllInBatch();
+			departementRepository.deleteAllInBatch();
+			regionRepository.deleteAllInBatch();
+			Region occitanie = regionRepository.save(new Region("76", "Occitanie"));
+			herault = departementRepository.save(new Departement("34", occitanie));
+			villeRepository.save(new Ville("Montpellier", 300000, "3", "99", "172", 300000, 0, 300000, herault));
+		});
+		doAnswer(invocation -> villeRepository.findByOrderByNbHabitantsDesc(invocation.<Pageable>getArgument(0))
+				.map(ville -> new VilleDto(ville.getNom(), ville.getNbHabitants(), "34")).toList())
+				.when(villeService).getTopNVillesDtos(any());
+		// A new dataset version, so that no export of a previous test is reused
+		eventPublisher.publishEvent(new DataImportedEvent(0));
+		clearInvocations(villeService);
+	}
+
+	@Test
+	void unchangedExportIsNotModified() throws Exception {
+		String etag = exportEtag();
+
+		MvcResult notModified = mockMvc.perform(get(EXPORT).param("nbVilles", "10")
+				.header(HttpHeaders.IF_NONE_MATCH, etag)).andExpect(status().isNotModified())
+				.andExpect(header().string(HttpHeaders.ETAG, etag)).andReturn();
+		assertThat(notModified.getResponse().getContentAsByteArray()).isEmpty();
+
+		mockMvc.perform(get(EXPORT).param("nbVilles", "10")).andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.ETAG, etag));
+		verify(villeService, times(1)).getTopNVillesDtos(any());
+	}
+
+	@Test
+	void cityChangeGivesANewExport() throws Exception {
+		String etag = exportEtag();
+
+		villeService.createVille(new Ville("Lunel", 400000, "1", "1", "145", 400000, 0, 400000, herault));
+
+		mockMvc.perform(get(EXPORT).param("nbVilles", "10").header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isOk()).andExpect(header().string(HttpHeaders.ETAG, not(etag)))
+				.andExpect(content().string(containsString("Lunel")));
+	}
+
+	@Test
+	void importGivesANewExport() throws Exception {
+		String etag = exportEtag();
+
+		eventPublisher.publishEvent(new DataImportedEvent(1));
+
+		mockMvc.perform(get(EXPORT).param("nbVilles", "10").header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isOk()).andExpect(header().string(HttpHeaders.ETAG, not(etag)));
+		verify(villeService, times(2)).getTopNVillesDtos(any());
+	}
+
+	@Test
+	void exportForAnotherSizeHasItsOwnEtag() throws Exception {
+		String etag = exportEtag();
+
+		mockMvc.perform(get(EXPORT).param("nbVilles", "5").header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isOk()).andExpect(header().string(HttpHeaders.ETAG, not(etag)));
+	}
+
+	/**
+	 * Requests the export of the top 10 cities without condition.
+	 *
+	 * @return the entity tag of the export
+	 */
+	private String exportEtag() throws Exception {
+		String etag = mockMvc.perform(get(EXPORT).param("nbVilles", "10")).andExpect(status().isOk())
+				.andExpect(content().string(containsString("Montpellier"))).andReturn().getResponse()
+				.getHeader(HttpHeaders.ETAG);
+		assertThat(etag).startsWith("W/\"csv-10-");
+		return etag;
+	}
+}
@@ -0,0 +1,267 @@
+package fr.diginamic.hello.controleurs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import javax.sql.DataSource;
+
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import fr.diginamic.hello.HelloApplication;
+import fr.diginamic.hello.TraitementFichiersApplication;
+import fr.diginamic.hello.entities.Departement;
+import fr.diginamic.hello.entities.Region;
+import fr.diginamic.hello.entities.Ville;
+import fr.diginamic.hello.events.ReferenceDataChangedEvent;
+import fr.diginamic.hello.repositories.DepartementRepository;
+import fr.diginamic.hello.repositories.RegionRepository;
+import fr.diginamic.hello.repositories.VilleRepository;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Runs each read endpoint against a seeded database, with every cache empty,
+ * and fails when it executes more SQL statements or reads more rows than its
+ * budget. A change raising a budget must be deliberate: an N+1 regression
+ * shows up here as an endpoint whose statement count grows with the data.
+ *
+ * Endpoints calling external services (the top-city exports) are left out.
+ */
+@SpringBootTest(classes = HelloApplication.class)
+@AutoConfigureMockMvc
+@Import(QueryBudgetTests.CountingDataSourceConfig.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class QueryBudgetTests {
+
+	private static final int REGIONS = 3;
+
+	private static final int DEPARTEMENTS_PER_REGION = 3;
+
+	private static final int VILLES_PER_DEPARTEMENT = 20;
+
+	@MockBean
+	private TraitementFichiersApplication traitementFichiersApplication;
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private RegionRepository regionRepository;
+
+	@Autowired
+	private DepartementRepository departementRepository;
+
+	@Autowired
+	private VilleRepository villeRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
+
+	private long villeId;
+
+	private int departementId;
+
+	private String departementCode;
+
+	private long regionId;
+
+	/**
+	 * Wraps the application data source so that its statements and rows are
+	 * counted.
+	 */
+	@TestConfiguration
+	static class CountingDataSourceConfig {
+
+		@Bean
+		static BeanPostProcessor countingDataSourcePostProcessor() {
+			return new BeanPostProcessor() {
+				@Override
+				public Object postProcessAfterInitialization(Object bean, String beanName) {
+					if (bean instanceof DataSource target && !(bean instanceof CountingDataSource)) {
+						return new CountingDataSource(target);
+					}
+					return bean;
+				}
+			};
+		}
+	}
+
+	/**
+	 * The most statements and rows an endpoint may cost.
+	 *
+	 * @param endpoint      the endpoint, as displayed in the test report
+	 * @param request       builds the request from the seeded data
+	 * @param maxStatements the maximum number of SQL statements executed
+	 * @param maxRows       the maximum number of rows read
+	 */
+	record Budget(String endpoint, Function<QueryBudgetTests, RequestBuilder> request, int maxStatements,
+			int maxRows) {
+
+		@Override
+		public String toString() {
+			return endpoint;
+		}
+	}
+
+	static Stream<Budget> budgets() {
+		return Stream.of(
+				new Budget("GET /villes", t -> get("/villes").param("size", "50"), 2, 52),
+				new Budget("GET /villes?slice=true", t -> get("/villes").param("slice", "true").param("size", "50"), 1,
+						51),
+				new Budget("GET /villes/count", t -> get("/villes/count"), 1, 1),
+				new Budget("GET /villes?cursor (ID)", t -> get("/villes").param("cursor", "").param("size", "50"), 1,
+						51),
+				new Budget("GET /villes?cursor (POPULATION)",
+						t -> get("/villes").param("cursor", "").param("order", "POPULATION").param("size", "50"), 1,
+						51),
+				new Budget("GET /villes/{id}", t -> get("/villes/" + t.villeId), 1, 1),
+				new Budget("GET /villes/{id}/rank", t -> get("/villes/" + t.villeId + "/rank"), 0, 0),
+				new Budget("POST /villes/batch-get",
+						t -> post("/villes/batch-get").contentType(MediaType.APPLICATION_JSON)
+								.content("[{\"id\": " + t.villeId + "}, {\"id\": -1}, {\"codeDepartement\": \""
+										+ t.departementCode + "\", \"codeCommune\": \"" + (REGIONS - 1)
+										+ (DEPARTEMENTS_PER_REGION - 1) + "0\"}]"),
+						2, 2),
+				new Budget("GET /villes/departement/{id}/top-villes",
+						t -> get("/villes/departement/" + t.departementId + "/top-villes"), 1, 1),
+				new Budget("GET /villes/departement/{id}/population",
+						t -> get("/villes/departement/" + t.departementId + "/population")
+								.param("minPopulation", "0").param("maxPopulation", "1000000"),
+						2, 21),
+				new Budget("GET /villes/autocomplete", t -> get("/villes/autocomplete").param("prefix", "ville"), 0,
+						0),
+				new Budget("GET /villes/fuzzy", t -> get("/villes/fuzzy").param("nom", "vile 1"), 0, 0),
+				new Budget("GET /villes/search", t -> get("/villes/search").param("prefix", "Ville"), 1, 101),
+				new Budget("GET /villes/search/by-min-population",
+						t -> get("/villes/search/by-min-population").param("minPopulation", "1000"), 1, 101),
+				new Budget("GET /villes/search/by-population-range",
+						t -> get("/villes/search/by-population-range").param("minPopulation", "1000")
+								.param("maxPopulation", "2000"),
+						1, 101),
+				new Budget("GET /villes/search/by-departement-and-min-population",
+						t -> get("/villes/search/by-departement-and-min-population")
+								.param("departementCode", t.departementCode).param("minPopulation", "0"),
+						2, 21),
+				new Budget("GET /villes/search/by-departement-and-population-range",
+						t -> get("/villes/search/by-departement-and-population-range")
+								.param("departementCode", t.departementCode).param("minPopulation", "0")
+								.param("maxPopulation", "1000000"),
+						2, 21),
+				new Budget("GET /villes/search/top-n-by-departement",
+						t -> get("/villes/search/top-n-by-departement").param("departementCode", t.departementCode)
+								.param("n", "5"),
+						1, 1),
+				new Budget("GET /villes/query",
+						t -> get("/villes/query").param("departements", t.departementCode).param("region", "R2")
+								.param("minPopulation", "1000").param("prefix", "Ville").param("limit", "10"),
+						1, 10),
+				new Budget("GET /villes/query (bitmaps)",
+						t -> get("/villes/query").param("departements", t.departementCode).param("region", "R2")
+								.param("minPopulation", "1000").param("limit", "10"),
+						0, 0),
+				new Budget("GET /villes/stats/quantiles", t -> get("/villes/stats/quantiles"), 0, 0),
+				new Budget("GET /villes/stream", t -> get("/villes/stream").param("departements", t.departementCode),
+						2, 21),
+				new Budget("GET /departements", t -> get("/departements"), 1, 9),
+				new Budget("GET /departements/{id}", t -> get("/departements/" + t.departementId), 1, 1),
+				new Budget("GET /departements/{code}/villes/pdf-export",
+						t -> get("/departements/" + t.departementCode + "/villes/pdf-export"), 2, 21),
+				new Budget("GET /departements/{code}/stats", t -> get("/departements/" + t.departementCode + "/stats"),
+						1, 1),
+				new Budget("GET /departements/{code}/stats/quantiles",
+						t -> get("/departements/" + t.departementCode + "/stats/quantiles"), 1, 1),
+				new Budget("GET /regions", t -> get("/regions"), 2, 12),
+				new Budget("GET /regions/{code}/stats", t -> get("/regions/R2/stats"), 1, 1),
+				new Budget("GET /regions/{code}/stats/quantiles", t -> get("/regions/R2/stats/quantiles"), 1, 3),
+				new Budget("GET /regions/{id}", t -> get("/regions/" + t.regionId), 2, 4));
+	}
+
+	@BeforeAll
+	void seed() {
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			villeRepository.deleteAllInBatch();
+			departementRepository.deleteAllInBatch();
+			regionRepository.deleteAllInBatch();
+			for (int r = 0; r < REGIONS; r++) {
+				Region region = regionRepository.save(new Region("R" + r, "Région " + r));
+				regionId = region.getId();
+				for (int d = 0; d < DEPARTEMENTS_PER_REGION; d++) {
+					Departement departement = departementRepository.save(new Departement("D" + r + d, region));
+					departementId = departement.getId();
+					departementCode = departement.getCode();
+					for (int v = 0; v < VILLES_PER_DEPARTEMENT; v++) {
+						Ville ville = villeRepository.save(new Ville("Ville " + r + d + v, 1000 + 37 * v, "1", "1",
+								"" + r + d + v, 1, 1, 1, departement));
+						villeId = ville.getId();
+					}
+				}
+			}
+		});
+	}
+
+	@ParameterizedTest(name = "{0}")
+	@MethodSource("budgets")
+	void endpointStaysWithinItsBudget(Budget budget) throws Exception {
+		clearCaches();
+		CountingDataSource counter = (CountingDataSource) dataSource;
+		counter.reset();
+
+		MvcResult result = mockMvc.perform(budget.request().apply(this)).andReturn();
+		if (result.getRequest().isAsyncStarted()) {
+			result = mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk()).andReturn();
+		}
+
+		assertThat(result.getResponse().getStatus()).as(budget.endpoint()).isEqualTo(200);
+		assertThat(counter.getStatements()).as("statements of %s", budget.endpoint())
+				.isLessThanOrEqualTo(budget.maxStatements());
+		assertThat(counter.getRows()).as("rows of %s", budget.endpoint()).isLessThanOrEqualTo(budget.maxRows());
+	}
+
+	/**
+	 * Empties the search caches, the second-level cache and the serialized
+	 * reference data, so that each endpoint is measured cold.
+	 */
+	private void clearCaches() {
+		cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+		// Unlike the JPA eviction, also empties the collection regions
+		entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+		eventPublisher.publishEvent(new ReferenceDataChangedEvent("QueryBudgetTests"));
+	}
+}
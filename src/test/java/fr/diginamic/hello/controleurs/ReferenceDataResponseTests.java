@@ -0,0 +1,136 @@
+package fr.diginamic.hello.controleurs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import fr.diginamic.hello.HelloApplication;
+import fr.diginamic.hello.TraitementFichiersApplication;
+import fr.diginamic.hello.entities.Departement;
+import fr.diginamic.hello.entities.Region;
+import fr.diginamic.hello.events.ReferenceDataChangedEvent;
+import fr.diginamic.hello.repositories.DepartementRepository;
+import fr.diginamic.hello.repositories.RegionRepository;
+import fr.diginamic.hello.repositories.VilleRepository;
+import fr.diginamic.hello.services.DepartementService;
+import fr.diginamic.hello.services.ReferenceDataResponseCache;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Checks that the pre-serialized region and department listings are rebuilt
+ * after every reference data change, and that the gzipped body is only sent to
+ * clients accepting it.
+ */
+@SpringBootTest(classes = HelloApplication.class)
+@AutoConfigureMockMvc
+class ReferenceDataResponseTests {
+
+	@MockBean
+	private TraitementFichiersApplication traitementFichiersApplication;
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private DepartementService departementService;
+
+	@Autowired
+	private ReferenceDataResponseCache referenceDataResponseCache;
+
+	@Autowired
+	private VilleRepository villeRepository;
+
+	@Autowired
+	private DepartementRepository departementRepository;
+
+	@Autowired
+	private RegionRepository regionRepository;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private Region region;
+
+	@BeforeEach
+	void setUp() {
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			villeRepository.deleteAllInBatch();
+			departementRepository.deleteAllInBatch();
+			regionRepository.deleteAllInBatch();
+			region = regionRepository.save(new Region("76", "Occitanie"));
+			departementRepository.save(new Departement("34", region));
+		});
+		entityManagerFactory.getCache().evictAll();
+		referenceDataResponseCache.onReferenceDataChanged(new ReferenceDataChangedEvent("ReferenceDataResponseTests"));
+	}
+
+	@Test
+	void listingsAreRebuiltAfterADepartementChange() throws Exception {
+		mockMvc.perform(get("/departements")).andExpect(content().string(not(containsString("\"30\""))));
+		mockMvc.perform(get("/regions")).andExpect(content().string(not(containsString("\"30\""))));
+
+		departementService.createDepartement(new Departement("30", region));
+
+		mockMvc.perform(get("/departements"))
+				.andExpect(content().string(containsString("\"code\":\"30\"")));
+		mockMvc.perform(get("/regions"))
+				.andExpect(content().string(containsString("\"code\":\"30\"")));
+	}
+
+	@Test
+	void gzipIsOnlySentToClientsAcceptingIt() throws Exception {
+		String json = mockMvc.perform(get("/regions")).andExpect(status().isOk())
+				.andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+				.andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)).andReturn().getResponse()
+				.getContentAsString(StandardCharsets.UTF_8);
+
+		byte[] gzipped = mockMvc.perform(get("/regions").header(HttpHeaders.ACCEPT_ENCODING, "br, gzip;q=0.5"))
+				.andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+				.andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)).andReturn().getResponse()
+				.getContentAsByteArray();
+		try (GZIPInputStream gunzip = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+			assertThat(new String(gunzip.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(json);
+		}
+
+		mockMvc.perform(get("/regions").header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0, deflate"))
+				.andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING));
+		mockMvc.perform(get("/regions").header(HttpHeaders.ACCEPT_ENCODING, "*;q=0.1"))
+				.andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"));
+		mockMvc.perform(get("/regions").header(HttpHeaders.ACCEPT_ENCODING, "*, gzip;q=0"))
+				.andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING));
+	}
+
+	@Test
+	void emptyListingsAreReturnedAsEmptyArrays() throws Exception {
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			departementRepository.deleteAllInBatch();
+			regionRepository.deleteAllInBatch();
+		});
+		referenceDataResponseCache.onReferenceDataChanged(new ReferenceDataChangedEvent("ReferenceDataResponseTests"));
+
+		mockMvc.perform(get("/regions")).andExpect(status().isOk()).andExpect(content().json("[]"));
+		mockMvc.perform(get("/departements")).andExpect(status().isOk()).andExpect(content().json("[]"));
+	}
+}
@@ -0,0 +1,208 @@
+package fr.diginamic.hello.controleurs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.diginamic.hello.HelloApplication;
+import fr.diginamic.hello.TraitementFichiersApplication;
+import fr.diginamic.hello.config.CacheConfig;
+import fr.diginamic.hello.dto.CacheStatsDto;
+import fr.diginamic.hello.entities.Departement;
+import fr.diginamic.hello.entities.Region;
+import fr.diginamic.hello.entities.Ville;
+import fr.diginamic.hello.events.DataImportedEvent;
+import fr.diginamic.hello.repositories.DepartementRepository;
+import fr.diginamic.hello.repositories.RegionRepository;
+import fr.diginamic.hello.repositories.VilleRepository;
+import fr.diginamic.hello.services.VilleService;
+
+/**
+ * Checks that every way of changing the cities clears the cached search
+ * results and number of cities, so that the next request reads fresh data, and
+ * that the cache statistics endpoint counts the hits and misses.
+ */
+@SpringBootTest(classes = HelloApplication.class)
+@AutoConfigureMockMvc
+class SearchCacheTests {
+
+	@MockBean
+	private TraitementFichiersApplication traitementFichiersApplication;
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private VilleService villeService;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	private VilleRepository villeRepository;
+
+	@Autowired
+	private DepartementRepository departementRepository;
+
+	@Autowired
+	private RegionRepository regionRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private Departement herault;
+
+	private Ville montpellier;
+
+	@BeforeEach
+	void setUp() {
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			villeRepository.deleteAllInBatch();
+			departementRepository.deleteAllInBatch();
+			regionRepository.deleteAllInBatch();
+			Region occitanie = regionRepository.save(new Region("76", "Occitanie"));
+			herault = departementRepository.save(new Departement("34", occitanie));
+			montpellier = villeRepository
+					.save(new Ville("Montpellier", 300000, "3", "99", "172", 300000, 0, 300000, herault));
+		});
+		for (String name : CacheConfig.VILLE_SEARCH_CACHES) {
+			cacheManager.getCache(name).clear();
+		}
+	}
+
+	@Test
+	void createdVilleIsFoundByTheNextSearch() throws Exception {
+		searchByPrefix("M").andExpect(status().isOk()).andExpect(content().string(not(containsString("Mauguio"))));
+		count().andExpect(content().string("1"));
+
+		villeService.createVille(new Ville("Mauguio", 17000, "1", "1", "154", 17000, 0, 17000, herault));
+
+		searchByPrefix("M").andExpect(status().isOk()).andExpect(content().string(containsString("Mauguio")));
+		count().andExpect(content().string("2"));
+	}
+
+	@Test
+	void modifiedVilleLeavesTheSearchItNoLongerMatches() throws Exception {
+		searchByMinPopulation(100000).andExpect(status().isOk())
+				.andExpect(content().string(containsString("Montpellier")));
+
+		villeService.modifierVille((int) montpellier.getId(),
+				new Ville("Montpellier", 50000, "3", "99", "172", 50000, 0, 50000, herault));
+
+		searchByMinPopulation(100000).andExpect(status().isNotFound());
+	}
+
+	@Test
+	void deletedVilleIsNoLongerFound() throws Exception {
+		searchByPrefix("Mont").andExpect(status().isOk()).andExpect(content().string(containsString("Montpellier")));
+		count().andExpect(content().string("1"));
+
+		villeService.supprimerVille((int) montpellier.getId());
+
+		searchByPrefix("Mont").andExpect(status().isNotFound());
+		count().andExpect(content().string("0"));
+	}
+
+	@Test
+	void importedVillesAreFoundOnceTheImportIsAnnounced() throws Exception {
+		searchByPrefix("M").andExpect(status().isOk()).andExpect(content().string(not(containsString("Mauguio"))));
+		count().andExpect(content().string("1"));
+
+		// A file import writes through the repositories, then announces itself
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> villeRepository
+				.save(new Ville("Mauguio", 17000, "1", "1", "154", 17000, 0, 17000, herault)));
+		searchByPrefix("M").andExpect(content().string(not(containsString("Mauguio"))));
+		count().andExpect(content().string("1"));
+		eventPublisher.publishEvent(new DataImportedEvent(1));
+
+		searchByPrefix("M").andExpect(status().isOk()).andExpect(content().string(containsString("Mauguio")));
+		count().andExpect(content().string("2"));
+	}
+
+	@Test
+	void cacheStatsCountHitsAndMisses() throws Exception {
+		CacheStatsDto before = prefixCacheStats();
+
+		searchByPrefix("Mont");
+		searchByPrefix("Mont");
+		searchByPrefix("Mont");
+		searchByPrefix("M");
+
+		CacheStatsDto after = prefixCacheStats();
+		assertThat(after.missCount() - before.missCount()).isEqualTo(2);
+		assertThat(after.hitCount() - before.hitCount()).isEqualTo(2);
+		assertThat(after.entryCount()).isEqualTo(2);
+		assertThat(after.hitRatio())
+				.isEqualTo((double) after.hitCount() / (after.hitCount() + after.missCount()));
+	}
+
+	/**
+	 * Searches the cities by name prefix, through the cached endpoint.
+	 *
+	 * @param prefix the prefix of the names
+	 * @return the result of the request
+	 */
+	private ResultActions searchByPrefix(String prefix) throws Exception {
+		return mockMvc.perform(get("/villes/search").param("prefix", prefix));
+	}
+
+	/**
+	 * Searches the cities above a population, through the cached endpoint.
+	 *
+	 * @param minPopulation the population threshold
+	 * @return the result of the request
+	 */
+	private ResultActions searchByMinPopulation(int minPopulation) throws Exception {
+		return mockMvc.perform(
+				get("/villes/search/by-min-population").param("minPopulation", String.valueOf(minPopulation)));
+	}
+
+	/**
+	 * Requests the cached number of cities.
+	 *
+	 * @return the result of the request
+	 */
+	private ResultActions count() throws Exception {
+		return mockMvc.perform(get("/villes/count")).andExpect(status().isOk());
+	}
+
+	/**
+	 * Reads the statistics of the prefix search cache through the endpoint.
+	 *
+	 * @return the statistics of the prefix search cache
+	 */
+	private CacheStatsDto prefixCacheStats() throws Exception {
+		String json = mockMvc.perform(get("/villes/search/cache-stats")).andExpect(status().isOk()).andReturn()
+				.getResponse().getContentAsString();
+		List<CacheStatsDto> stats = objectMapper.readValue(json, new TypeReference<List<CacheStatsDto>>() {
+		});
+		return stats.stream().filter(s -> s.name().equals(CacheConfig.VILLES_BY_PREFIX)).findFirst().orElseThrow();
+	}
+}
@@ -0,0 +1,81 @@
+package fr.diginamic.hello.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AutocompleteIndexTests {
+
+	private final AutocompleteIndex index = new AutocompleteIndex();
+
+	@BeforeEach
+	void setUp() {
+		index.rebuild(List.of(new VilleSnapshot(1, "Saint-Étienne", 172_000, null, null, null, "42", null),
+				new VilleSnapshot(2, "Saint-Denis", 113_000, null, null, null, "93", null),
+				new VilleSnapshot(3, "Sainte-Foy", 6_000, null, null, null, "69", null),
+				new VilleSnapshot(4, "Saintes", 25_000, null, null, null, "17", null),
+				new VilleSnapshot(5, "Paris", 2_100_000, null, null, null, "75", null),
+				new VilleSnapshot(6, "L'Haÿ-les-Roses", 31_000, null, null, null, "94", null),
+				new VilleSnapshot(7, "Œuilly", 300, null, null, null, "02", null)));
+	}
+
+	@Test
+	void namesAreFoldedBeforeMatching() {
+		assertThat(NomNormalizer.fold("L'Haÿ-les-Roses")).isEqualTo("l hay les roses");
+		assertThat(noms(index.search("saint-e", 10))).containsExactly("Saint-Étienne");
+		assertThat(noms(index.search("SAINT ETI", 10))).containsExactly("Saint-Étienne");
+		assertThat(noms(index.search("l'hay", 10))).containsExactly("L'Haÿ-les-Roses");
+		assertThat(noms(index.search("oe", 10))).containsExactly("Œuilly");
+	}
+
+	@Test
+	void matchesAreRankedByPopulation() {
+		assertThat(noms(index.search("saint", 10))).containsExactly("Saint-Étienne", "Saint-Denis", "Saintes",
+				"Sainte-Foy");
+		assertThat(noms(index.search("saint", 2))).containsExactly("Saint-Étienne", "Saint-Denis");
+		assertThat(index.search("zz", 10)).isEmpty();
+	}
+
+	@Test
+	void topMatchesAmongManyCities() {
+		List<VilleSnapshot> villes = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			villes.add(new VilleSnapshot(i, "Ville " + i, (i * 7919L) % 5000, null, null, null, "01", null));
+		}
+		index.rebuild(villes);
+
+		List<VilleSnapshot> top = index.search("ville", 5);
+
+		assertThat(top).extracting(VilleSnapshot::nbHabitants).containsExactly(4999L, 4998L, 4997L, 4996L, 4995L);
+		assertThat(index.search("ville 12", 200)).hasSize(111).isSortedAccordingTo(
+				(a, b) -> Long.compare(b.nbHabitants(), a.nbHabitants()));
+	}
+
+	@Test
+	void changesAreAppliedIncrementally() {
+		VilleSnapshot saintMalo = new VilleSnapshot(8, "Saint-Malo", 46_000, null, null, null, "35", null);
+		index.apply(null, saintMalo);
+		assertThat(noms(index.search("saint", 3))).containsExactly("Saint-Étienne", "Saint-Denis", "Saint-Malo");
+
+		VilleSnapshot grown = new VilleSnapshot(8, "Saint-Malo", 500_000, null, null, null, "35", null);
+		index.apply(saintMalo, grown);
+		assertThat(noms(index.search("saint", 1))).containsExactly("Saint-Malo");
+
+		VilleSnapshot renamed = new VilleSnapshot(8, "Malo", 500_000, null, null, null, "35", null);
+		index.apply(grown, renamed);
+		assertThat(noms(index.search("saint", 1))).containsExactly("Saint-Étienne");
+		assertThat(noms(index.search("malo", 10))).containsExactly("Malo");
+
+		index.apply(renamed, null);
+		assertThat(index.search("malo", 10)).isEmpty();
+		assertThat(index.size()).isEqualTo(7);
+	}
+
+	private static List<String> noms(List<VilleSnapshot> villes) {
+		return villes.stream().map(VilleSnapshot::nom).toList();
+	}
+}
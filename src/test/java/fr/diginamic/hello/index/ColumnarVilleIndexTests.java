@@ -0,0 +1,80 @@
+package fr.diginamic.hello.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.diginamic.hello.dto.VilleResumeDto;
+
+class ColumnarVilleIndexTests {
+
+	private final ColumnarVilleIndex index = new ColumnarVilleIndex();
+
+	@BeforeEach
+	void setUp() {
+		index.rebuild(List.of(new VilleSnapshot(1, "Montpellier", 300_000, "172", null, null, "34", null),
+				new VilleSnapshot(2, "Sète", 44_000, "301", null, null, "34", null),
+				new VilleSnapshot(3, "Nîmes", 150_000, "189", null, null, "30", null),
+				new VilleSnapshot(4, "Béziers", 78_000, "032", null, null, "34", null),
+				new VilleSnapshot(5, "Alès", 44_000, "007", null, null, "30", null),
+				new VilleSnapshot(6, "Lunel", 26_000, "145", null, null, "34", null)));
+	}
+
+	@Test
+	void populationRangeIsOrderedByPopulationThenId() {
+		assertThat(noms(index.findByPopulationRange(40_000, 200_000, 0, 10))).containsExactly("Nîmes", "Béziers",
+				"Sète", "Alès");
+		assertThat(noms(index.findByPopulationRange(40_000, 200_000, 1, 2))).containsExactly("Béziers", "Sète");
+		assertThat(index.findByPopulationRange(40_000, 200_000, 4, 10)).isEmpty();
+		assertThat(index.findByPopulationRange(1_000_000, 2_000_000, 0, 10)).isEmpty();
+	}
+
+	@Test
+	void populationRangeDecodesTheDictionaries() {
+		assertThat(index.findByPopulationRange(70_000, 400_000, 0, 3)).containsExactly(
+				new VilleResumeDto(1, "Montpellier", 300_000, "172", "34"),
+				new VilleResumeDto(3, "Nîmes", 150_000, "189", "30"),
+				new VilleResumeDto(4, "Béziers", 78_000, "032", "34"));
+	}
+
+	@Test
+	void changesAreAppliedIncrementally() {
+		VilleSnapshot agde = new VilleSnapshot(7, "Agde", 29_000, "003", null, null, "34", null);
+		index.apply(null, agde);
+		assertThat(noms(index.findByPopulationRange(20_000, 30_000, 0, 10))).containsExactly("Agde", "Lunel");
+
+		VilleSnapshot moved = new VilleSnapshot(7, "Agde", 31_000, "003", null, null, "11", null);
+		index.apply(agde, moved);
+		assertThat(index.findByPopulationRange(30_000, 40_000, 0, 10))
+				.containsExactly(new VilleResumeDto(7, "Agde", 31_000, "003", "11"));
+		assertThat(noms(index.findByPopulationRange(20_000, 30_000, 0, 10))).containsExactly("Lunel");
+
+		index.apply(new VilleSnapshot(1, "Montpellier", 300_000, "172", null, null, "34", null), null);
+		assertThat(noms(index.findByPopulationRange(0, Long.MAX_VALUE, 0, 1))).containsExactly("Nîmes");
+		assertThat(index.size()).isEqualTo(6);
+	}
+
+	@Test
+	void largeScansRunInParallel() {
+		List<VilleSnapshot> villes = new ArrayList<>();
+		for (int i = 0; i < 50_000; i++) {
+			villes.add(new VilleSnapshot(i, "Ville " + i, (i * 7919L) % 50_000, null, null, null,
+					String.valueOf(i % 100), null));
+		}
+		index.rebuild(villes);
+
+		assertThat(index.findByPopulationRange(0, 49_999, 0, 3)).extracting(VilleResumeDto::nbHabitants)
+				.containsExactly(49_999L, 49_998L, 49_997L);
+		// The populations are a permutation of 0 to 49,999
+		assertThat(index.findByPopulationRange(10_000, 10_999, 0, 2000)).hasSize(1000)
+				.isSortedAccordingTo((a, b) -> Long.compare(b.nbHabitants(), a.nbHabitants()));
+	}
+
+	private static List<String> noms(List<VilleResumeDto> villes) {
+		return villes.stream().map(VilleResumeDto::nom).toList();
+	}
+}
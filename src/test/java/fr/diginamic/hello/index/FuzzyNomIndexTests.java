@@ -0,0 +1,95 @@
+package fr.diginamic.hello.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class FuzzyNomIndexTests {
+
+	private final FuzzyNomIndex index = new FuzzyNomIndex();
+
+	@BeforeEach
+	void setUp() {
+		index.rebuild(List.of(new VilleSnapshot(1, "Montpellier", 300_000, null, null, null, "34", null),
+				new VilleSnapshot(2, "Besançon", 120_000, null, null, null, "25", null),
+				new VilleSnapshot(3, "Montpellier-de-Médillan", 600, null, null, null, "17", null),
+				new VilleSnapshot(4, "Montélier", 4_000, null, null, null, "26", null),
+				new VilleSnapshot(5, "Paris", 2_100_000, null, null, null, "75", null),
+				new VilleSnapshot(6, "Parigny", 1_000, null, null, null, "42", null)));
+	}
+
+	@Test
+	void misspeltNamesAreFound() {
+		assertThat(noms(index.search("Montpelier", 1, 0.3))).containsExactly("Montpellier");
+		assertThat(noms(index.search("Besancon", 1, 0.3))).containsExactly("Besançon");
+		assertThat(noms(index.search("besanson", 1, 0.3))).containsExactly("Besançon");
+		assertThat(index.search("Strasbourg", 10, 0.3)).isEmpty();
+	}
+
+	@Test
+	void matchesAreRankedBySimilarityThenPopulation() {
+		List<FuzzyNomIndex.Match> matches = index.search("montpelier", 10, 0.3);
+
+		assertThat(noms(matches)).startsWith("Montpellier", "Montélier");
+		assertThat(matches.get(0).similarity()).isGreaterThan(matches.get(1).similarity());
+
+		index.rebuild(List.of(new VilleSnapshot(1, "Sainte-Marie", 500, null, null, null, "01", null),
+				new VilleSnapshot(2, "Sainte-Marie", 12_000, null, null, null, "97", null)));
+		assertThat(index.search("sainte marie", 10, 0.3)).extracting(FuzzyNomIndex.Match::id).containsExactly(2L, 1L);
+	}
+
+	@Test
+	void onlyTheBestMatchesAreKept() {
+		List<VilleSnapshot> villes = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			villes.add(new VilleSnapshot(i, "Saint-Martin " + i, i, null, null, null, "01", null));
+		}
+		index.rebuild(villes);
+
+		List<FuzzyNomIndex.Match> matches = index.search("saint martin", 3, 0.3);
+
+		assertThat(matches).extracting(FuzzyNomIndex.Match::id).containsExactly(9L, 8L, 7L);
+	}
+
+	@Test
+	void changesAreAppliedIncrementally() {
+		VilleSnapshot besancon = new VilleSnapshot(2, "Besançon", 120_000, null, null, null, "25", null);
+		VilleSnapshot renamed = new VilleSnapshot(2, "Vesontio", 120_000, null, null, null, "25", null);
+		index.apply(besancon, renamed);
+		assertThat(index.search("besancon", 10, 0.3)).isEmpty();
+		assertThat(noms(index.search("vesontio", 10, 0.3))).containsExactly("Vesontio");
+
+		index.apply(null, new VilleSnapshot(7, "Besancon-les-Bains", 10, null, null, null, "25", null));
+		assertThat(noms(index.search("besancon", 10, 0.3))).containsExactly("Besancon-les-Bains");
+
+		index.apply(renamed, null);
+		assertThat(index.size()).isEqualTo(6);
+	}
+
+	@Test
+	void updatedCitiesKeepTheirSlot() {
+		VilleSnapshot montpellier = new VilleSnapshot(1, "Montpellier", 300_000, null, null, null, "34", null);
+		VilleSnapshot grown = new VilleSnapshot(1, "Montpellier", 310_000, null, null, null, "34", null);
+		index.apply(montpellier, grown);
+		assertThat(index.search("montpelier", 1, 0.3)).extracting(FuzzyNomIndex.Match::nbHabitants)
+				.containsExactly(310_000L);
+
+		// The first slot, so that its new trigrams land before the other positions
+		VilleSnapshot renamed = new VilleSnapshot(1, "Parisot", 310_000, null, null, null, "34", null);
+		index.apply(grown, renamed);
+		assertThat(index.search("montpelier", 10, 0.3)).extracting(FuzzyNomIndex.Match::id).doesNotContain(1L);
+		assertThat(index.search("parisot", 1, 0.3)).extracting(FuzzyNomIndex.Match::id).containsExactly(1L);
+		assertThat(index.search("paris", 10, 0.2)).extracting(FuzzyNomIndex.Match::id).contains(1L, 5L);
+
+		assertThat(index.slots()).isEqualTo(6);
+		assertThat(index.size()).isEqualTo(6);
+	}
+
+	private static List<String> noms(List<FuzzyNomIndex.Match> matches) {
+		return matches.stream().map(FuzzyNomIndex.Match::nom).toList();
+	}
+}
@@ -0,0 +1,123 @@
+package fr.diginamic.hello.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class KllSketchTests {
+
+	/** Rank error tolerated, as a fraction of the number of values. */
+	private static final double TOLERANCE = 0.02;
+
+	@Test
+	void smallStreamsAreExact() {
+		KllSketch sketch = new KllSketch();
+		for (long value : new long[] { 5, 1, 4, 2, 3 }) {
+			sketch.update(value);
+		}
+
+		assertThat(sketch.quantile(0)).isEqualTo(1);
+		assertThat(sketch.quantile(0.5)).isEqualTo(3);
+		assertThat(sketch.quantile(1)).isEqualTo(5);
+		assertThat(sketch.rank(3)).isEqualTo(3);
+		assertThat(new KllSketch().quantile(0.5)).isNull();
+	}
+
+	@Test
+	void largeStreamsStayAccurateInBoundedMemory() {
+		long[] values = skewedPopulations(200_000, 42);
+		KllSketch sketch = new KllSketch();
+		for (long value : values) {
+			sketch.update(value);
+		}
+
+		assertThat(sketch.getCount()).isEqualTo(values.length);
+		assertThat(sketch.getRetained()).isLessThan(3 * KllSketch.DEFAULT_K + 64);
+		assertAccurate(sketch, values);
+	}
+
+	@Test
+	void mergedSketchesMatchTheWholeStream() {
+		long[] values = skewedPopulations(100_000, 7);
+		KllSketch first = new KllSketch();
+		KllSketch second = new KllSketch();
+		for (int i = 0; i < values.length; i++) {
+			(i % 3 == 0 ? first : second).update(values[i]);
+		}
+
+		KllSketch merged = first.copy();
+		merged.merge(second);
+
+		assertThat(merged.getCount()).isEqualTo(values.length);
+		assertThat(first.getCount()).isEqualTo((values.length + 2) / 3);
+		assertAccurate(merged, values);
+	}
+
+	@Test
+	void removedPopulationsAreSubtracted() {
+		long[] values = skewedPopulations(50_000, 3);
+		KllSketch sketch = new KllSketch();
+		for (long value : values) {
+			sketch.update(value);
+		}
+		PopulationDistribution distribution = PopulationDistribution.of(sketch);
+		// Removes the 1,000 largest populations
+		long[] sorted = values.clone();
+		Arrays.sort(sorted);
+		for (int i = sorted.length - 1000; i < sorted.length; i++) {
+			distribution = distribution.without(sorted[i]);
+		}
+
+		long[] remaining = Arrays.copyOf(sorted, sorted.length - 1000);
+		assertThat(distribution.getCount()).isEqualTo(remaining.length);
+		for (double fraction : new double[] { 0.5, 0.9, 0.99 }) {
+			assertThat(rankError(remaining, distribution.quantile(fraction), fraction)).isLessThan(TOLERANCE);
+		}
+	}
+
+	private static void assertAccurate(KllSketch sketch, long[] values) {
+		long[] sorted = values.clone();
+		Arrays.sort(sorted);
+		for (double fraction : new double[] { 0.01, 0.25, 0.5, 0.75, 0.9, 0.99 }) {
+			assertThat(rankError(sorted, sketch.quantile(fraction), fraction)).isLessThan(TOLERANCE);
+		}
+	}
+
+	/**
+	 * Computes how far the true rank of an estimated quantile is from the asked
+	 * one, as a fraction of the number of values.
+	 */
+	private static double rankError(long[] sorted, long estimate, double fraction) {
+		int lowest = lowerBound(sorted, estimate);
+		int highest = lowerBound(sorted, estimate + 1);
+		double target = fraction * sorted.length;
+		if (target >= lowest && target <= highest) {
+			return 0;
+		}
+		return Math.min(Math.abs(target - lowest), Math.abs(target - highest)) / sorted.length;
+	}
+
+	private static int lowerBound(long[] sorted, long value) {
+		int position = Arrays.binarySearch(sorted, value);
+		if (position < 0) {
+			return -position - 1;
+		}
+		while (position > 0 && sorted[position - 1] == value) {
+			position--;
+		}
+		return position;
+	}
+
+	/** Populations spread like those of French cities: mostly small, a few huge. */
+	private static long[] skewedPopulations(int count, long seed) {
+		Random random = new Random(seed);
+		long[] values = new long[count];
+		for (int i = 0; i < count; i++) {
+			values[i] = (long) Math.exp(4 + 4 * Math.abs(random.nextGaussian()));
+		}
+		return values;
+	}
+}
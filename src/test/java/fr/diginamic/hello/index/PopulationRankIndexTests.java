@@ -0,0 +1,95 @@
+package fr.diginamic.hello.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.diginamic.hello.dto.VilleRankDto;
+
+class PopulationRankIndexTests {
+
+	private final PopulationRankIndex index = new PopulationRankIndex();
+
+	@BeforeEach
+	void setUp() {
+		index.rebuild(List.of(new VilleSnapshot(1, "Montpellier", 300_000, "172", null, null, "34", null),
+				new VilleSnapshot(2, "Sète", 44_000, "301", null, null, "34", null),
+				new VilleSnapshot(3, "Nîmes", 150_000, "189", null, null, "30", null),
+				new VilleSnapshot(4, "Béziers", 78_000, "032", null, null, "34", null),
+				new VilleSnapshot(5, "Alès", 44_000, "007", null, null, "30", null),
+				new VilleSnapshot(6, "Nulle part", 1_000, null, null, null, null, null)));
+	}
+
+	@Test
+	void ranksAreNationalAndDepartmental() {
+		assertThat(index.findRank(4)).contains(new VilleRankDto(4, "Béziers", 78_000, "34", 3, 6, 2L, 3L));
+		// Equally populated cities share their rank
+		assertThat(index.findRank(2).orElseThrow().rangNational()).isEqualTo(4);
+		assertThat(index.findRank(5).orElseThrow().rangNational()).isEqualTo(4);
+		assertThat(index.findRank(5).orElseThrow().rangDepartement()).isEqualTo(2);
+		assertThat(index.findRank(6)).contains(new VilleRankDto(6, "Nulle part", 1_000, null, 6, 6, null, null));
+		assertThat(index.findRank(99)).isEmpty();
+	}
+
+	@Test
+	void changesAreAppliedIncrementally() {
+		VilleSnapshot agde = new VilleSnapshot(7, "Agde", 29_000, "003", null, null, "34", null);
+		index.apply(null, agde);
+		assertThat(index.findRank(7)).contains(new VilleRankDto(7, "Agde", 29_000, "34", 6, 7, 4L, 4L));
+
+		VilleSnapshot grown = new VilleSnapshot(7, "Agde", 500_000, "003", null, null, "11", null);
+		index.apply(agde, grown);
+		assertThat(index.findRank(7)).contains(new VilleRankDto(7, "Agde", 500_000, "11", 1, 7, 1L, 1L));
+		assertThat(index.findRank(1).orElseThrow().rangNational()).isEqualTo(2);
+		assertThat(index.findRank(1).orElseThrow().nbCommunesDepartement()).isEqualTo(3);
+
+		index.apply(grown, null);
+		assertThat(index.findRank(7)).isEmpty();
+		assertThat(index.findRank(1).orElseThrow().rangNational()).isEqualTo(1);
+	}
+
+	@Test
+	void ranksMatchACountOfTheMorePopulatedCities() {
+		Random random = new Random(11);
+		Map<Long, VilleSnapshot> villes = new HashMap<>();
+		for (long id = 0; id < 2000; id++) {
+			villes.put(id, ville(id, random));
+		}
+		index.rebuild(new ArrayList<>(villes.values()));
+		for (int change = 0; change < 2000; change++) {
+			long id = random.nextInt(2500);
+			VilleSnapshot before = villes.get(id);
+			VilleSnapshot after = random.nextInt(4) == 0 ? null : ville(id, random);
+			index.apply(before, after);
+			if (after == null) {
+				villes.remove(id);
+			} else {
+				villes.put(id, after);
+			}
+		}
+
+		for (VilleSnapshot ville : villes.values()) {
+			long national = villes.values().stream().filter(v -> v.nbHabitants() > ville.nbHabitants()).count() + 1;
+			long departemental = villes.values().stream()
+					.filter(v -> v.codeDepartement().equals(ville.codeDepartement())
+							&& v.nbHabitants() > ville.nbHabitants())
+					.count() + 1;
+			VilleRankDto rank = index.findRank(ville.id()).orElseThrow();
+			assertThat(rank.rangNational()).isEqualTo(national);
+			assertThat(rank.rangDepartement()).isEqualTo(departemental);
+			assertThat(rank.nbCommunes()).isEqualTo(villes.size());
+		}
+	}
+
+	private static VilleSnapshot ville(long id, Random random) {
+		return new VilleSnapshot(id, "Ville " + id, random.nextInt(500), null, null, null,
+				String.valueOf(random.nextInt(5)), null);
+	}
+}
@@ -0,0 +1,99 @@
+package fr.diginamic.hello.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.diginamic.hello.dto.VilleResumeDto;
+
+class TopVillesIndexTests {
+
+	private final TopVillesIndex index = new TopVillesIndex();
+
+	@BeforeEach
+	void setUp() {
+		index.rebuild(List.of(new VilleSnapshot(1, "Montpellier", 300_000, "172", null, null, "34", null),
+				new VilleSnapshot(2, "Sète", 44_000, "301", null, null, "34", null),
+				new VilleSnapshot(3, "Nîmes", 150_000, "189", null, null, "30", null),
+				new VilleSnapshot(4, "Béziers", 78_000, "032", null, null, "34", null),
+				new VilleSnapshot(5, "Alès", 44_000, "007", null, null, "30", null),
+				new VilleSnapshot(6, "Lunel", 26_000, "145", null, null, "34", null),
+				new VilleSnapshot(7, "Nulle part", 1_000, null, null, null, null, null)));
+	}
+
+	@Test
+	void topCitiesAreOrderedByPopulationThenId() {
+		assertThat(index.findTop("34", 0, 2)).containsExactly(
+				new VilleResumeDto(1, "Montpellier", 300_000, "172", "34"),
+				new VilleResumeDto(4, "Béziers", 78_000, "032", "34"));
+		assertThat(noms(index.findTop("34", 2, 10))).containsExactly("Sète", "Lunel");
+		assertThat(index.findTop("34", 10, 10)).isEmpty();
+		assertThat(index.findTop("99", 0, 10)).isEmpty();
+		assertThat(index.size()).isEqualTo(6);
+	}
+
+	@Test
+	void changesOnlyTouchTheirDepartments() {
+		VilleSnapshot agde = new VilleSnapshot(8, "Agde", 29_000, "003", null, null, "34", null);
+		index.apply(null, agde);
+		assertThat(noms(index.findTop("34", 3, 10))).containsExactly("Agde", "Lunel");
+
+		VilleSnapshot grown = new VilleSnapshot(8, "Agde", 500_000, "003", null, null, "34", null);
+		index.apply(agde, grown);
+		assertThat(noms(index.findTop("34", 0, 2))).containsExactly("Agde", "Montpellier");
+
+		VilleSnapshot moved = new VilleSnapshot(8, "Agde", 500_000, "003", null, null, "11", null);
+		index.apply(grown, moved);
+		assertThat(noms(index.findTop("11", 0, 10))).containsExactly("Agde");
+		assertThat(noms(index.findTop("34", 0, 1))).containsExactly("Montpellier");
+
+		index.apply(moved, null);
+		assertThat(index.findTop("11", 0, 10)).isEmpty();
+		assertThat(index.size()).isEqualTo(6);
+	}
+
+	@Test
+	void staleRemovalsAreFoundById() {
+		index.apply(new VilleSnapshot(4, "Béziers", 1, "032", null, null, "34", null), null);
+
+		assertThat(noms(index.findTop("34", 0, 10))).containsExactly("Montpellier", "Sète", "Lunel");
+	}
+
+	@Test
+	void readersAreNotDisturbedByWriters() throws Exception {
+		List<VilleSnapshot> villes = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			villes.add(new VilleSnapshot(i, "Ville " + i, i, null, null, null, "01", null));
+		}
+		index.rebuild(villes);
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<?> writer = executor.submit(() -> {
+				for (int i = 0; i < 1000; i++) {
+					VilleSnapshot before = new VilleSnapshot(i, "Ville " + i, i, null, null, null, "01", null);
+					index.apply(before, new VilleSnapshot(i, "Ville " + i, i + 1000, null, null, null, "01", null));
+				}
+			});
+			while (!writer.isDone()) {
+				assertThat(index.findTop("01", 0, 1000)).hasSize(1000)
+						.isSortedAccordingTo((a, b) -> Long.compare(b.nbHabitants(), a.nbHabitants()));
+			}
+			writer.get();
+		} finally {
+			executor.shutdown();
+		}
+		assertThat(index.findTop("01", 0, 1).get(0).nbHabitants()).isEqualTo(1999);
+	}
+
+	private static List<String> noms(List<VilleResumeDto> villes) {
+		return villes.stream().map(VilleResumeDto::nom).toList();
+	}
+}
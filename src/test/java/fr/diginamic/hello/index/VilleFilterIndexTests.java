@@ -0,0 +1,121 @@
+package fr.diginamic.hello.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.diginamic.hello.dto.VilleResumeDto;
+
+class VilleFilterIndexTests {
+
+	private static final Comparator<VilleSnapshot> BY_POPULATION = Comparator
+			.comparingLong(VilleSnapshot::nbHabitants).reversed().thenComparingLong(VilleSnapshot::id);
+
+	private final VilleFilterIndex index = new VilleFilterIndex();
+
+	@BeforeEach
+	void setUp() {
+		index.rebuild(List.of(new VilleSnapshot(1, "Montpellier", 300_000, "172", "3", "99", "34", "76"),
+				new VilleSnapshot(2, "Sète", 44_000, "301", "3", "29", "34", "76"),
+				new VilleSnapshot(3, "Nîmes", 150_000, "189", "2", "12", "30", "76"),
+				new VilleSnapshot(4, "Béziers", 78_000, "032", "1", "07", "34", "76"),
+				new VilleSnapshot(5, "Alès", 44_000, "007", "1", "01", "30", "76"),
+				new VilleSnapshot(6, "Lyon", 520_000, "123", "1", "99", "69", "84")));
+	}
+
+	@Test
+	void filtersAreCombined() {
+		assertThat(noms(index.find(filter(Set.of("34", "30"), null, null, null, null), BY_POPULATION, 10)))
+				.containsExactly("Montpellier", "Nîmes", "Béziers", "Sète", "Alès");
+		assertThat(noms(index.find(filter(null, Set.of("1"), null, 40_000L, 100_000L), BY_POPULATION, 10)))
+				.containsExactly("Béziers", "Alès");
+		assertThat(noms(index.find(filter(Set.of("34"), null, Set.of("99"), null, null), BY_POPULATION, 10)))
+				.containsExactly("Montpellier");
+		assertThat(noms(index.find(new VilleFilter(null, Set.of("84"), null, null, null, null), BY_POPULATION, 10)))
+				.containsExactly("Lyon");
+		assertThat(index.find(filter(Set.of("99"), null, null, null, null), BY_POPULATION, 10)).isEmpty();
+		assertThat(index.find(filter(List.of(), null, null, null, null), BY_POPULATION, 10)).isEmpty();
+	}
+
+	@Test
+	void populationBandsAreCheckedExactly() {
+		assertThat(noms(index.find(filter(null, null, null, 44_000L, 44_000L), BY_POPULATION, 10)))
+				.containsExactly("Sète", "Alès");
+		assertThat(noms(index.find(filter(null, null, null, 44_001L, 299_999L), BY_POPULATION, 10)))
+				.containsExactly("Nîmes", "Béziers");
+		assertThat(noms(index.find(filter(null, null, null, 300_000L, null), BY_POPULATION, 1)))
+				.containsExactly("Lyon");
+	}
+
+	@Test
+	void changesAreAppliedIncrementally() {
+		VilleSnapshot sete = new VilleSnapshot(2, "Sète", 44_000, "301", "3", "29", "34", "76");
+		VilleSnapshot moved = new VilleSnapshot(2, "Sète", 45_000, "301", "3", "29", "30", "76");
+		index.apply(sete, moved);
+		index.apply(null, new VilleSnapshot(7, "Agde", 29_000, "003", "3", "08", "34", "76"));
+		index.apply(new VilleSnapshot(4, "Béziers", 78_000, "032", "1", "07", "34", "76"), null);
+
+		assertThat(noms(index.find(filter(Set.of("34"), null, null, null, null), BY_POPULATION, 10)))
+				.containsExactly("Montpellier", "Agde");
+		assertThat(noms(index.find(filter(Set.of("30"), null, null, 45_000L, null), BY_POPULATION, 10)))
+				.containsExactly("Nîmes", "Sète");
+	}
+
+	@Test
+	void matchesAFullScanOnManyCities() {
+		Random random = new Random(5);
+		Map<Long, VilleSnapshot> villes = new HashMap<>();
+		for (long id = 0; id < 20_000; id++) {
+			villes.put(id, ville(id, random));
+		}
+		index.rebuild(new ArrayList<>(villes.values()));
+		for (int change = 0; change < 500; change++) {
+			long id = random.nextInt(21_000);
+			VilleSnapshot after = random.nextInt(4) == 0 ? null : ville(id, random);
+			index.apply(villes.get(id), after);
+			if (after == null) {
+				villes.remove(id);
+			} else {
+				villes.put(id, after);
+			}
+		}
+
+		VilleFilter filter = new VilleFilter(Set.of("01", "02", "07"), Set.of("R1"), null, Set.of("3", "4"), 1_500L,
+				80_000L);
+		List<Long> expected = villes.values().stream()
+				.filter(v -> filter.departements().contains(v.codeDepartement())
+						&& filter.regions().contains(v.codeRegion()) && filter.cantons().contains(v.codeCanton())
+						&& v.nbHabitants() >= 1_500 && v.nbHabitants() <= 80_000)
+				.sorted(BY_POPULATION).limit(50).map(VilleSnapshot::id).toList();
+
+		assertThat(expected).isNotEmpty();
+		assertThat(index.find(filter, BY_POPULATION, 50)).extracting(VilleResumeDto::id)
+				.containsExactlyElementsOf(expected);
+	}
+
+	private static VilleFilter filter(Collection<String> departements, Collection<String> arrondissements,
+			Collection<String> cantons, Long minPopulation, Long maxPopulation) {
+		return new VilleFilter(departements, null, arrondissements, cantons, minPopulation, maxPopulation);
+	}
+
+	private static VilleSnapshot ville(long id, Random random) {
+		int departement = random.nextInt(10);
+		return new VilleSnapshot(id, "Ville " + id, (long) Math.exp(random.nextDouble() * 13), null,
+				String.valueOf(random.nextInt(4)), String.valueOf(random.nextInt(6)), "0" + departement,
+				departement < 5 ? "R1" : "R2");
+	}
+
+	private static List<String> noms(List<VilleResumeDto> villes) {
+		return villes.stream().map(VilleResumeDto::nom).toList();
+	}
+}
@@ -0,0 +1,107 @@
+package fr.diginamic.hello.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import fr.diginamic.hello.HelloApplication;
+import fr.diginamic.hello.TraitementFichiersApplication;
+import fr.diginamic.hello.entities.Departement;
+import fr.diginamic.hello.entities.Region;
+import fr.diginamic.hello.entities.Ville;
+import fr.diginamic.hello.events.VilleChangedEvent;
+import fr.diginamic.hello.events.VilleChangedEvent.ChangeType;
+import fr.diginamic.hello.repositories.DepartementRepository;
+import fr.diginamic.hello.repositories.RegionRepository;
+import fr.diginamic.hello.repositories.VilleRepository;
+
+/**
+ * Checks that a city change reaching the maintainer after a rebuild which
+ * already read it leaves the indexes as the rebuild built them, instead of
+ * being counted twice or undoing a later change.
+ */
+@SpringBootTest(classes = HelloApplication.class)
+class VilleIndexMaintainerTests {
+
+	@MockBean
+	private TraitementFichiersApplication traitementFichiersApplication;
+
+	@Autowired
+	private VilleIndexMaintainer maintainer;
+
+	@Autowired
+	private PopulationQuantilesIndex populationQuantilesIndex;
+
+	@Autowired
+	private PopulationRankIndex populationRankIndex;
+
+	@Autowired
+	private VilleRepository villeRepository;
+
+	@Autowired
+	private DepartementRepository departementRepository;
+
+	@Autowired
+	private RegionRepository regionRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private Departement herault;
+
+	@BeforeEach
+	void setUp() {
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			villeRepository.deleteAllInBatch();
+			departementRepository.deleteAllInBatch();
+			regionRepository.deleteAllInBatch();
+			Region occitanie = regionRepository.save(new Region("76", "Occitanie"));
+			herault = departementRepository.save(new Departement("34", occitanie));
+			villeRepository.save(new Ville("Montpellier", 300000, "3", "99", "172", 300000, 0, 300000, herault));
+		});
+		maintainer.rebuildAll();
+	}
+
+	@Test
+	void creationAlreadyReadByARebuildIsNotCountedTwice() {
+		Ville sete = new TransactionTemplate(transactionManager).execute(status -> villeRepository
+				.save(new Ville("Sète", 44000, "1", "1", "301", 44000, 0, 44000, herault)));
+		maintainer.rebuildAll();
+
+		maintainer.onVilleChanged(new VilleChangedEvent(ChangeType.CREATED, sete.getId(), null, snapshot(sete)));
+
+		assertThat(populationQuantilesIndex.getNation().getCount()).isEqualTo(2);
+		assertThat(populationRankIndex.findRank(sete.getId()).orElseThrow().nbCommunes()).isEqualTo(2);
+	}
+
+	@Test
+	void updateAlreadyReadByARebuildIsAppliedFromTheIndexedVersion() {
+		Ville montpellier = villeRepository.findByNom("Montpellier").orElseThrow();
+		VilleSnapshot original = snapshot(montpellier);
+		montpellier.setNbHabitants(310000);
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> villeRepository.save(montpellier));
+		maintainer.rebuildAll();
+
+		maintainer.onVilleChanged(
+				new VilleChangedEvent(ChangeType.UPDATED, montpellier.getId(), original, snapshot(montpellier)));
+		assertThat(populationRankIndex.findRank(montpellier.getId()).orElseThrow().nbHabitants()).isEqualTo(310000);
+		assertThat(populationQuantilesIndex.getNation().getCount()).isEqualTo(1);
+
+		VilleSnapshot later = new VilleSnapshot(montpellier.getId(), "Montpellier", 320000, "172", "3", "99", "34",
+				"76");
+		maintainer.onVilleChanged(new VilleChangedEvent(ChangeType.UPDATED, montpellier.getId(), original, later));
+		assertThat(populationRankIndex.findRank(montpellier.getId()).orElseThrow().nbHabitants()).isEqualTo(320000);
+		assertThat(populationQuantilesIndex.getNation().getCount()).isEqualTo(1);
+	}
+
+	private static VilleSnapshot snapshot(Ville ville) {
+		return new VilleSnapshot(ville.getId(), ville.getNom(), ville.getNbHabitants(), ville.getCodeCommune(),
+				ville.getCodeArrondissement(), ville.getCodeCanton(), "34", "76");
+	}
+}
@@ -0,0 +1,119 @@
+package fr.diginamic.hello.repositories;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import fr.diginamic.hello.HelloApplication;
+import fr.diginamic.hello.entities.Departement;
+import fr.diginamic.hello.entities.Region;
+import fr.diginamic.hello.entities.Ville;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Checks, through Hibernate statistics, that associations are only loaded by
+ * the queries asking for them, and then without one query per row.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ContextConfiguration(classes = HelloApplication.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AssociationFetchTests {
+
+	private static final int REGIONS = 5;
+
+	private static final int DEPARTEMENTS_PER_REGION = 4;
+
+	@Autowired
+	private VilleRepository villeRepository;
+
+	@Autowired
+	private DepartementRepository departementRepository;
+
+	@Autowired
+	private RegionRepository regionRepository;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private TransactionTemplate tx;
+
+	private Statistics statistics;
+
+	@BeforeEach
+	void setUp() {
+		tx = new TransactionTemplate(transactionManager);
+		tx.executeWithoutResult(status -> {
+			villeRepository.deleteAllInBatch();
+			departementRepository.deleteAllInBatch();
+			regionRepository.deleteAllInBatch();
+			for (int r = 0; r < REGIONS; r++) {
+				Region region = regionRepository.save(new Region("R" + r, "Région " + r));
+				for (int d = 0; d < DEPARTEMENTS_PER_REGION; d++) {
+					Departement departement = departementRepository.save(new Departement(r + "-" + d, region));
+					villeRepository.save(new Ville("Ville " + r + "-" + d, 1000 + 10 * r + d, "1", "1",
+							r + "" + d, 1, 1, 1, departement));
+				}
+			}
+		});
+		entityManagerFactory.getCache().evictAll();
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+	}
+
+	@Test
+	void cityListingsFetchTheirDepartementInTheSameQuery() {
+		tx.executeWithoutResult(status -> {
+			List<Ville> villes = villeRepository.findBy(PageRequest.of(0, 50)).getContent();
+			villes.forEach(ville -> ville.getDepartement().getCode());
+
+			List<Ville> next = villeRepository.findByIdGreaterThanOrderByIdAsc(0, Limit.of(50));
+			next.forEach(ville -> ville.getDepartement().getCode());
+
+			assertThat(villes).hasSize(REGIONS * DEPARTEMENTS_PER_REGION);
+			assertThat(Hibernate.isInitialized(villes.get(0).getDepartement().getRegion())).isFalse();
+		});
+
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+	}
+
+	@Test
+	void departementsAreNotLoadedWhenNotNeeded() {
+		tx.executeWithoutResult(status -> {
+			List<Ville> villes = villeRepository.findByOrderByNbHabitantsDesc(PageRequest.of(0, 50)).getContent();
+
+			assertThat(villes).noneMatch(ville -> Hibernate.isInitialized(ville.getDepartement()));
+		});
+
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+	}
+
+	@Test
+	void regionDepartementsAreLoadedInBatches() {
+		tx.executeWithoutResult(status -> {
+			List<Region> regions = regionRepository.findAll();
+			regions.forEach(region -> region.getDepartements().size());
+
+			assertThat(regions).allMatch(region -> region.getDepartements().size() == DEPARTEMENTS_PER_REGION);
+		});
+
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+	}
+}
@@ -0,0 +1,162 @@
+package fr.diginamic.hello.repositories;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import fr.diginamic.hello.HelloApplication;
+import fr.diginamic.hello.entities.Departement;
+import fr.diginamic.hello.entities.Region;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Checks, through Hibernate statistics, that regions and departments are served
+ * from the second-level and query caches once they have been loaded.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ContextConfiguration(classes = HelloApplication.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReferenceDataCacheTests {
+
+	@Autowired
+	private RegionRepository regionRepository;
+
+	@Autowired
+	private DepartementRepository departementRepository;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private TransactionTemplate tx;
+
+	private Statistics statistics;
+
+	private long regionId;
+
+	private int departementId;
+
+	@BeforeEach
+	void setUp() {
+		tx = new TransactionTemplate(transactionManager);
+		tx.executeWithoutResult(status -> {
+			departementRepository.deleteAllInBatch();
+			regionRepository.deleteAllInBatch();
+			Region region = regionRepository.save(new Region("84", "Auvergne-Rhône-Alpes"));
+			Departement departement = departementRepository.save(new Departement("01", region));
+			regionId = region.getId();
+			departementId = departement.getId();
+		});
+		entityManagerFactory.getCache().evictAll();
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+	}
+
+	@Test
+	void repeatedRegionLoadsSkipTheDatabase() {
+		tx.executeWithoutResult(status -> regionRepository.findById(regionId).orElseThrow());
+		statistics.clear();
+
+		tx.executeWithoutResult(status -> regionRepository.findById(regionId).orElseThrow());
+
+		assertThat(statistics.getPrepareStatementCount()).isZero();
+		assertThat(statistics.getSecondLevelCacheHitCount()).isEqualTo(1);
+	}
+
+	@Test
+	void repeatedDepartementLoadsSkipTheDatabase() {
+		tx.executeWithoutResult(status -> departementRepository.findById(departementId).orElseThrow());
+		statistics.clear();
+
+		tx.executeWithoutResult(status -> departementRepository.findById(departementId).orElseThrow());
+
+		assertThat(statistics.getPrepareStatementCount()).isZero();
+		assertThat(statistics.getSecondLevelCacheHitCount()).isPositive();
+	}
+
+	@Test
+	void regionDepartementsCollectionIsCached() {
+		tx.executeWithoutResult(
+				status -> regionRepository.findById(regionId).orElseThrow().getDepartements().size());
+		statistics.clear();
+
+		int size = tx.execute(status -> regionRepository.findById(regionId).orElseThrow().getDepartements().size());
+
+		assertThat(size).isEqualTo(1);
+		assertThat(statistics.getPrepareStatementCount()).isZero();
+		assertThat(statistics.getCollectionStatistics(Region.class.getName() + ".departements").getCacheHitCount())
+				.isEqualTo(1);
+	}
+
+	@Test
+	void regionDepartementsCollectionFollowsDepartementChanges() {
+		tx.executeWithoutResult(
+				status -> regionRepository.findById(regionId).orElseThrow().getDepartements().size());
+
+		long otherRegionId = tx.execute(status -> {
+			Region region = regionRepository.findById(regionId).orElseThrow();
+			departementRepository.save(new Departement("02", region));
+			return regionRepository.save(new Region("76", "Occitanie")).getId();
+		});
+		assertThat(departementCodes(regionId)).containsExactlyInAnyOrder("01", "02");
+
+		departementCodes(otherRegionId);
+		tx.executeWithoutResult(status -> departementRepository.findByCode("02").orElseThrow()
+				.setRegion(regionRepository.findById(otherRegionId).orElseThrow()));
+
+		assertThat(departementCodes(regionId)).containsExactly("01");
+		assertThat(departementCodes(otherRegionId)).containsExactly("02");
+	}
+
+	@Test
+	void findByCodeUsesTheQueryCache() {
+		tx.executeWithoutResult(status -> departementRepository.findByCode("01").orElseThrow());
+		tx.executeWithoutResult(status -> regionRepository.findByCode("84").orElseThrow());
+		statistics.clear();
+
+		tx.executeWithoutResult(status -> departementRepository.findByCode("01").orElseThrow());
+		tx.executeWithoutResult(status -> regionRepository.findByCode("84").orElseThrow());
+
+		assertThat(statistics.getPrepareStatementCount()).isZero();
+		assertThat(statistics.getQueryCacheHitCount()).isEqualTo(2);
+	}
+
+	@Test
+	void departementUpdateIsVisibleThroughTheQueryCache() {
+		tx.executeWithoutResult(status -> departementRepository.findByCode("01").orElseThrow());
+
+		tx.executeWithoutResult(status -> departementRepository.findById(departementId).orElseThrow().setCode("1A"));
+
+		Optional<Departement> oldCode = tx.execute(status -> departementRepository.findByCode("01"));
+		Optional<Departement> newCode = tx.execute(status -> departementRepository.findByCode("1A"));
+
+		assertThat(oldCode).isEmpty();
+		assertThat(newCode).isPresent();
+	}
+
+	/**
+	 * Reads the codes of the departments of a region through its cached
+	 * collection.
+	 *
+	 * @param id the ID of the region
+	 * @return the codes of its departments
+	 */
+	private List<String> departementCodes(long id) {
+		return tx.execute(status -> regionRepository.findById(id).orElseThrow().getDepartements().stream()
+				.map(Departement::getCode).toList());
+	}
+}
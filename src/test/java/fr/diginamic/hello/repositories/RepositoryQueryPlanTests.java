@@ -0,0 +1,220 @@
+package fr.diginamic.hello.repositories;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import fr.diginamic.hello.HelloApplication;
+import fr.diginamic.hello.entities.Departement;
+import fr.diginamic.hello.entities.Region;
+import fr.diginamic.hello.entities.Ville;
+
+/**
+ * Runs every repository query against the migrated schema, captures the SQL
+ * generated by Hibernate and checks, through the H2 {@code EXPLAIN} output,
+ * that it is answered from an index rather than a full table scan.
+ */
+@DataJpaTest(properties = { "spring.jpa.hibernate.ddl-auto=validate",
+		"spring.jpa.properties.hibernate.session_factory.statement_inspector="
+				+ "fr.diginamic.hello.repositories.RepositoryQueryPlanTests$CapturingStatementInspector" })
+@ContextConfiguration(classes = HelloApplication.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class RepositoryQueryPlanTests {
+
+	private static final List<String> CAPTURED_SQL = new ArrayList<>();
+
+	/** Sliced queries fetch one extra row to know whether a next page exists. */
+	private static final PageRequest FIRST_PAGE = PageRequest.of(0, 10);
+
+	@Autowired
+	private VilleRepository villeRepository;
+
+	@Autowired
+	private DepartementRepository departementRepository;
+
+	@Autowired
+	private RegionRepository regionRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private TransactionTemplate transactionTemplate;
+
+	private Departement departement;
+
+	@BeforeEach
+	void setUp() {
+		transactionTemplate = new TransactionTemplate(transactionManager);
+		// ANALYZE commits, so the data is reset explicitly rather than rolled back
+		jdbcTemplate.update("DELETE FROM ville");
+		jdbcTemplate.update("DELETE FROM departement");
+		jdbcTemplate.update("DELETE FROM region");
+
+		Region region = regionRepository.save(new Region("84", "Auvergne-Rhône-Alpes"));
+		departement = departementRepository.save(new Departement("01", region));
+		for (int i = 0; i < 100; i++) {
+			departementRepository.save(new Departement(String.format("D%03d", i), region));
+		}
+		villeRepository.save(new Ville("Bourg-en-Bresse", 41365, "1", "1", "053", 41365, 0, 41365, departement));
+		// Realistic volume and fresh statistics, so that the cost-based optimizer
+		// behaves as it would on the national dataset
+		jdbcTemplate.update("INSERT INTO ville (nom, nb_habitants, code_commune, population_municipale, "
+				+ "population_comptee_a_part, population_totale, departement_id) "
+				+ "SELECT CONCAT('Commune ', X), MOD(X * 7919, 100000), X, 0, 0, 0, "
+				+ "(SELECT MIN(id) FROM departement) + MOD(X, 100) FROM SYSTEM_RANGE(1, 20000)");
+		jdbcTemplate.execute("ANALYZE");
+		CAPTURED_SQL.clear();
+	}
+
+	@Test
+	void villeLookupsByNameUseAnIndex() {
+		assertIndexed(() -> villeRepository.findByNom("Bourg-en-Bresse"), "Bourg-en-Bresse");
+		assertIndexed(() -> villeRepository.existsByNom("Bourg-en-Bresse"), "Bourg-en-Bresse");
+		assertIndexed(() -> villeRepository.existsByNomAndDepartement("Bourg-en-Bresse", departement),
+				"Bourg-en-Bresse", departement.getId());
+		assertIndexed(() -> villeRepository.findResumesByNomStartingWith("Bourg", FIRST_PAGE), "Bourg%", "\\",
+				0, 11);
+	}
+
+	@Test
+	void villePopulationFiltersUseAnIndex() {
+		assertIndexed(() -> villeRepository.findResumesByNbHabitantsGreaterThan(90000, FIRST_PAGE), 90000, 0, 11);
+		assertIndexed(() -> villeRepository.findResumesByNbHabitantsBetween(90000, 95000, FIRST_PAGE), 90000, 95000, 0,
+				11);
+	}
+
+	@Test
+	void villeDepartementFiltersUseAnIndex() {
+		int id = departement.getId();
+		assertIndexed(
+				() -> villeRepository.findResumesByDepartementAndNbHabitantsGreaterThan(departement, 10000, FIRST_PAGE),
+				id, 10000, 0, 11);
+		assertIndexed(() -> villeRepository.findResumesByDepartementAndNbHabitantsBetween(departement, 10000, 50000,
+				FIRST_PAGE), id, 10000, 50000, 0, 11);
+	}
+
+	@Test
+	void villeOrderedListingsUseAnIndex() {
+		assertSortedByIndex(() -> villeRepository.findByOrderByNbHabitantsDesc(PageRequest.of(0, 10)), 0, 11);
+	}
+
+	@Test
+	void villeDepartementStreamsUseAnIndex() {
+		// Streams are only read within a transaction, which keeps the cursor open,
+		// and their query is issued by the first read
+		assertIndexed(() -> transactionTemplate.executeWithoutResult(status -> {
+			try (Stream<Ville> villes = villeRepository.streamByDepartementCodes(List.of("01"))) {
+				villes.findFirst();
+			}
+		}), "01");
+	}
+
+	@Test
+	void villeKeysetPagesSeekAnIndex() {
+		assertSortedByIndex(() -> villeRepository.findByIdGreaterThanOrderByIdAsc(15000, Limit.of(11)), 15000, 11);
+		assertSortedByIndex(() -> villeRepository.findNextByPopulation(90000, 15000, Limit.of(11)), 90000, 90000,
+				15000, 11);
+	}
+
+	@Test
+	void villeCombinedFiltersUseAnIndex() {
+		Sort byPopulation = Sort.by(Sort.Order.desc("nbHabitants"), Sort.Order.asc("id"));
+		assertIndexed(() -> villeRepository.findResumes(
+				VilleSpecifications.inDepartements(List.of("01")).and(VilleSpecifications.populationAtLeast(10000)),
+				byPopulation, Limit.of(10)), "01", 10000, 10);
+		assertIndexed(() -> villeRepository.findResumes(VilleSpecifications.inRegion("84")
+				.and(VilleSpecifications.populationAtLeast(90000)), byPopulation, Limit.of(10)), "84", 90000, 10);
+		assertIndexed(() -> villeRepository.findResumes(VilleSpecifications.nomStartingWith("Bourg"),
+				Sort.by("nom", "id"), Limit.of(10)), "Bourg%", 10);
+		assertSortedByIndex(() -> villeRepository.findResumes(VilleSpecifications.populationAtLeast(90000),
+				byPopulation, Limit.of(10)), 90000, 10);
+	}
+
+	@Test
+	void villeBatchLookupsUseAnIndex() {
+		assertIndexed(() -> villeRepository.findResumesByIdIn(List.of(1L, 2L)), 1L, 2L);
+		assertIndexed(() -> villeRepository.findResumesByDepartementCodeInAndCodeCommuneIn(List.of("01"),
+				List.of("053", "054")), "01", "053", "054");
+	}
+
+	@Test
+	void referenceDataLookupsUseAnIndex() {
+		assertIndexed(() -> departementRepository.findByCode("01"), "01");
+		assertIndexed(() -> departementRepository.existsByCode("01"), "01");
+		assertIndexed(() -> regionRepository.findByCode("84"), "84");
+		assertIndexed(() -> regionRepository.existsByCode("84"), "84");
+		assertIndexed(() -> regionRepository.findByNom("Auvergne-Rhône-Alpes"), "Auvergne-Rhône-Alpes");
+		assertIndexed(() -> regionRepository.existsByNom("Auvergne-Rhône-Alpes"), "Auvergne-Rhône-Alpes");
+	}
+
+	/**
+	 * Runs a repository query and checks that the plan of the statement it issued
+	 * does not scan a whole table.
+	 *
+	 * @param query      the repository call
+	 * @param parameters the JDBC parameters of the issued statement, in order
+	 */
+	private void assertIndexed(Runnable query, Object... parameters) {
+		String plan = explain(query, parameters);
+		assertThat(plan).as(plan).doesNotContainIgnoringCase("tableScan");
+	}
+
+	/**
+	 * Runs an ordered repository query and checks that its plan neither scans a
+	 * whole table nor sorts the rows after reading them.
+	 *
+	 * @param query      the repository call
+	 * @param parameters the JDBC parameters of the issued statement, in order
+	 */
+	private void assertSortedByIndex(Runnable query, Object... parameters) {
+		String plan = explain(query, parameters);
+		assertThat(plan).as(plan).doesNotContainIgnoringCase("tableScan").containsIgnoringCase("index sorted");
+	}
+
+	/**
+	 * Runs a repository query and returns the {@code EXPLAIN} output of the first
+	 * statement it issued.
+	 *
+	 * @param query      the repository call
+	 * @param parameters the JDBC parameters of the issued statement, in order
+	 * @return the query plan
+	 */
+	private String explain(Runnable query, Object... parameters) {
+		CAPTURED_SQL.clear();
+		query.run();
+		assertThat(CAPTURED_SQL).isNotEmpty();
+		return jdbcTemplate.queryForObject("EXPLAIN " + CAPTURED_SQL.get(0), String.class, parameters);
+	}
+
+	/**
+	 * Records every SQL statement prepared by Hibernate.
+	 */
+	public static class CapturingStatementInspector implements StatementInspector {
+
+		@Override
+		public String inspect(String sql) {
+			CAPTURED_SQL.add(sql);
+			return sql;
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package fr.diginamic.hello.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import fr.diginamic.hello.HelloApplication;
+import fr.diginamic.hello.TraitementFichiersApplication;
+import fr.diginamic.hello.dto.PopulationStatsDto;
+import fr.diginamic.hello.entities.Departement;
+import fr.diginamic.hello.entities.Region;
+import fr.diginamic.hello.entities.Ville;
+import fr.diginamic.hello.exceptions.DepartementNotFoundException;
+import fr.diginamic.hello.exceptions.RegionNotFoundException;
+import fr.diginamic.hello.repositories.DepartementRepository;
+import fr.diginamic.hello.repositories.RegionRepository;
+import fr.diginamic.hello.repositories.VilleRepository;
+
+/**
+ * Checks that the population rollups follow every city change, and that the
+ * incremental updates end up with the same figures as a full rebuild.
+ */
+@SpringBootTest(classes = HelloApplication.class)
+class PopulationStatsServiceTests {
+
+	@MockBean
+	private TraitementFichiersApplication traitementFichiersApplication;
+
+	@Autowired
+	private PopulationStatsService populationStatsService;
+
+	@Autowired
+	private VilleService villeService;
+
+	@Autowired
+	private VilleRepository villeRepository;
+
+	@Autowired
+	private DepartementRepository departementRepository;
+
+	@Autowired
+	private RegionRepository regionRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private Departement herault;
+
+	private Departement gard;
+
+	@BeforeEach
+	void setUp() {
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			villeRepository.deleteAllInBatch();
+			departementRepository.deleteAllInBatch();
+			regionRepository.deleteAllInBatch();
+			Region occitanie = regionRepository.save(new Region("76", "Occitanie"));
+			herault = departementRepository.save(new Departement("34", occitanie));
+			gard = departementRepository.save(new Departement("30", occitanie));
+		});
+		populationStatsService.refreshAll();
+	}
+
+	@Test
+	void rollupsFollowCityChanges() {
+		Ville montpellier = villeService.createVille(ville("Montpellier", 300000, herault));
+		villeService.createVille(ville("Sète", 44000, herault));
+		Ville nimes = villeService.createVille(ville("Nîmes", 150000, gard));
+
+		assertThat(populationStatsService.getDepartementStats("34"))
+				.isEqualTo(new PopulationStatsDto("34", 2, 344000, 344000, 0, 344000, 44000L, 300000L));
+		assertThat(populationStatsService.getRegionStats("76")).isEqualTo(
+				new PopulationStatsDto("76", 3, 494000, 494000, 0, 494000, 44000L, 300000L));
+
+		villeService.modifierVille((int) nimes.getId(), ville("Nîmes", 10000, gard));
+		villeService.supprimerVille((int) montpellier.getId());
+
+		PopulationStatsDto departement = populationStatsService.getDepartementStats("34");
+		PopulationStatsDto region = populationStatsService.getRegionStats("76");
+		assertThat(departement).isEqualTo(new PopulationStatsDto("34", 1, 44000, 44000, 0, 44000, 44000L, 44000L));
+		assertThat(region.nbHabitants()).isEqualTo(54000);
+		assertThat(region.minHabitants()).isEqualTo(10000);
+		assertThat(region.maxHabitants()).isEqualTo(44000);
+
+		populationStatsService.refreshAll();
+		assertThat(populationStatsService.getDepartementStats("34")).isEqualTo(departement);
+		// The municipal population is not changed by a modification, unlike the
+		// number of inhabitants
+		assertThat(populationStatsService.getRegionStats("76")).isEqualTo(
+				new PopulationStatsDto("76", 2, 54000, 194000, 0, 194000, 10000L, 44000L));
+	}
+
+	@Test
+	void departementsAndRegionsWithoutCitiesHaveEmptyRollups() {
+		assertThat(populationStatsService.getDepartementStats("30"))
+				.isEqualTo(new PopulationStatsDto("30", 0, 0, 0, 0, 0, null, null));
+		assertThat(populationStatsService.getRegionStats("76"))
+				.isEqualTo(new PopulationStatsDto("76", 0, 0, 0, 0, 0, null, null));
+		assertThatThrownBy(() -> populationStatsService.getRegionStats("99"))
+				.isInstanceOf(RegionNotFoundException.class);
+		assertThatThrownBy(() -> populationStatsService.getRegionQuantiles("99"))
+				.isInstanceOf(RegionNotFoundException.class);
+		assertThatThrownBy(() -> populationStatsService.getDepartementStats("99"))
+				.isInstanceOf(DepartementNotFoundException.class);
+		assertThatThrownBy(() -> populationStatsService.getDepartementQuantiles("99"))
+				.isInstanceOf(DepartementNotFoundException.class);
+	}
+
+	private static Ville ville(String nom, long nbHabitants, Departement departement) {
+		return new Ville(nom, nbHabitants, "1", "1", "001", nbHabitants, 0, nbHabitants, departement);
+	}
+}
@@ -0,0 +1,91 @@
+package fr.diginamic.hello.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import fr.diginamic.hello.dto.SingleFlightStatsDto;
+import fr.diginamic.hello.exceptions.VilleNotFoundException;
+
+class SingleFlightTests {
+
+	private final SingleFlight singleFlight = new SingleFlight();
+
+	@Test
+	void concurrentIdenticalCallsShareOneComputation() throws Exception {
+		int callers = 8;
+		AtomicInteger computations = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(callers);
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			for (int i = 0; i < callers; i++) {
+				results.add(executor.submit(() -> singleFlight.execute("export", 500, () -> {
+					computations.incrementAndGet();
+					await(release);
+					return "rapport";
+				})));
+			}
+			waitUntilAllCallersJoined(callers);
+			release.countDown();
+
+			for (Future<String> result : results) {
+				assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("rapport");
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertThat(computations).hasValue(1);
+		SingleFlightStatsDto stats = singleFlight.getStats().get(0);
+		assertThat(stats.getExecutions()).isEqualTo(1);
+		assertThat(stats.getCoalesced()).isEqualTo(callers - 1);
+	}
+
+	@Test
+	void sequentialCallsAreNotCoalesced() {
+		singleFlight.execute("export", 10, () -> "a");
+		singleFlight.execute("export", 10, () -> "b");
+
+		assertThat(singleFlight.getStats().get(0).getExecutions()).isEqualTo(2);
+		assertThat(singleFlight.getStats().get(0).getCoalesced()).isZero();
+	}
+
+	@Test
+	void failureIsRethrownAsIs() {
+		assertThatThrownBy(() -> singleFlight.execute("search", "x", () -> {
+			throw new VilleNotFoundException("Aucune ville");
+		})).isInstanceOf(VilleNotFoundException.class);
+
+		assertThat(singleFlight.execute("search", "x", () -> "ok")).isEqualTo("ok");
+	}
+
+	private void waitUntilAllCallersJoined(int callers) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (System.nanoTime() < deadline) {
+			List<SingleFlightStatsDto> stats = singleFlight.getStats();
+			if (!stats.isEmpty() && stats.get(0).getExecutions() + stats.get(0).getCoalesced() == callers) {
+				return;
+			}
+			Thread.sleep(5);
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
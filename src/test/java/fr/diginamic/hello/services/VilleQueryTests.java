@@ -0,0 +1,85 @@
+package fr.diginamic.hello.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import fr.diginamic.hello.HelloApplication;
+import fr.diginamic.hello.TraitementFichiersApplication;
+import fr.diginamic.hello.config.CacheConfig;
+import fr.diginamic.hello.dto.VilleResumeDto;
+import fr.diginamic.hello.entities.Departement;
+import fr.diginamic.hello.entities.Region;
+import fr.diginamic.hello.entities.Ville;
+import fr.diginamic.hello.index.VilleIndexMaintainer;
+import fr.diginamic.hello.repositories.DepartementRepository;
+import fr.diginamic.hello.repositories.RegionRepository;
+import fr.diginamic.hello.repositories.VilleRepository;
+
+/**
+ * Checks that the queries answered from the in-memory filter index order the
+ * names like the database collation, ignoring case and accents, rather than by
+ * their UTF-16 code units.
+ */
+@SpringBootTest(classes = HelloApplication.class)
+class VilleQueryTests {
+
+	@MockBean
+	private TraitementFichiersApplication traitementFichiersApplication;
+
+	@Autowired
+	private VilleService villeService;
+
+	@Autowired
+	private VilleIndexMaintainer maintainer;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Autowired
+	private VilleRepository villeRepository;
+
+	@Autowired
+	private DepartementRepository departementRepository;
+
+	@Autowired
+	private RegionRepository regionRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@BeforeEach
+	void setUp() {
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			villeRepository.deleteAllInBatch();
+			departementRepository.deleteAllInBatch();
+			regionRepository.deleteAllInBatch();
+			Region idf = regionRepository.save(new Region("11", "Île-de-France"));
+			Departement essonne = departementRepository.save(new Departement("91", idf));
+			villeRepository.save(new Ville("Évry", 54000, "1", "1", "228", 54000, 0, 54000, essonne));
+			villeRepository.save(new Ville("Zonza", 2000, "1", "1", "900", 2000, 0, 2000, essonne));
+			villeRepository.save(new Ville("Étampes", 25000, "1", "1", "223", 25000, 0, 25000, essonne));
+			villeRepository.save(new Ville("abbeville", 23000, "1", "1", "001", 23000, 0, 23000, essonne));
+			villeRepository.save(new Ville("Eaubonne", 25000, "1", "1", "203", 25000, 0, 25000, essonne));
+		});
+		maintainer.rebuildAll();
+		for (String name : CacheConfig.VILLE_SEARCH_CACHES) {
+			cacheManager.getCache(name).clear();
+		}
+	}
+
+	@Test
+	void namesIgnoreCaseAndAccents() {
+		VilleQuery query = new VilleQuery(null, "11", null, null, null, null, null, VilleQuery.Order.NOM, 10);
+
+		assertThat(villeService.query(query)).extracting(VilleResumeDto::nom).containsExactly("abbeville",
+				"Eaubonne", "Étampes", "Évry", "Zonza");
+	}
+}